@@ -0,0 +1,165 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.benchmarks.jmh;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import makebuilder.BuildEntity;
+import makebuilder.BuildFileLoader;
+import makebuilder.Library;
+import makebuilder.MakeFileBuilder;
+import makebuilder.Options;
+import makebuilder.Program;
+import makebuilder.SourceFileHandler;
+import makebuilder.SourceScanner;
+import makebuilder.SrcDir;
+import makebuilder.SrcFile;
+import makebuilder.benchmarks.WorkspaceGenerator;
+import makebuilder.handler.CppHandler;
+import makebuilder.handler.MakeXMLLoader;
+import makebuilder.util.Files;
+
+/**
+ * @author Max Reichardt
+ *
+ * Synthetic workspace that JMH benchmarks operate on.
+ *
+ * It is created by WorkspaceGenerator (which can also be run standalone):
+ * layered finroc-style repositories with make.xml files, unit tests and programs.
+ * The make.xml files are loaded with plain Library/Program build entities (see createLoader()) -
+ * so that benchmarks do not require a finroc environment.
+ *
+ * The workspace is created in the current working directory (MakeFileBuilder.HOME).
+ * To avoid cluttering a real source tree, this directory must be empty or contain a MARKER_FILE
+ * (the 'benchmark-jmh' ant target runs benchmarks in benchmarks/jmh/workspace).
+ */
+public class BenchmarkWorkspace {
+
+    /** Marks directory as benchmark workspace */
+    public static final String MARKER_FILE = ".benchmarkWorkspace";
+
+    /** Options for WorkspaceGenerator (4 layers of 20 repositories) */
+    private static final String[] GENERATOR_OPTIONS = {"--repositories=80", "--headers=6", "--depth=4"};
+
+    /** Builder that scans workspace */
+    public static class Builder extends MakeFileBuilder {
+
+        static {
+            if (getOptions() == null) {
+                opts = new Options(new String[0]);
+            }
+        }
+
+        public Builder() throws Exception {
+            addLoader(createLoader());
+        }
+
+        @Override
+        public String[] getSourceDirs() {
+            return new String[] {"sources"};
+        }
+
+        @Override
+        public void setDefaultIncludePaths(SrcDir dir, SourceScanner sources) {
+            dir.defaultIncludePaths.add(dir);
+            dir.defaultIncludePaths.add(sources.findDir("sources/cpp", true));
+        }
+    }
+
+    /** Build entities for the finroc-style tags in generated make.xml files */
+    public static class Rrlib extends Library {}
+    public static class Unittest extends Program {}
+
+    /**
+     * Creates workspace in current working directory (if it does not exist yet)
+     */
+    public static void create() throws Exception {
+        File home = MakeFileBuilder.HOME;
+        String[] contents = home.list();
+        if (contents != null && contents.length > 0 && !new File(home, MARKER_FILE).exists()) {
+            throw new RuntimeException("Benchmarks need to be run in an empty directory (or one containing " + MARKER_FILE + ") - not in " + home);
+        }
+        if (new File(home, MARKER_FILE).exists()) {
+            return;
+        }
+
+        WorkspaceGenerator generator = new WorkspaceGenerator(home);
+        generator.parseOptions(Arrays.asList(GENERATOR_OPTIONS));
+        generator.generate();
+        Files.writeLines(new File(home, MARKER_FILE), new ArrayList<String>());
+    }
+
+    /**
+     * Creates workspace (if necessary) and a builder that has scanned it
+     * (resolving the includes of all source files)
+     *
+     * @return Builder
+     */
+    public static Builder scan() throws Exception {
+        create();
+        Builder builder = new Builder();
+        List<BuildFileLoader> loaders = new ArrayList<BuildFileLoader>();
+        loaders.add(createLoader());
+        List<SourceFileHandler> handlers = new ArrayList<SourceFileHandler>();
+        handlers.add(new CppHandler("", "", true));
+        builder.getSources().scan(builder.makefile, loaders, handlers, false, builder.getSourceDirs());
+        return builder;
+    }
+
+    /**
+     * @return Loader for make.xml files in workspace
+     * (like in finroc, build entities are named after their repository - as make.xml files contain no or non-unique names;
+     * external libraries are ignored - as they are only known to FinrocBuilder with the workspace's libdb)
+     */
+    public static MakeXMLLoader createLoader() {
+        return new MakeXMLLoader(Library.class, Rrlib.class, Program.class, Unittest.class) {
+            @Override
+            public void process(SrcFile file, List<BuildEntity> result, SourceScanner scanner, MakeFileBuilder builder) throws Exception {
+                int first = result.size();
+                super.process(file, result, scanner, builder);
+                String repository = file.dir.relative.substring(file.dir.relative.lastIndexOf('/') + 1);
+                for (BuildEntity be : result.subList(first, result.size())) {
+                    be.name = repository + (be.name != null ? ("_" + be.name) : "");
+                    be.libs.clear();
+                }
+            }
+        };
+    }
+
+    /**
+     * @param builder Builder that scanned workspace
+     * @param extensions File extensions
+     * @return All files in workspace's source directories with one of the specified extensions (sorted by name)
+     */
+    public static List<SrcFile> getFiles(Builder builder, String... extensions) {
+        List<SrcFile> result = new ArrayList<SrcFile>();
+        for (SrcFile file : builder.getSources().getAllFilesStartingWith("sources/")) {
+            if (Arrays.asList(extensions).contains(file.getExtension())) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+}
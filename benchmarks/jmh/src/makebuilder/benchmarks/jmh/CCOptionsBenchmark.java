@@ -0,0 +1,91 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import makebuilder.util.CCOptions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Max Reichardt
+ *
+ * Benchmarks for parsing and creating compiler/linker options.
+ *
+ * Inputs are options of typical external libraries (as obtained from pkg-config and libdb)
+ * and of a build entity that merges them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CCOptionsBenchmark {
+
+    /** Options of typical external libraries */
+    private static final String[] LIBRARY_OPTIONS = {
+        "-pthread",
+        "-lz",
+        "-I/usr/include/opencv4 -L/usr/lib/x86_64-linux-gnu -lopencv_core -lopencv_imgproc -lopencv_highgui -lopencv_imgcodecs -lopencv_videoio",
+        "-DQT_SHARED -I/usr/include/qt4 -I/usr/include/qt4/QtCore -I/usr/include/qt4/QtGui -lQtGui -lQtCore -lpthread",
+        "-I/usr/include/eigen3 -DEIGEN_DONT_ALIGN_STATICALLY",
+        "-I/usr/include/libxml2 -lxml2",
+        "-Wl,--start-group -lboost_system -lboost_thread -lboost_filesystem -Wl,--end-group",
+        "-I/usr/include/pcl-1.10 -I/usr/include/vtk-7.1 -L/usr/lib/x86_64-linux-gnu -lpcl_common -lpcl_io -lpcl_filters -lvtkCommonCore-7.1",
+        "-fopenmp -lgomp",
+        "-I/opt/ros/include -L/opt/ros/lib -Wl,-rpath,/opt/ros/lib -lroscpp -lrosconsole -lroscpp_serialization -lrostime"
+    };
+
+    /** Options of a build entity (merged with those of all libraries) */
+    private CCOptions merged;
+
+    @Setup
+    public void setup() {
+        merged = addOptions();
+    }
+
+    @Benchmark
+    public CCOptions addOptions() {
+        CCOptions result = new CCOptions("-Wall -Wwrite-strings -Wno-unknown-pragmas -include \"make_builder/enum_strings_builder/enum_strings.h\" -g2 -std=c++11 -fPIC");
+        for (String options : LIBRARY_OPTIONS) {
+            result.addOptions(options);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int createOptionString() {
+        return merged.createOptionString(true, false, true).length() + merged.createOptionString(false, true, true).length() +
+               merged.createOptionString(true, true, true).length() + merged.createOptionString(true, false, false).length();
+    }
+}
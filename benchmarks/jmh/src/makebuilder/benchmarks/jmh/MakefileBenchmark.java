@@ -0,0 +1,87 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.benchmarks.jmh;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import makebuilder.Makefile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Max Reichardt
+ *
+ * Benchmark for writing the makefile generated for the BenchmarkWorkspace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MakefileBenchmark {
+
+    /** Generated makefile */
+    private Makefile generated;
+
+    /** Copy of generated makefile that is written (writeTo() adds a command to the 'all' target) */
+    private Makefile makefile;
+
+    /** File to write makefile to */
+    private File file;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkWorkspace.create();
+        BenchmarkWorkspace.Builder builder = new BenchmarkWorkspace.Builder();
+        builder.build();
+        generated = builder.makefile;
+        file = File.createTempFile("Makefile", ".benchmark");
+    }
+
+    @Setup(Level.Invocation)
+    public void copyMakefile() {
+        makefile = new Makefile(generated);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void writeTo() throws Exception {
+        makefile.writeTo(file);
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import makebuilder.BuildEntity;
+import makebuilder.SourceScanner;
+import makebuilder.SrcDir;
+import makebuilder.SrcFile;
+import makebuilder.handler.CppHandler;
+import makebuilder.handler.MakeXMLLoader;
+import makebuilder.util.ToStringComparator;
+import makebuilder.util.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Max Reichardt
+ *
+ * Benchmarks for the hot paths of scanning source files - operating on all files of the BenchmarkWorkspace
+ * (so scores are times for the whole workspace).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SourceScanningBenchmark {
+
+    /** Builder that scanned workspace */
+    private BenchmarkWorkspace.Builder builder;
+
+    /** Source scanner */
+    private SourceScanner sources;
+
+    /** C++ source files and headers in workspace */
+    private List<SrcFile> cppFiles;
+
+    /** .cpp files in workspace */
+    private List<SrcFile> compilationUnits;
+
+    /** make.xml files in workspace */
+    private List<SrcFile> makeXmlFiles;
+
+    /** Lookups that resolving includes performs: directory and file name */
+    private final List<SrcDir> lookupDirs = new ArrayList<SrcDir>();
+    private final List<String> lookupNames = new ArrayList<String>();
+
+    /** Loader for make.xml files */
+    private final MakeXMLLoader loader = BenchmarkWorkspace.createLoader();
+
+    @Setup
+    public void setup() throws Exception {
+        builder = BenchmarkWorkspace.scan();
+        sources = builder.getSources();
+        cppFiles = BenchmarkWorkspace.getFiles(builder, "h", "cpp");
+        compilationUnits = BenchmarkWorkspace.getFiles(builder, "cpp");
+        makeXmlFiles = BenchmarkWorkspace.getFiles(builder, "xml");
+        for (SrcFile file : cppFiles) {
+            file.cppLines = Util.readLinesWithoutComments(file.absolute, false);
+            for (String line : file.cppLines) {
+                if (line.startsWith("#include \"")) {
+                    for (SrcDir dir : file.dir.defaultIncludePaths) {
+                        lookupDirs.add(dir);
+                        lookupNames.add(line.substring(10, line.lastIndexOf('"')));
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int readLinesWithoutComments() throws Exception {
+        int result = 0;
+        for (SrcFile file : cppFiles) {
+            result += Util.readLinesWithoutComments(file.absolute, false).size();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void processIncludes() {
+        for (SrcFile file : cppFiles) {
+            CppHandler.processIncludes(file, sources);
+        }
+    }
+
+    @Benchmark
+    public int resolveDependencies() {
+        int result = 0;
+        for (SrcFile file : cppFiles) {
+            file.clearDependencies();
+            file.missingDependency = null;
+            CppHandler.resolveDependencies(file, (CppHandler.CodeTreeNode)file.getProperty(CppHandler.CPP_MODEL_KEY), true, false, false);
+            result += file.getDependencies().size();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int find() {
+        int result = 0;
+        for (int i = 0, n = lookupDirs.size(); i < n; i++) {
+            if (sources.find(lookupDirs.get(i), lookupNames.get(i)) != null) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int getAllDependencies() {
+        int result = 0;
+        for (SrcFile file : compilationUnits) {
+            result += file.getAllDependencies(new TreeSet<SrcFile>(ToStringComparator.instance)).size();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int processMakeXml() throws Exception {
+        List<BuildEntity> result = new ArrayList<BuildEntity>();
+        for (SrcFile file : makeXmlFiles) {
+            loader.process(file, result, sources, builder);
+        }
+        return result.size();
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import makebuilder.util.AddOrderSet;
+
+/**
+ * @author Max Reichardt
+ *
+ * Micro-benchmark for AddOrderSet.
+ *
+ * Replays the set operations that BuildEntity.mergeExtLibs and BuildEntity.addIndirectDependencyLibs
+ * perform on a synthetic, layered dependency graph - once with the hash-backed AddOrderSet
+ * and once with the former list-based implementation (for comparison).
+ *
+ * Usage: AddOrderSetBenchmark [<number of entities> ...]
+ */
+public class AddOrderSetBenchmark {
+
+    /** Number of external libraries in synthetic graph */
+    private static final int EXT_LIBS = 150;
+
+    /** Number of benchmark repetitions per graph size (first ones are warm-up) */
+    private static final int REPETITIONS = 3;
+
+    /** Factory for sets under test */
+    private interface SetFactory {
+        Set<String> create();
+    }
+
+    /** One synthetic build entity */
+    private static class Node {
+        final String lib;
+        final List<Node> dependencies = new ArrayList<Node>();
+        final List<String> directExtlibs = new ArrayList<String>();
+        final List<String> ownLibs = new ArrayList<String>();
+        Set<String> extlibs;
+
+        Node(int index) {
+            lib = "entity" + index;
+        }
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? new int[args.length] : new int[] {100, 200, 400, 800};
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        SetFactory hashBased = new SetFactory() {
+            public Set<String> create() {
+                return new AddOrderSet<String>();
+            }
+        };
+        SetFactory listBased = new SetFactory() {
+            public Set<String> create() {
+                return new ListAddOrderSet<String>();
+            }
+        };
+
+        System.out.println(String.format("%10s %16s %16s %10s", "entities", "list-based (ms)", "hash-based (ms)", "speedup"));
+        for (int size : sizes) {
+            List<Node> graph = createGraph(size, new Random(42));
+            if (run(graph, listBased) != run(graph, hashBased)) {
+                throw new RuntimeException("Implementations produced different results");
+            }
+            double listTime = measure(graph, listBased);
+            double hashTime = measure(graph, hashBased);
+            System.out.println(String.format("%10d %16.1f %16.1f %9.1fx", size, listTime, hashTime, listTime / hashTime));
+        }
+    }
+
+    /**
+     * @return Best time of several runs in ms
+     */
+    private static double measure(List<Node> graph, SetFactory factory) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < REPETITIONS; i++) {
+            long start = System.nanoTime();
+            run(graph, factory);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1000000.0;
+    }
+
+    /**
+     * Creates layered DAG similar to finroc workspaces: entities mostly depend on entities in lower layers
+     * (rrlib -> core -> plugins -> projects)
+     */
+    private static List<Node> createGraph(int size, Random random) {
+        List<Node> nodes = new ArrayList<Node>();
+        for (int i = 0; i < size; i++) {
+            Node node = new Node(i);
+            int deps = i == 0 ? 0 : Math.min(i, 2 + random.nextInt(8));
+            for (int j = 0; j < deps; j++) {
+                Node dep = nodes.get(random.nextInt(i));
+                if (!node.dependencies.contains(dep)) {
+                    node.dependencies.add(dep);
+                }
+            }
+            for (int j = random.nextInt(4); j > 0; j--) {
+                node.directExtlibs.add("extlib" + random.nextInt(EXT_LIBS));
+            }
+            for (int j = random.nextInt(3); j > 0; j--) {
+                node.ownLibs.add("lib" + random.nextInt(EXT_LIBS * 2));
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Performs the set operations of mergeExtLibs and addIndirectDependencyLibs for all nodes
+     *
+     * @return Checksum of results
+     */
+    private static long run(List<Node> graph, SetFactory factory) {
+        for (Node node : graph) {
+            node.extlibs = null;
+        }
+        long checksum = 0;
+        for (Node node : graph) {
+            mergeExtLibs(node, factory);
+            Set<String> libs = factory.create();
+            libs.addAll(node.extlibs);
+            for (Node dep : node.dependencies) {
+                libs.add(dep.lib);
+                addIndirectDependencyLibs(dep, libs, new ArrayList<Node>());
+            }
+            int i = 1;
+            for (String s : libs) {
+                checksum += s.hashCode() * (i++);
+            }
+            checksum += node.extlibs.size();
+        }
+        return checksum;
+    }
+
+    private static void mergeExtLibs(Node node, SetFactory factory) {
+        if (node.extlibs != null) {
+            return;
+        }
+        node.extlibs = factory.create();
+        node.extlibs.addAll(node.directExtlibs);
+        for (Node dep : node.dependencies) {
+            mergeExtLibs(dep, factory);
+            node.extlibs.addAll(dep.extlibs);
+        }
+    }
+
+    private static void addIndirectDependencyLibs(Node node, Set<String> libs, ArrayList<Node> visited) {
+        if (visited.contains(node)) {
+            return;
+        }
+        libs.add(node.lib);
+        visited.add(node);
+        for (Node dep : node.dependencies) {
+            addIndirectDependencyLibs(dep, libs, visited);
+        }
+        libs.addAll(node.ownLibs);
+    }
+
+    /**
+     * Former list-based AddOrderSet implementation (for comparison)
+     */
+    @SuppressWarnings("serial")
+    private static class ListAddOrderSet<T> extends ArrayList<T> implements Set<T> {
+
+        @Override
+        public boolean add(T t) {
+            if (!contains(t)) {
+                return super.add(t);
+            }
+            return false;
+        }
+
+        @Override
+        public boolean addAll(Collection <? extends T > ts) {
+            boolean change = false;
+            for (T t : ts) {
+                change |= add(t);
+            }
+            return change;
+        }
+    }
+}
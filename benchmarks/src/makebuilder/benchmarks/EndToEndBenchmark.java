@@ -0,0 +1,309 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import makebuilder.FragmentCache;
+import makebuilder.MakeFileBuilder;
+import makebuilder.SourceScanner;
+import makebuilder.libdb.PkgConfigCache;
+import makebuilder.util.Files;
+import makebuilder.util.Toolchain;
+
+/**
+ * @author Max Reichardt
+ *
+ * Runs makebuilder end to end on a (generated) workspace and records per-phase times and peak heap usage.
+ *
+ * Scenarios:
+ *  cold:  all caches are deleted before each run
+ *  warm:  caches from the previous run are used
+ *  touch: one header in the middle of the include graph is modified before each run
+ *
+ * Each run is a separate JVM process. Phase times and peak heap usage are obtained from the activity log
+ * (--activitylog-json). Medians of all runs are printed - and all values can be written to a CSV file.
+ * If the workspace does not exist, it is generated with WorkspaceGenerator (remaining options are passed to it).
+ *
+ * Usage: EndToEndBenchmark <workspace> [--runs=N] [--main-class=C] [--classpath=P] [--jvm-arg=A]... [--builder-arg=A]... [--csv=F] [generator options]
+ */
+public class EndToEndBenchmark {
+
+    /** Scenarios */
+    private static final String COLD = "cold", WARM = "warm", TOUCH = "touch";
+
+    /** Caches that are deleted in cold scenario */
+    private static final String[] CACHE_FILES = {SourceScanner.CACHE_FILE, PkgConfigCache.CACHE_FILE, Toolchain.CACHE_FILE, FragmentCache.CACHE_FILE};
+
+    /** Activity log file (in workspace) */
+    private static final String ACTIVITY_LOG = ".benchmarkActivityLog.json";
+
+    /** Patterns to extract values from activity log */
+    private static final Pattern ACTIVITY = Pattern.compile("^( *)\\{\"name\": \"((?:[^\"\\\\]|\\\\.)*)\", \"thread\": .*\"concurrent\": (true|false), \"start\": [0-9.]+, \"duration\": ([0-9.]+)");
+    private static final Pattern PEAK_HEAP = Pattern.compile("^\"peakHeapUsed\": ([0-9]+)");
+
+    /** Options */
+    private int runs = 3;
+    private String mainClass = "makebuilder.ext.finroc.FinrocBuilder";
+    private String classpath;
+    private final List<String> jvmArgs = new ArrayList<String>(), builderArgs = new ArrayList<String>();
+    private File csv;
+
+    /** Workspace */
+    private final File workspace;
+
+    /** Values recorded (scenario => metric => values of all runs) */
+    private final Map<String, Map<String, List<Double>>> results = new LinkedHashMap<String, Map<String, List<Double>>>();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: EndToEndBenchmark <workspace> [--runs=N] [--main-class=C] [--classpath=P] [--jvm-arg=A]... [--builder-arg=A]... [--csv=F] [generator options]");
+            System.exit(-1);
+        }
+        EndToEndBenchmark benchmark = new EndToEndBenchmark(new File(args[0]).getAbsoluteFile());
+        List<String> generatorOptions = new ArrayList<String>();
+        for (String arg : Arrays.asList(args).subList(1, args.length)) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--runs=")) {
+                benchmark.runs = Integer.parseInt(value);
+            } else if (arg.startsWith("--main-class=")) {
+                benchmark.mainClass = value;
+            } else if (arg.startsWith("--classpath=")) {
+                benchmark.classpath = value;
+            } else if (arg.startsWith("--jvm-arg=")) {
+                benchmark.jvmArgs.add(value);
+            } else if (arg.startsWith("--builder-arg=")) {
+                benchmark.builderArgs.add(value);
+            } else if (arg.startsWith("--csv=")) {
+                benchmark.csv = new File(value);
+            } else {
+                generatorOptions.add(arg);
+            }
+        }
+        WorkspaceGenerator generator = new WorkspaceGenerator(benchmark.workspace);
+        generator.parseOptions(generatorOptions);
+        if (!new File(benchmark.workspace, "sources").exists()) {
+            generator.generate();
+        }
+        benchmark.run(new File(benchmark.workspace, "sources/cpp/" + generator.getMiddleHeader()));
+    }
+
+    /**
+     * @param workspace Workspace
+     */
+    public EndToEndBenchmark(File workspace) throws Exception {
+        this.workspace = workspace;
+        classpath = new File(MakeFileBuilder.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+    }
+
+    /**
+     * Runs all scenarios and prints results
+     *
+     * @param touchedFile File that is modified in touch scenario
+     */
+    public void run(File touchedFile) throws Exception {
+        if (!touchedFile.exists()) {
+            throw new RuntimeException("File to touch does not exist: " + touchedFile);
+        }
+        for (int i = 0; i < runs; i++) {
+            deleteCaches();
+            runBuilder(COLD);
+        }
+        for (int i = 0; i < runs; i++) {
+            runBuilder(WARM);
+        }
+        byte[] original = Files.readStreamFully(new FileInputStream(touchedFile));
+        try {
+            for (int i = 0; i < runs; i++) {
+                Files.writeLines(touchedFile, Arrays.asList(new String(original, "UTF-8") + "// touched " + i));
+                runBuilder(TOUCH);
+            }
+        } finally {
+            FileOutputStream fos = new FileOutputStream(touchedFile);
+            fos.write(original);
+            fos.close();
+        }
+        new File(workspace, ACTIVITY_LOG).delete();
+        printResults();
+        if (csv != null) {
+            writeCsv();
+        }
+    }
+
+    /**
+     * Delete all caches in workspace
+     */
+    private void deleteCaches() {
+        for (String cacheFile : CACHE_FILES) {
+            new File(workspace, cacheFile).delete();
+        }
+    }
+
+    /**
+     * Run builder once and record results
+     *
+     * @param scenario Scenario
+     */
+    private void runBuilder(String scenario) throws Exception {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", classpath, MakeFileBuilder.class.getName(), mainClass, "--activitylog-json=" + ACTIVITY_LOG));
+        command.addAll(builderArgs);
+        ProcessBuilder pb = new ProcessBuilder(command).directory(workspace).redirectErrorStream(true);
+        Map<String, String> env = pb.environment();
+        env.put("FINROC_HOME", workspace.getAbsolutePath());
+        env.put("FINROC_TARGET", WorkspaceGenerator.TARGET);
+        if (!env.containsKey("FINROC_ARCHITECTURE")) {
+            env.put("FINROC_ARCHITECTURE", "x86_64");
+            env.put("FINROC_ARCHITECTURE_NATIVE", "x86_64");
+        }
+        if (Toolchain.which("doxygen") == null && Toolchain.which("clang++") == null) {
+            // the enum strings builder requires either of them - provide a stub, so that makefiles can be generated
+            File stub = new File(workspace, ".benchmarkTools/doxygen");
+            stub.getParentFile().mkdirs();
+            Files.writeLines(stub, Arrays.asList("#!/bin/sh", "echo 1.7.6.1"));
+            stub.setExecutable(true);
+            env.put("PATH", stub.getParent() + File.pathSeparator + env.get("PATH"));
+        }
+
+        long start = System.nanoTime();
+        Process process = pb.start();
+        process.getOutputStream().close();
+        List<String> output = Files.readLines(process.getInputStream());
+        int exitValue = process.waitFor();
+        double wallTime = (System.nanoTime() - start) / 1000000.0;
+        File activityLog = new File(workspace, ACTIVITY_LOG);
+        if (exitValue != 0 || !activityLog.exists()) {
+            for (String line : output) {
+                System.out.println(line);
+            }
+            throw new RuntimeException("Running builder failed (exit value " + exitValue + ")");
+        }
+
+        // extract values from activity log
+        Map<String, Double> values = new LinkedHashMap<String, Double>();
+        values.put("wall time (ms)", wallTime);
+        String group = null;
+        for (String line : Files.readLines(activityLog)) {
+            Matcher m = ACTIVITY.matcher(line);
+            if (m.find() && m.group(3).equals("false")) {
+                int level = m.group(1).length() / 2;
+                double duration = Double.parseDouble(m.group(4));
+                if (level == 0) {
+                    values.put("total (ms)", duration);
+                } else if (level == 1) {
+                    group = m.group(2);
+                    values.put(group, duration);
+                } else if (level == 2) {
+                    values.put(group + " / " + m.group(2), duration);
+                }
+            }
+            m = PEAK_HEAP.matcher(line);
+            if (m.find()) {
+                values.put("peak heap (MB)", Long.parseLong(m.group(1)) / (1024.0 * 1024.0));
+            }
+        }
+        activityLog.delete();
+        new File(workspace, "Makefile").delete();
+
+        Map<String, List<Double>> scenarioResults = results.get(scenario);
+        if (scenarioResults == null) {
+            scenarioResults = new LinkedHashMap<String, List<Double>>();
+            results.put(scenario, scenarioResults);
+        }
+        for (Map.Entry<String, Double> value : values.entrySet()) {
+            List<Double> list = scenarioResults.get(value.getKey());
+            if (list == null) {
+                list = new ArrayList<Double>();
+                scenarioResults.put(value.getKey(), list);
+            }
+            list.add(value.getValue());
+        }
+        System.out.println(String.format("%-6s run %d: %8.1f ms", scenario, scenarioResults.get("wall time (ms)").size(), wallTime));
+    }
+
+    /**
+     * Print medians of all recorded values
+     */
+    private void printResults() {
+        List<String> metrics = new ArrayList<String>();
+        for (Map<String, List<Double>> scenarioResults : results.values()) {
+            for (String metric : scenarioResults.keySet()) {
+                if (!metrics.contains(metric)) {
+                    metrics.add(metric);
+                }
+            }
+        }
+        StringBuilder header = new StringBuilder(String.format("%n%-70s", "median of " + runs + " runs"));
+        for (String scenario : results.keySet()) {
+            header.append(String.format("%10s", scenario));
+        }
+        System.out.println(header);
+        for (String metric : metrics) {
+            StringBuilder line = new StringBuilder(String.format("%-70s", metric.length() > 70 ? metric.substring(0, 70) : metric));
+            for (Map<String, List<Double>> scenarioResults : results.values()) {
+                List<Double> values = scenarioResults.get(metric);
+                line.append(values == null ? String.format("%10s", "-") : String.format("%10.1f", median(values)));
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Write all recorded values to CSV file
+     */
+    private void writeCsv() throws Exception {
+        PrintStream ps = new PrintStream(new FileOutputStream(csv), false, "UTF-8");
+        ps.println("scenario,run,metric,value");
+        for (Map.Entry<String, Map<String, List<Double>>> scenario : results.entrySet()) {
+            for (Map.Entry<String, List<Double>> metric : scenario.getValue().entrySet()) {
+                for (int i = 0; i < metric.getValue().size(); i++) {
+                    ps.println(scenario.getKey() + "," + (i + 1) + ",\"" + metric.getKey().replace("\"", "\"\"") + "\"," + metric.getValue().get(i));
+                }
+            }
+        }
+        ps.close();
+    }
+
+    /**
+     * @param values Values
+     * @return Median of values
+     */
+    private static double median(List<Double> values) {
+        List<Double> sorted = new ArrayList<Double>(values);
+        Collections.sort(sorted);
+        int n = sorted.size();
+        return n % 2 == 1 ? sorted.get(n / 2) : (sorted.get(n / 2 - 1) + sorted.get(n / 2)) / 2;
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import makebuilder.util.Files;
+
+/**
+ * @author Max Reichardt
+ *
+ * Generates synthetic finroc-style workspaces - in order to test how makebuilder scales
+ * with workspace size and structure.
+ *
+ * Repositories are placed in 'depth' layers below sources/cpp (first layer: rrlib, others: libraries).
+ * Each repository contains a make.xml with a library - and some also contain unit tests and programs.
+ * Headers include the preceding header of the same repository and 'fan-out' public headers of
+ * repositories in lower layers. Only the first 'fan-in' headers of a repository are public - so the
+ * smaller this value, the more headers include each public header.
+ * Every second header contains an #ifdef/#else block with alternative includes, every fourth header
+ * declares an enum (processed by the enum strings builder) and every tenth repository contains a Qt header
+ * (processed by moc). Every third library has cxxflags and ldflags. Comments and string literals contain
+ * things that look like includes or comments - so that scanning them is not trivial.
+ *
+ * Generation is deterministic (for a given seed). The workspace also contains the target and libdb files
+ * that FinrocBuilder requires.
+ * This generator is used by the end-to-end benchmark as well as by the JMH benchmarks (BenchmarkWorkspace).
+ *
+ * Usage: WorkspaceGenerator <directory> [--repositories=N] [--headers=N] [--depth=N] [--fan-out=N] [--fan-in=N] [--seed=N]
+ */
+public class WorkspaceGenerator {
+
+    /** Target that etc/targets and libdb files are created for */
+    public static final String TARGET = "linux_x86_64_debug";
+
+    /** Parameters */
+    private int repositories = 50, headers = 8, depth = 4, fanOut = 3, fanIn = 3;
+    private long seed = 42;
+
+    /** Root directory of workspace */
+    private final File root;
+
+    /** Public headers of repositories in previous layers (relative to sources/cpp) */
+    private final List<String> publicHeaders = new ArrayList<String>();
+
+    /** Number of generated files */
+    private int fileCount;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: WorkspaceGenerator <directory> [--repositories=N] [--headers=N] [--depth=N] [--fan-out=N] [--fan-in=N] [--seed=N]");
+            System.exit(-1);
+        }
+        WorkspaceGenerator generator = new WorkspaceGenerator(new File(args[0]));
+        generator.parseOptions(Arrays.asList(args).subList(1, args.length));
+        generator.generate();
+    }
+
+    /**
+     * @param root Root directory of workspace
+     */
+    public WorkspaceGenerator(File root) {
+        this.root = root;
+    }
+
+    /**
+     * @param options Options (see class documentation)
+     */
+    public void parseOptions(List<String> options) {
+        for (String option : options) {
+            String value = option.substring(option.indexOf('=') + 1);
+            if (option.startsWith("--repositories=")) {
+                repositories = Integer.parseInt(value);
+            } else if (option.startsWith("--headers=")) {
+                headers = Integer.parseInt(value);
+            } else if (option.startsWith("--depth=")) {
+                depth = Integer.parseInt(value);
+            } else if (option.startsWith("--fan-out=")) {
+                fanOut = Integer.parseInt(value);
+            } else if (option.startsWith("--fan-in=")) {
+                fanIn = Integer.parseInt(value);
+            } else if (option.startsWith("--seed=")) {
+                seed = Long.parseLong(value);
+            } else {
+                throw new RuntimeException("Unknown option: " + option);
+            }
+        }
+        if (repositories < 1 || headers < 1 || depth < 1 || fanIn < 1 || fanOut < 0) {
+            throw new RuntimeException("Invalid parameters");
+        }
+    }
+
+    /**
+     * Generates workspace (files of a previously generated workspace are overwritten)
+     */
+    public void generate() throws Exception {
+        long start = System.currentTimeMillis();
+        Random random = new Random(seed);
+        write("etc/targets/" + TARGET, "# synthetic benchmark target\n");
+        write("make_builder/etc/libdb." + TARGET, "pthread: -lpthread\nzlib: -lz\nqt: -DQT_SHARED -I/usr/include/qt4 -lQtCore -lQtGui\n");
+
+        int repository = 0;
+        for (int layer = 0; layer < depth; layer++) {
+            String category = layer == 0 ? "rrlib" : "libraries";
+            int layerSize = repositories / depth + (layer < repositories % depth ? 1 : 0);
+            List<String> layerHeaders = new ArrayList<String>();
+            for (int i = 0; i < layerSize; i++, repository++) {
+                String name = "l" + layer + "_" + i;
+                String path = category + "/" + name;
+                for (int h = 0; h < headers; h++) {
+                    String header = path + "/h" + h + ".h";
+                    write("sources/cpp/" + header, createHeader(path, name, h, random));
+                    write("sources/cpp/" + path + "/h" + h + ".cpp", createCpp(path, name, h));
+                    if (h < fanIn) {
+                        layerHeaders.add(header);
+                    }
+                }
+                boolean qt = repository % 10 == 9;
+                if (qt) {
+                    write("sources/cpp/" + path + "/tWidget.h", "#ifndef __" + name + "__tWidget_h__\n#define __" + name + "__tWidget_h__\n\n#include \"" + path + "/h0.h\"\n\n" +
+                          "class tWidget : public QWidget\n{\n  Q_OBJECT\n\npublic:\n  tWidget();\n};\n\n#endif\n");
+                }
+                StringBuilder makeXml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<targets>\n\n");
+                String libs = qt ? "qt" : (repository % 3 == 0 ? "pthread" : "");
+                String flags = repository % 3 == 2 ? (" cxxflags=\"-DUSE_" + name + " -I/opt/include\" ldflags=\"-lm\"") : "";
+                makeXml.append("  <" + (layer == 0 ? "rrlib" : "library") + (libs.length() > 0 ? (" libs=\"" + libs + "\"") : "") + flags + ">\n");
+                makeXml.append("    <sources>\n      *.h\n      *.cpp\n    </sources>\n  </" + (layer == 0 ? "rrlib" : "library") + ">\n\n");
+                if (repository % 3 == 1) {
+                    write("sources/cpp/" + path + "/tests/test_" + name + ".cpp", "#include \"" + path + "/h0.h\"\n\nint main(int argc, char** argv)\n{\n  return 0;\n}\n");
+                    makeXml.append("  <unittest name=\"test\">\n    <sources>tests/test_" + name + ".cpp</sources>\n  </unittest>\n\n");
+                }
+                if (repository % 5 == 2) {
+                    write("sources/cpp/" + path + "/tools/" + name + "_tool.cpp", "#include \"" + path + "/h" + (headers - 1) + ".h\"\n\nint main(int argc, char** argv)\n{\n  return 0;\n}\n");
+                    makeXml.append("  <program name=\"" + name + "_tool\">\n    <sources>tools/" + name + "_tool.cpp</sources>\n  </program>\n\n");
+                }
+                makeXml.append("</targets>\n");
+                write("sources/cpp/" + path + "/make.xml", makeXml.toString());
+            }
+            publicHeaders.addAll(layerHeaders);
+        }
+        System.out.println("Generated " + fileCount + " files in " + repositories + " repositories (" + (System.currentTimeMillis() - start) + "ms)");
+    }
+
+    /**
+     * @return Content of header
+     */
+    private String createHeader(String path, String name, int index, Random random) {
+        String guard = "__" + name + "__h" + index + "_h__";
+        StringBuilder sb = new StringBuilder();
+        sb.append("//\n// Synthetic header generated by WorkspaceGenerator\n//\n");
+        sb.append("#ifndef ").append(guard).append("\n#define ").append(guard).append("\n\n#include <vector>\n");
+        if (index > 0) {
+            sb.append("#include \"").append(path).append("/h").append(index - 1).append(".h\"\n");
+        }
+        for (int i = 0; i < fanOut && publicHeaders.size() > 0; i++) {
+            sb.append("#include \"").append(publicHeaders.get(random.nextInt(publicHeaders.size()))).append("\"\n");
+        }
+        if (index % 2 == 0 && publicHeaders.size() > 0) {
+            sb.append("\n#ifdef _LIB_OPENCV_PRESENT_\n#include \"").append(publicHeaders.get(random.nextInt(publicHeaders.size()))).append("\"\n#else\n");
+            sb.append("#include \"").append(publicHeaders.get(random.nextInt(publicHeaders.size()))).append("\"\n#endif\n");
+        }
+        sb.append("\n/* Class tH").append(index).append(" - see #include \"not/an/include.h\" in comment */\n");
+        sb.append("class tH").append(index).append("\n{\npublic:\n");
+        for (int m = 0; m < 8; m++) {
+            sb.append("  int Get").append(m).append("() const // getter\n  {\n    return value").append(m).append(";\n  }\n");
+        }
+        sb.append("  const char* Name() const\n  {\n    return \"tH").append(index).append(" // not a comment /* \\\"quoted\\\"\";\n  }\n\nprivate:\n");
+        for (int m = 0; m < 8; m++) {
+            sb.append("  int value").append(m).append(";\n");
+        }
+        sb.append("};\n");
+        if (index % 4 == 0) {
+            sb.append("\nenum tMode").append(index).append("\n{\n  eMODE_A,\n  eMODE_B,\n  eMODE_C\n};\n");
+        }
+        sb.append("\n#endif\n");
+        return sb.toString();
+    }
+
+    /**
+     * @return Content of .cpp file
+     */
+    private String createCpp(String path, String name, int index) {
+        return "//\n// Synthetic source file generated by WorkspaceGenerator\n//\n#include \"" + path + "/h" + index + ".h\"\n\n" +
+               "int " + name + "_function" + index + "()\n{\n  return " + index + "; /* result */\n}\n";
+    }
+
+    /**
+     * Write file in workspace
+     *
+     * @param relativePath Path relative to workspace root
+     * @param content Content of file
+     */
+    private void write(String relativePath, String content) throws Exception {
+        File file = new File(root, relativePath);
+        file.getParentFile().mkdirs();
+        Files.writeLines(file, Arrays.asList(content));
+        fileCount++;
+    }
+
+    /**
+     * @return Relative path (to sources/cpp) of a header in the middle of the include graph - touched in benchmarks
+     */
+    public String getMiddleHeader() {
+        int layer = depth / 2;
+        return (layer == 0 ? "rrlib/" : "libraries/") + "l" + layer + "_0/h0.h";
+    }
+}
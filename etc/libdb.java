@@ -0,0 +1,46 @@
+ant-1.10.13.jar: /usr/share/java/ant-1.10.13.jar
+ant-antlr-1.10.13.jar: /usr/share/java/ant-antlr-1.10.13.jar
+ant-antlr.jar: /usr/share/java/ant-antlr.jar
+ant-apache-bcel-1.10.13.jar: /usr/share/java/ant-apache-bcel-1.10.13.jar
+ant-apache-bcel.jar: /usr/share/java/ant-apache-bcel.jar
+ant-apache-bsf-1.10.13.jar: /usr/share/java/ant-apache-bsf-1.10.13.jar
+ant-apache-bsf.jar: /usr/share/java/ant-apache-bsf.jar
+ant-apache-log4j-1.10.13.jar: /usr/share/java/ant-apache-log4j-1.10.13.jar
+ant-apache-log4j.jar: /usr/share/java/ant-apache-log4j.jar
+ant-apache-oro-1.10.13.jar: /usr/share/java/ant-apache-oro-1.10.13.jar
+ant-apache-oro.jar: /usr/share/java/ant-apache-oro.jar
+ant-apache-regexp-1.10.13.jar: /usr/share/java/ant-apache-regexp-1.10.13.jar
+ant-apache-regexp.jar: /usr/share/java/ant-apache-regexp.jar
+ant-apache-resolver-1.10.13.jar: /usr/share/java/ant-apache-resolver-1.10.13.jar
+ant-apache-resolver.jar: /usr/share/java/ant-apache-resolver.jar
+ant-apache-xalan2-1.10.13.jar: /usr/share/java/ant-apache-xalan2-1.10.13.jar
+ant-apache-xalan2.jar: /usr/share/java/ant-apache-xalan2.jar
+ant-bootstrap.jar: /usr/share/java/ant-bootstrap.jar
+ant-commons-logging-1.10.13.jar: /usr/share/java/ant-commons-logging-1.10.13.jar
+ant-commons-logging.jar: /usr/share/java/ant-commons-logging.jar
+ant-commons-net-1.10.13.jar: /usr/share/java/ant-commons-net-1.10.13.jar
+ant-commons-net.jar: /usr/share/java/ant-commons-net.jar
+ant-javamail-1.10.13.jar: /usr/share/java/ant-javamail-1.10.13.jar
+ant-javamail.jar: /usr/share/java/ant-javamail.jar
+ant-jdepend-1.10.13.jar: /usr/share/java/ant-jdepend-1.10.13.jar
+ant-jdepend.jar: /usr/share/java/ant-jdepend.jar
+ant-jmf-1.10.13.jar: /usr/share/java/ant-jmf-1.10.13.jar
+ant-jmf.jar: /usr/share/java/ant-jmf.jar
+ant-jsch-1.10.13.jar: /usr/share/java/ant-jsch-1.10.13.jar
+ant-jsch.jar: /usr/share/java/ant-jsch.jar
+ant-junit-1.10.13.jar: /usr/share/java/ant-junit-1.10.13.jar
+ant-junit.jar: /usr/share/java/ant-junit.jar
+ant-junit4-1.10.13.jar: /usr/share/java/ant-junit4-1.10.13.jar
+ant-junit4.jar: /usr/share/java/ant-junit4.jar
+ant-junitlauncher-1.10.13.jar: /usr/share/java/ant-junitlauncher-1.10.13.jar
+ant-junitlauncher.jar: /usr/share/java/ant-junitlauncher.jar
+ant-launcher-1.10.13.jar: /usr/share/java/ant-launcher-1.10.13.jar
+ant-launcher.jar: /usr/share/java/ant-launcher.jar
+ant-swing-1.10.13.jar: /usr/share/java/ant-swing-1.10.13.jar
+ant-swing.jar: /usr/share/java/ant-swing.jar
+ant-testutil-1.10.13.jar: /usr/share/java/ant-testutil-1.10.13.jar
+ant-testutil.jar: /usr/share/java/ant-testutil.jar
+ant-xz-1.10.13.jar: /usr/share/java/ant-xz-1.10.13.jar
+ant-xz.jar: /usr/share/java/ant-xz.jar
+ant.jar: /usr/share/java/ant.jar
+jrt-fs.jar: /usr/lib/jvm/default-java/lib/jrt-fs.jar
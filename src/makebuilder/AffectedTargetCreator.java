@@ -0,0 +1,148 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import makebuilder.util.Files;
+import makebuilder.util.Util;
+
+/**
+ * @author Max Reichardt
+ *
+ * Post-processor for makefiles.
+ *
+ * Creates phony targets for the build entities affected by a set of changed files
+ * (e.g. the output of 'git diff --name-only' - see --changed=<file>):
+ *
+ * 'affected' builds all affected build entities and all build entities that depend on them.
+ * 'affected-tests' runs the affected unit tests (see UnitTestTargetCreator).
+ *
+ * Files are mapped to build entities via the include graph and the sources of build entities.
+ * Changed build files (make.xml, SConscript) affect all build entities they define.
+ * Changes to files that influence all build entities (see isGlobal()) affect everything.
+ */
+public class AffectedTargetCreator {
+
+    /** Names of phony targets */
+    public static final String AFFECTED = "affected", AFFECTED_TESTS = "affected-tests";
+
+    /** Home directory */
+    private final File home;
+
+    /**
+     * @param home Home directory (changed file names may be relative to it)
+     */
+    public AffectedTargetCreator(File home) {
+        this.home = home;
+    }
+
+    /**
+     * Reads list of changed files
+     *
+     * @param fileList File with changed files (one per line) - "-" for stdin
+     * @return Changed files (relative to home directory - or absolute if outside of it)
+     */
+    public List<String> readChangedFiles(String fileList) throws Exception {
+        InputStream is = fileList.equals("-") ? System.in : new FileInputStream(fileList);
+        List<String> result = new ArrayList<String>();
+        String homePath = home.getAbsolutePath() + File.separator;
+        for (String line : Files.readLines(is)) {
+            line = line.trim();
+            if (line.length() == 0) {
+                continue;
+            }
+            if ((!line.startsWith(File.separator)) && (!new File(home, line).exists()) && new File(line).exists()) {
+                line = new File(line).getAbsolutePath(); // relative to current directory
+            }
+            if (line.startsWith(homePath)) {
+                line = line.substring(homePath.length());
+            }
+            result.add(line);
+        }
+        if (is != System.in) {
+            is.close();
+        }
+        return result;
+    }
+
+    /**
+     * @param fileName Name of changed file
+     * @return Does a change to this file affect all build entities?
+     */
+    public boolean isGlobal(String fileName) {
+        String name = new File(fileName).getName();
+        return name.startsWith("libdb.") || fileName.contains("etc/targets/") || fileName.startsWith("make_builder/");
+    }
+
+    /**
+     * Create 'affected' and 'affected-tests' phony targets
+     *
+     * @param mf Makefile
+     * @param scanner Source scanner with all files
+     * @param buildEntities All build entities (in build order)
+     * @param changedFiles Changed files (relative to home directory)
+     * @return Affected build entities
+     */
+    public Collection<BuildEntity> createTargets(Makefile mf, SourceScanner scanner, List<BuildEntity> buildEntities, List<String> changedFiles) {
+        List<SrcFile> changed = new ArrayList<SrcFile>();
+        List<BuildEntity> changedEntities = new ArrayList<BuildEntity>();
+        for (String fileName : changedFiles) {
+            if (isGlobal(fileName)) {
+                changedEntities.addAll(buildEntities);
+                break;
+            }
+            SrcFile sf = scanner.find(fileName);
+            if (sf != null) {
+                changed.add(sf);
+            }
+            for (BuildEntity be : buildEntities) {
+                if (be.buildFile == sf || (sf == null && fileName.startsWith(be.buildFile.dir.relative + File.separator))) {
+                    changedEntities.add(be); // build file changed - or file that we do not know (e.g. deleted) in build entity's directory
+                }
+            }
+        }
+
+        Set<BuildEntity> affected = new ReverseDependencyIndex(scanner.getAllFiles(), buildEntities).getAffectedEntities(changed, changedEntities);
+        Makefile.Target affectedTarget = mf.addPhonyTarget(AFFECTED);
+        Makefile.Target affectedTestsTarget = mf.addPhonyTarget(AFFECTED_TESTS);
+        List<BuildEntity> result = new ArrayList<BuildEntity>();
+        for (BuildEntity be : buildEntities) {
+            if (affected.contains(be) && (!be.missingDep) && be.target != null) {
+                result.add(be);
+                affectedTarget.addDependency(be.getTarget());
+                if (be.isUnitTest()) {
+                    String runTarget = UnitTestTargetCreator.getRunTargetName(be);
+                    affectedTestsTarget.addDependency(mf.getPhonyTarget(runTarget) != null ? runTarget : be.getTarget());
+                }
+            }
+        }
+        System.out.println(Util.color(result.size() + " of " + buildEntities.size() + " build entities are affected by " + changedFiles.size() + " changed files (make " + AFFECTED + ")", Util.Color.GREEN, false));
+        return result;
+    }
+}
@@ -23,9 +23,14 @@ package makebuilder;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import makebuilder.handler.CppHandler;
 import makebuilder.libdb.ExtLib;
@@ -33,6 +38,7 @@ import makebuilder.libdb.LibDB;
 import makebuilder.libdb.PkgConfig;
 import makebuilder.util.AddOrderSet;
 import makebuilder.util.CCOptions;
+import makebuilder.util.StronglyConnectedComponents;
 import makebuilder.util.Util;
 import makebuilder.util.Util.Color;
 
@@ -89,17 +95,17 @@ public abstract class BuildEntity {
     /** Start scripts for this build entity */
     public List<StartScript> startScripts = new ArrayList<StartScript>();
 
-    /** "Stack" for cycle check */
-    private static ArrayList<BuildEntity> cycleCheckStack = new ArrayList<BuildEntity>(100);
-
     /** Search for dependencies automatically */
     public boolean autoDependencies;
 
     /** Error message id */
     public int errorMessageId = -1;
 
-    /** Stores result of cycle checks: 1 if first cycle check was successful; 2 after second test was successful */
-    private int checkedForCycles = 0;
+    /**
+     * Include paths and link libraries of this entity and all of its dependencies (computed lazily - see getters).
+     * Reset whenever dependencies change (see invalidateTransitiveOptions()).
+     */
+    private Set<String> transitiveIncludePaths, transitiveLinkLibs;
 
     /**
      * @param tb Reference to main builder instance
@@ -136,47 +142,112 @@ public abstract class BuildEntity {
     }
 
     /**
-     * Check dependency tree for cycles
+     * Check dependency graph for cycles.
+     * Computes strongly connected components in linear time - and reports all cycles at once.
+     * Exits if any cycles are found.
      *
-     * @param cycleCheckRun Number of cycle check run
+     * @param buildEntities All build entities
+     * @return Build entities in topological order (every entity comes after all of its dependencies)
      */
-    public void checkForCycles(int cycleCheckRun) {
-        if (cycleCheckRun == checkedForCycles) {
-            return;
+    public static List<BuildEntity> checkForCycles(List<BuildEntity> buildEntities) {
+        List<List<BuildEntity>> components = StronglyConnectedComponents.compute(buildEntities, new StronglyConnectedComponents.Graph<BuildEntity>() {
+            @Override
+            public List<BuildEntity> getSuccessors(BuildEntity node) {
+                return node.dependencies;
+            }
+        });
+
+        List<BuildEntity> result = new ArrayList<BuildEntity>(buildEntities.size());
+        int cycleCount = 0;
+        for (List<BuildEntity> component : components) {
+            BuildEntity first = component.get(0);
+            if (component.size() > 1 || first.dependencies.contains(first)) {
+                cycleCount++;
+                System.out.println("Detected cyclic dependency: ");
+                List<BuildEntity> cycle = findCycle(first, component);
+                for (int i = 0; i < cycle.size(); i++) {
+                    BuildEntity be = cycle.get(i);
+                    String includeChain = be.getIncludeChain(cycle.get((i + 1) % cycle.size()));
+                    System.out.println("-> " + be.getTargetFilename() +  " [" + be.getRootDir().toString() + "]" + (includeChain == null ? "" : ("   (" + includeChain + ")")));
+                }
+                System.out.println("-> " + first.getTargetFilename() +  " [" + first.getRootDir().toString() + "]");
+                if (component.size() > cycle.size()) {
+                    System.out.print("   (further build entities in this cycle:");
+                    for (BuildEntity be : component) {
+                        if (!cycle.contains(be)) {
+                            System.out.print(" " + be.getTargetFilename());
+                        }
+                    }
+                    System.out.println(")");
+                }
+            }
+            result.addAll(component);
         }
+        if (cycleCount > 0) {
+            System.out.println(cycleCount + " cyclic dependenc" + (cycleCount == 1 ? "y" : "ies") + " detected.");
+            throw new MakeFileBuilder.AbortException(-1);
+        }
+        return result;
+    }
 
-        if (cycleCheckStack.contains(this)) {
-            System.out.println("Detected cyclic dependency: ");
-            for (int i = 0; i < cycleCheckStack.size(); i++) {
-                BuildEntity be = cycleCheckStack.get(i);
-                BuildEntity next = i + 1 < cycleCheckStack.size() ? cycleCheckStack.get(i + 1) : this;
-                ArrayList<SrcFile> filesToCheck = new ArrayList<SrcFile>(be.sources);
-                SrcFile srcFile = null;
-                SrcFile srcFileDep = null;
-                for (int j = 0; j < filesToCheck.size(); j++) {
-                    SrcFile sf = filesToCheck.get(j);
-                    for (SrcFile sfdep : sf.dependencies) {
-                        if (sfdep.getOwner() == next) {
-                            srcFile = sf;
-                            srcFileDep = sfdep;
-                            break;
-                        } else if (sfdep.getOwner() == this && (!filesToCheck.contains(sfdep))) {
-                            filesToCheck.add(sfdep);
-                        }
+    /**
+     * Finds shortest cycle from build entity back to itself (breadth-first search)
+     *
+     * @param start Build entity to start from
+     * @param component Strongly connected component that build entity belongs to
+     * @return Build entities on cycle (starting with start)
+     */
+    private static List<BuildEntity> findCycle(BuildEntity start, List<BuildEntity> component) {
+        Map<BuildEntity, BuildEntity> predecessor = new HashMap<BuildEntity, BuildEntity>();
+        ArrayList<BuildEntity> queue = new ArrayList<BuildEntity>();
+        queue.add(start);
+        for (int i = 0; i < queue.size(); i++) {
+            BuildEntity be = queue.get(i);
+            for (BuildEntity dep : be.dependencies) {
+                if (dep == start) {
+                    ArrayList<BuildEntity> cycle = new ArrayList<BuildEntity>();
+                    for (BuildEntity b = be; b != null; b = predecessor.get(b)) {
+                        cycle.add(0, b);
                     }
+                    return cycle;
+                }
+                if (component.contains(dep) && (!predecessor.containsKey(dep))) {
+                    predecessor.put(dep, be);
+                    queue.add(dep);
                 }
-                System.out.println("-> " + be.getTargetFilename() +  " [" + be.getRootDir().toString() + "]" + (srcFile == null ? "" : ("   (" + srcFile.toString() + "  includes  " + srcFileDep.toString() + ")")));
             }
-            System.out.println("-> " + getTargetFilename() +  " [" + getRootDir().toString() + "]");
-            System.exit(-1);
         }
+        throw new RuntimeException("No cycle found"); // cannot happen for strongly connected components
+    }
 
-        cycleCheckStack.add(this);
-        for (BuildEntity be : dependencies) {
-            be.checkForCycles(cycleCheckRun);
+    /**
+     * Finds chain of includes that causes dependency to another build entity
+     *
+     * @param dependency Build entity this entity depends on
+     * @return String with include chain (e.g. 'a.cpp  includes  b.h  includes  c.h') - or null if dependency is not caused by includes
+     */
+    private String getIncludeChain(BuildEntity dependency) {
+        Map<SrcFile, SrcFile> includedBy = new HashMap<SrcFile, SrcFile>();
+        ArrayList<SrcFile> filesToCheck = new ArrayList<SrcFile>(sources);
+        for (SrcFile sf : sources) {
+            includedBy.put(sf, null);
+        }
+        for (int i = 0; i < filesToCheck.size(); i++) {
+            SrcFile sf = filesToCheck.get(i);
+            for (SrcFile sfdep : sf.getDependencies()) {
+                if (sfdep.getOwner() == dependency) {
+                    String chain = sf.toString() + "  includes  " + sfdep.toString();
+                    for (SrcFile s = includedBy.get(sf); s != null; s = includedBy.get(s)) {
+                        chain = s.toString() + "  includes  " + chain;
+                    }
+                    return chain;
+                } else if ((sfdep.getOwner() == this || sfdep.getOwner() == null) && (!includedBy.containsKey(sfdep))) {
+                    includedBy.put(sfdep, sf);
+                    filesToCheck.add(sfdep);
+                }
+            }
         }
-        cycleCheckStack.remove(this);
-        checkedForCycles = cycleCheckRun;
+        return null;
     }
 
     /**
@@ -232,6 +303,13 @@ public abstract class BuildEntity {
         if (getFinalHandler() != CppHandler.class) {
             return;
         }
+
+        // transitive options are based on options before they are computed - so make sure they exist already
+        getTransitiveIncludePaths();
+        if (LINKING_AS_NEEDED && isLibrary()) {
+            getTransitiveLinkLibs();
+        }
+
         for (ExtLib el : directExtlibs) {
             opts.merge(el.ccOptions, true);
         }
@@ -242,48 +320,61 @@ public abstract class BuildEntity {
             if (!be.isLibrary()) {
                 throw new RuntimeException(toString() + " depends on non-library " + be.toString());
             }
-            String s = be.getTarget();
-            target.addDependency(s);
-            s = s.substring(s.lastIndexOf("/lib") + 4, Math.max(s.lastIndexOf(".so"), s.lastIndexOf(".$(LIB_EXTENSION)")));
-            opts.libs.add(s);
-
-            ArrayList<BuildEntity> visited = new ArrayList<BuildEntity>();
-            addIndirectIncludePaths(be, visited);
-
+            target.addDependency(be.getTarget());
+            opts.includePaths.addAll(be.getTransitiveIncludePaths());
             if (LINKING_AS_NEEDED) {
-                visited.clear();
-                addIndirectDependencyLibs(be, visited);
+                opts.libs.addAll(be.getTransitiveLinkLibs());
+            } else {
+                opts.libs.add(getLinkName(be.getTarget()));
             }
         }
     }
 
-    public void addIndirectDependencyLibs(BuildEntity be, ArrayList<BuildEntity> visited) {
-        if (visited.contains(be)) {
-            return;
-        }
-
-        String s = be.getTarget();
-        s = s.substring(s.lastIndexOf("/lib") + 4, Math.max(s.lastIndexOf(".so"), s.lastIndexOf(".$(LIB_EXTENSION)")));
-        opts.libs.add(s);
-        visited.add(be);
-        for (BuildEntity be2 : be.dependencies) {
-            addIndirectDependencyLibs(be2, visited);
-        }
-        for (String lib : be.opts.libs) {
-            opts.libs.add(lib);
+    /**
+     * Include paths of this entity and all of its (indirect) dependencies.
+     * Computed once - from the dependencies' results - and shared by all entities that depend on this one.
+     * (must be called before options of this entity are computed - computeOptions makes sure of this)
+     *
+     * @return Transitive include paths
+     */
+    public synchronized Set<String> getTransitiveIncludePaths() {
+        if (transitiveIncludePaths == null) {
+            TreeSet<String> result = new TreeSet<String>(opts.includePaths);
+            for (BuildEntity be : dependencies) {
+                result.addAll(be.getTransitiveIncludePaths());
+            }
+            transitiveIncludePaths = Collections.unmodifiableSet(result);
         }
+        return transitiveIncludePaths;
     }
 
-    public void addIndirectIncludePaths(BuildEntity be, ArrayList<BuildEntity> visited) {
-        if (visited.contains(be)) {
-            return;
+    /**
+     * Libraries to link when linking against this entity: the entity itself, then - depth-first -
+     * the libraries of all of its (indirect) dependencies, then its own libraries (in link order).
+     * Computed once - from the dependencies' results - and shared by all entities that depend on this one.
+     * (must be called before options of this entity are computed - computeOptions makes sure of this)
+     *
+     * @return Transitive link libraries
+     */
+    public synchronized Set<String> getTransitiveLinkLibs() {
+        if (transitiveLinkLibs == null) {
+            AddOrderSet<String> result = new AddOrderSet<String>();
+            result.add(getLinkName(getTarget()));
+            for (BuildEntity be : dependencies) {
+                result.addAll(be.getTransitiveLinkLibs());
+            }
+            result.addAll(opts.libs);
+            transitiveLinkLibs = Collections.unmodifiableSet(result);
         }
+        return transitiveLinkLibs;
+    }
 
-        opts.includePaths.addAll(be.opts.includePaths);
-        visited.add(be);
-        for (BuildEntity be2 : be.dependencies) {
-            addIndirectIncludePaths(be2, visited);
-        }
+    /**
+     * @param target Library target (e.g. $(TARGET_LIB)/librrlib_util.so)
+     * @return Name to link library with (e.g. rrlib_util)
+     */
+    private static String getLinkName(String target) {
+        return target.substring(target.lastIndexOf("/lib") + 4, Math.max(target.lastIndexOf(".so"), target.lastIndexOf(".$(LIB_EXTENSION)")));
     }
 
     /**
@@ -294,10 +385,21 @@ public abstract class BuildEntity {
         for (BuildEntity be : optionalDependencies) {
             if (!be.missingDep && (!dependencies.contains(be))) {
                 dependencies.add(be);
+                invalidateTransitiveOptions();
             }
         }
     }
 
+    /**
+     * Discards transitive include paths and link libraries computed so far (called whenever dependencies change).
+     * As dependent entities' values are computed from this entity's, they must not have been computed yet either -
+     * which is the case as long as dependencies are only modified before options are computed (see MakeFileBuilder).
+     */
+    private synchronized void invalidateTransitiveOptions() {
+        transitiveIncludePaths = null;
+        transitiveLinkLibs = null;
+    }
+
     /**
      * @return Directory in which build file that specifies this build entity is located
      */
@@ -322,10 +424,10 @@ public abstract class BuildEntity {
             }
         }
         for (int i = 0; i < libs.size(); i++) {
-            resolveDependency(false, buildEntities, libs.get(i), builder);
+            resolveDependency(false, libs.get(i), builder);
         }
         for (String dep : optionalLibs) {
-            resolveDependency(true, buildEntities, dep, builder);
+            resolveDependency(true, dep, builder);
         }
     }
 
@@ -359,12 +461,12 @@ public abstract class BuildEntity {
         }
 
         sf.processing = true;
-        checkForDependencies2(sf, builder, optional, sf.dependencies);
+        checkForDependencies2(sf, builder, optional, sf.getDependencies());
         if (missingDep) {
             sf.processing = false;
             return;
         }
-        checkForDependencies2(sf, builder, true, sf.optionalDependencies);
+        checkForDependencies2(sf, builder, true, sf.getOptionalDependencies());
         sf.processing = false;
     }
 
@@ -393,6 +495,7 @@ public abstract class BuildEntity {
             if (owner != null && owner != this && (!dependencies.contains(owner)) && (!resultList.contains(owner))) {
                 //System.out.println("Adding " + owner.toString() + " to " + toString() + " because of " + sfDep.toString());
                 resultList.add(owner);
+                invalidateTransitiveOptions();
             } else if (owner == null || owner == this) {
                 checkForDependencies(sfDep, builder, optional);
             }
@@ -406,30 +509,30 @@ public abstract class BuildEntity {
      * Resolve depency
      *
      * @param optional Optional dependency?
-     * @param buildEntities All existing build entities
      * @param dep Dependency to find
      * @param builder MakeFileBuilder instance
      */
-    private void resolveDependency(boolean optional, List<BuildEntity> buildEntities, String dep, MakeFileBuilder builder) throws Exception {
-
-        for (BuildEntity be : buildEntities) { // local dependency?
-            if (be.getReferenceName().equals(dep)) {
-                if (optional) {
-                    optionalDependencies.add(be);
-                } else if (!dependencies.contains(be)) {
-                    dependencies.add(be);
-                }
-                return;
+    private void resolveDependency(boolean optional, String dep, MakeFileBuilder builder) throws Exception {
+
+        BuildEntity be = builder.getBuildEntityIndex().getByReferenceName(dep);
+        if (be != null) { // local dependency?
+            if (optional) {
+                optionalDependencies.add(be);
+            } else if (!dependencies.contains(be)) {
+                dependencies.add(be);
+                invalidateTransitiveOptions();
             }
+            return;
         }
 
         // first, try libdb, so it can be used to override pkg-config, as some pkg-config might be wrong
         if (LibDB.available(dep)) { // External library dependency?
             ExtLib xl = LibDB.getLib(dep);
             directExtlibs.add(xl);
-            for (BuildEntity be : xl.dependencies) {
-                if (!dependencies.contains(be)) {
-                    dependencies.add(be);
+            for (BuildEntity dependency : xl.dependencies) {
+                if (!dependencies.contains(dependency)) {
+                    dependencies.add(dependency);
+                    invalidateTransitiveOptions();
                 }
             }
             return;
@@ -437,9 +540,10 @@ public abstract class BuildEntity {
 
             ExtLib xl = PkgConfig.getLib(dep);
             directExtlibs.add(xl);
-            for (BuildEntity be : xl.dependencies) {
-                if (!dependencies.contains(be)) {
-                    dependencies.add(be);
+            for (BuildEntity dependency : xl.dependencies) {
+                if (!dependencies.contains(dependency)) {
+                    dependencies.add(dependency);
+                    invalidateTransitiveOptions();
                 }
             }
             System.out.println(Util.color("Dependency found using pkg-config: " + dep, Util.Color.GREEN, false));
@@ -531,7 +635,7 @@ public abstract class BuildEntity {
     }
 
     /**
-     * @return Is this a unit test (program) that should be executed at compile time?
+     * @return Is this a unit test (program) that should be executed after it is built? (see UnitTestTargetCreator)
      */
     public boolean isUnitTest() {
         return false;
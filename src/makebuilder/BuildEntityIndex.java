@@ -0,0 +1,118 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Max Reichardt
+ *
+ * Index over all build entities - created once after all build files have been loaded.
+ *
+ * Allows looking up build entities by reference name, target and target file name.
+ * If several entities have the same key, the first one (in order of the build entity list) is returned
+ * (as the linear searches did that were replaced by this index).
+ */
+public class BuildEntityIndex {
+
+    /** Build entities by reference name */
+    private final Map<String, BuildEntity> byReferenceName = new HashMap<String, BuildEntity>();
+
+    /** Build entities by target */
+    private final Map<String, BuildEntity> byTarget = new HashMap<String, BuildEntity>();
+
+    /** Build entities by target file name */
+    private final Map<String, BuildEntity> byTargetFilename = new HashMap<String, BuildEntity>();
+
+    /** Position of every build entity in build entity list */
+    private final Map<BuildEntity, Integer> positions = new IdentityHashMap<BuildEntity, Integer>();
+
+    /** Pairs of build entities with the same target */
+    private final List<BuildEntity[]> duplicateTargets = new ArrayList<BuildEntity[]>();
+
+    /**
+     * @param buildEntities All build entities
+     */
+    public BuildEntityIndex(Collection<BuildEntity> buildEntities) {
+        for (BuildEntity be : buildEntities) {
+            positions.put(be, positions.size());
+            String target = be.getTarget();
+            BuildEntity existing = byTarget.get(target);
+            if (existing != null) {
+                duplicateTargets.add(new BuildEntity[] {existing, be});
+                continue;
+            }
+            byTarget.put(target, be);
+            String filename = be.getTargetFilename();
+            if (!byTargetFilename.containsKey(filename)) {
+                byTargetFilename.put(filename, be);
+            }
+            String referenceName = be.getReferenceName();
+            if (!byReferenceName.containsKey(referenceName)) {
+                byReferenceName.put(referenceName, be);
+            }
+        }
+    }
+
+    /**
+     * @param referenceName Reference name (e.g. from make.xml dependencies)
+     * @return First build entity with this reference name - or null if there is none
+     */
+    public BuildEntity getByReferenceName(String referenceName) {
+        return byReferenceName.get(referenceName);
+    }
+
+    /**
+     * @param target Target (relative path)
+     * @return Build entity with this target - or null if there is none
+     */
+    public BuildEntity getByTarget(String target) {
+        return byTarget.get(target);
+    }
+
+    /**
+     * @param filenames Target file names (without path)
+     * @return First build entity that has one of the specified target file names - or null if there is none
+     */
+    public BuildEntity getByTargetFilename(String... filenames) {
+        BuildEntity result = null;
+        for (String filename : filenames) {
+            BuildEntity be = byTargetFilename.get(filename);
+            if (be != null && (result == null || positions.get(be) < positions.get(result))) {
+                result = be;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Pairs of build entities with the same target (empty if there are none)
+     */
+    public List<BuildEntity[]> getDuplicateTargets() {
+        return duplicateTargets;
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import makebuilder.libdb.PkgConfig;
+import makebuilder.util.Files;
+import makebuilder.util.Toolchain;
+import makebuilder.util.Util;
+
+/**
+ * @author Max Reichardt
+ *
+ * Resident makebuilder process - and thin client to talk to it.
+ *
+ * The daemon is started with the usual command line plus '--daemon', e.g.
+ *   java -jar make_builder/dist/build.jar makebuilder.ext.finroc.FinrocBuilder --daemon &
+ * It listens on a Unix domain socket (see getSocketFile() - located in $XDG_RUNTIME_DIR/make_builder or ~/.cache/make_builder)
+ * and processes one request at a time.
+ * Its JVM stays warm - and so do libdb, pkg-config and toolchain information and
+ * the information on all scanned files (SourceScanner retains it in memory instead of loading and saving the cache file).
+ * For every request, a new builder instance is created and source files are scanned again -
+ * but only files with a different modification time or size are processed again.
+ * Build entities and handlers are created anew for every request, as building the makefile modifies them.
+ *
+ * Client usage (from the home directory):
+ *   java -cp make_builder/dist/build.jar makebuilder.BuilderDaemon regenerate [options]   (generate Makefile)
+ *   java -cp make_builder/dist/build.jar makebuilder.BuilderDaemon query <file>[,<file>...] (print impact of changing files - see --impact)
+ *   java -cp make_builder/dist/build.jar makebuilder.BuilderDaemon affected <file list>     (generate Makefile with 'affected' targets - see --changed)
+ *   java -cp make_builder/dist/build.jar makebuilder.BuilderDaemon stop
+ *
+ * Requests are rejected if the client's environment differs from the daemon's in a relevant variable (see RELEVANT_ENVIRONMENT).
+ * Caches are saved to disk when the daemon is stopped.
+ */
+public class BuilderDaemon {
+
+    /** Commands */
+    public static final String REGENERATE = "regenerate", QUERY = "query", AFFECTED = "affected", STOP = "stop";
+
+    /** Types of messages from daemon to client */
+    private static final int EXIT = 0, OUTPUT = 1, ERROR_OUTPUT = 2;
+
+    /** Prefixes of environment variables that influence the generated makefile */
+    private static final String[] RELEVANT_ENVIRONMENT = {"FINROC_", "MCA", "PKG_CONFIG_", "SYSTEM_ROOT", "PATH", "LD_LIBRARY_PATH"};
+
+    /**
+     * @param home Home directory
+     * @return Socket file of daemon for home directory (in a directory that only the current user can access)
+     * @throws IOException Thrown if socket directory cannot be created or is not private to the current user
+     */
+    public static File getSocketFile(File home) throws IOException {
+        String runtimeDir = System.getenv("XDG_RUNTIME_DIR");
+        File dir = (runtimeDir != null && runtimeDir.length() > 0) ? new File(runtimeDir, "make_builder") : new File(System.getProperty("user.home"), ".cache" + File.separator + "make_builder");
+        Path path = dir.toPath();
+        if (!java.nio.file.Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            java.nio.file.Files.createDirectories(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        }
+        if (!java.nio.file.Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException(dir + " is not a directory");
+        }
+        checkOwner(path);
+        java.nio.file.Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwx------"));
+        return new File(dir, "mbuild_" + Math.abs(home.getAbsolutePath().hashCode()) + ".sock");
+    }
+
+    /**
+     * Checks that file is owned by the current user - so that no other user can impersonate the daemon
+     *
+     * @param path File (symbolic links are not followed)
+     * @throws IOException Thrown if file is owned by another user
+     */
+    private static void checkOwner(Path path) throws IOException {
+        UserPrincipal owner = java.nio.file.Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(Util.whoami());
+        if (!owner.equals(user)) {
+            throw new IOException(path + " is owned by " + owner.getName() + " - not by " + user.getName());
+        }
+    }
+
+    /**
+     * Connects to daemon
+     *
+     * @param socketFile Socket file of daemon
+     * @return Connection to daemon
+     * @throws IOException Thrown if there is no daemon - or socket does not belong to current user
+     */
+    private static SocketChannel connect(File socketFile) throws IOException {
+        checkOwner(socketFile.toPath());
+        return SocketChannel.open(UnixDomainSocketAddress.of(socketFile.toPath()));
+    }
+
+    /**
+     * @return Environment variables that influence the generated makefile
+     */
+    static Map<String, String> getRelevantEnvironment() {
+        Map<String, String> result = new TreeMap<String, String>();
+        for (Map.Entry<String, String> entry : System.getenv().entrySet()) {
+            for (String prefix : RELEVANT_ENVIRONMENT) {
+                if (entry.getKey().startsWith(prefix)) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs daemon (called by MakeFileBuilder.main() if --daemon is specified)
+     *
+     * @param args Command line arguments (including --daemon)
+     */
+    public static void serve(String[] args) throws Exception {
+        final List<String> builderArgs = new ArrayList<String>(Arrays.asList(args));
+        builderArgs.remove("--daemon");
+        final File socketFile = getSocketFile(MakeFileBuilder.HOME);
+        if (socketFile.exists()) {
+            try {
+                connect(socketFile).close();
+                System.out.println(Util.color("Makebuilder daemon is already running (socket " + socketFile + ")", Util.Color.RED, true));
+                System.exit(1);
+            } catch (IOException e) {
+                socketFile.delete(); // stale socket
+            }
+        }
+
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketFile.toPath()));
+        SourceScanner.setRetainInfo(true);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                socketFile.delete();
+                SourceScanner.saveRetainedInfo(MakeFileBuilder.HOME);
+                PkgConfig.saveCache();
+                Toolchain.saveCache();
+            }
+        });
+        Map<String, String> environment = getRelevantEnvironment();
+        System.out.println(Util.color("Makebuilder daemon listening on " + socketFile, Util.Color.GREEN, true));
+
+        PrintStream out = System.out, err = System.err;
+        boolean running = true;
+        while (running) {
+            SocketChannel client = server.accept();
+            DataOutputStream clientStream = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+            try {
+                running = handleRequest(client, clientStream, builderArgs, environment);
+            } catch (Exception e) {
+                e.printStackTrace(err);
+                try {
+                    sendExit(clientStream, 1);
+                } catch (IOException e2) {
+                    // client is gone
+                }
+            } finally {
+                System.setOut(out);
+                System.setErr(err);
+                client.close();
+            }
+        }
+        server.close();
+        System.out.println("Makebuilder daemon stopped");
+        System.exit(0);
+    }
+
+    /**
+     * Processes request from client
+     *
+     * @param client Connection to client
+     * @param out Stream to send messages to client
+     * @param builderArgs Command line arguments of daemon (without --daemon)
+     * @param environment Relevant environment of daemon
+     * @return False if daemon should stop
+     */
+    private static boolean handleRequest(SocketChannel client, DataOutputStream out, List<String> builderArgs, Map<String, String> environment) throws Exception {
+        DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+        String command = in.readUTF();
+        List<String> args = new ArrayList<String>(builderArgs);
+        for (int i = in.readInt(); i > 0; i--) {
+            args.add(in.readUTF());
+        }
+        Map<String, String> clientEnvironment = new TreeMap<String, String>();
+        for (int i = in.readInt(); i > 0; i--) {
+            clientEnvironment.put(in.readUTF(), in.readUTF());
+        }
+
+        PrintStream clientOut = new PrintStream(new MessageOutputStream(out, OUTPUT), true);
+        PrintStream clientErr = new PrintStream(new MessageOutputStream(out, ERROR_OUTPUT), true);
+        if (command.equals(STOP)) {
+            sendExit(out, 0);
+            return false;
+        }
+        if (!clientEnvironment.equals(environment)) {
+            clientErr.println(Util.color("Environment differs from makebuilder daemon's environment. Please restart the daemon.", Util.Color.RED, true));
+            sendExit(out, 1);
+            return true;
+        }
+        if (command.equals(QUERY) || command.equals(AFFECTED)) {
+            if (args.size() == builderArgs.size()) {
+                clientErr.println(Util.color("Command '" + command + "' requires a file argument", Util.Color.RED, true));
+                sendExit(out, 1);
+                return true;
+            }
+            String file = args.remove(args.size() - 1);
+            args.add((command.equals(QUERY) ? "--impact=" : "--changed=") + file);
+        } else if (!command.equals(REGENERATE)) {
+            clientErr.println(Util.color("Unknown command '" + command + "'", Util.Color.RED, true));
+            sendExit(out, 1);
+            return true;
+        }
+
+        // run builder (like a normal makebuilder process would)
+        System.setOut(clientOut);
+        System.setErr(clientErr);
+        long start = System.nanoTime();
+        BuildEntity.LINKING_AS_NEEDED = true;
+        int status = 1;
+        try {
+            status = MakeFileBuilder.execute(args.toArray(new String[0]));
+        } catch (Throwable t) { // e.g. error in static initializer of a handler
+            t.printStackTrace();
+        } finally {
+
+            // reset static state that must not be carried over to the next request
+            Profiler.stop();
+        }
+        clientOut.println("(makebuilder daemon: " + ((System.nanoTime() - start) / 1000000) + " ms)");
+        sendExit(out, status);
+        return true;
+    }
+
+    /**
+     * Sends exit status to client (last message)
+     */
+    private static void sendExit(DataOutputStream out, int status) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(status);
+            out.flush();
+        }
+    }
+
+    /**
+     * Output stream that sends everything written to it as messages of a certain type to the client
+     */
+    private static class MessageOutputStream extends OutputStream {
+
+        /** Stream to client */
+        private final DataOutputStream out;
+
+        /** Message type */
+        private final int type;
+
+        MessageOutputStream(DataOutputStream out, int type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Client: sends command to daemon of current directory and prints its output
+     *
+     * @param args Command and its arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: BuilderDaemon " + REGENERATE + " [options] | " + QUERY + " <files> | " + AFFECTED + " <file list> | " + STOP);
+            System.exit(1);
+        }
+        File socketFile = getSocketFile(new File(".").getAbsoluteFile().getParentFile());
+        SocketChannel channel;
+        try {
+            channel = connect(socketFile);
+        } catch (IOException e) {
+            System.out.println(Util.color("No makebuilder daemon running for this directory (socket " + socketFile + (socketFile.exists() ? (": " + e.getMessage()) : "") + ")", Util.Color.RED, true));
+            System.exit(1);
+            return;
+        }
+
+        // file list from stdin? (daemon cannot read it)
+        List<String> commandArgs = new ArrayList<String>(Arrays.asList(args).subList(1, args.length));
+        if (args[0].equals(AFFECTED) && commandArgs.size() > 0 && commandArgs.get(commandArgs.size() - 1).equals("-")) {
+            File tempFile = File.createTempFile("mbuild_changed", ".txt");
+            tempFile.deleteOnExit();
+            Files.writeLines(tempFile, Files.readLines(System.in));
+            commandArgs.set(commandArgs.size() - 1, tempFile.getAbsolutePath());
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        out.writeUTF(args[0]);
+        out.writeInt(commandArgs.size());
+        for (String arg : commandArgs) {
+            out.writeUTF(arg);
+        }
+        Map<String, String> environment = getRelevantEnvironment();
+        out.writeInt(environment.size());
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue());
+        }
+        out.flush();
+
+        DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+        byte[] buffer = new byte[8192];
+        try {
+            while (true) {
+                int type = in.readByte();
+                if (type == EXIT) {
+                    int status = in.readInt();
+                    channel.close();
+                    System.exit(status);
+                }
+                int length = in.readInt();
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                in.readFully(buffer, 0, length);
+                (type == ERROR_OUTPUT ? System.err : System.out).write(buffer, 0, length);
+                (type == ERROR_OUTPUT ? System.err : System.out).flush();
+            }
+        } catch (EOFException e) {
+            System.out.println(Util.color("Makebuilder daemon terminated while processing request (it needs to be restarted)", Util.Color.RED, true));
+            System.exit(1);
+        }
+    }
+}
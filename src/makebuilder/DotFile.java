@@ -25,20 +25,28 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-
-import makebuilder.util.Files;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 /**
  * @author Max Reichardt
  *
  * Dumps dependency graphs to dot file
+ *
+ * Only edges of the transitive reduction are written
+ * (dependencies that are also indirect dependencies are omitted).
+ * Nodes are labeled with the source lines of code (C/C++) of the build entities.
  */
 public class DotFile {
 
-    private static final boolean SLOCCOUNT_AVAILABLE = new File("/usr/bin/sloccount").exists();
-
     /**
      * Write dot file
      *
@@ -47,9 +55,11 @@ public class DotFile {
      */
     public static void write(File file, List<BuildEntity> buildEntities, SourceScanner scanner) {
         try {
-            for (BuildEntity be : buildEntities) {
-                be.params.put("sloc", "" + getSlocCount(be, scanner));
-            }
+            System.out.println("Counting source lines of code");
+            countSloc(buildEntities, scanner);
+            Map<BuildEntity, BitSet> reachable = new IdentityHashMap<BuildEntity, BitSet>();
+            Map<BuildEntity, Integer> indices = new IdentityHashMap<BuildEntity, Integer>();
+            computeReachability(buildEntities, reachable, indices);
 
             System.out.println("Writing dot file");
             PrintStream ps = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)));
@@ -60,12 +70,12 @@ public class DotFile {
                     continue;
                 }
                 for (BuildEntity dep : be.dependencies) {
-                    if (!hasIndirectDependency(be, dep, be)) {
+                    if (!hasIndirectDependency(be, dep, reachable, indices)) {
                         ps.println("    \"" + createName(be) + "\" -> \"" + createName(dep) + "\";");
                     }
                 }
                 for (BuildEntity odep : be.optionalDependencies) {
-                    if (!be.dependencies.contains(odep) && (!hasIndirectDependency(be, odep, be))) {
+                    if (!be.dependencies.contains(odep) && (!hasIndirectDependency(be, odep, reachable, indices))) {
                         ps.println("    \"" + createName(be) + "\" -> \"" + createName(odep) + "\";");
                     }
                 }
@@ -80,58 +90,131 @@ public class DotFile {
     }
 
     private static String createName(BuildEntity be) {
-        if (SLOCCOUNT_AVAILABLE) {
-            return be.toString() + "\\n" + be.params.get("sloc") + " SLOC";
-        }
-        return be.toString();
+        return be.toString() + "\\n" + be.getParameter("sloc") + " SLOC";
     }
 
-    private static boolean hasIndirectDependency(BuildEntity be, BuildEntity dep, BuildEntity orgBe) {
+    /**
+     * @param be Build entity
+     * @param dep Dependency of build entity
+     * @param reachable Build entities reachable from each build entity (see computeReachability)
+     * @param indices Indices of build entities in bit sets
+     * @return True, if dep is also reachable from be without using the direct edge
+     */
+    private static boolean hasIndirectDependency(BuildEntity be, BuildEntity dep, Map<BuildEntity, BitSet> reachable, Map<BuildEntity, Integer> indices) {
         if (be == dep) {
             return true;
         }
-        boolean result = false;
+        int depIndex = indices.get(dep);
         for (BuildEntity d : be.dependencies) {
-            if (!(be == orgBe && d == dep)) {
-                result |= hasIndirectDependency(d, dep, orgBe);
+            if (d != dep && reachable.get(d).get(depIndex)) {
+                return true;
             }
         }
         for (BuildEntity d : be.optionalDependencies) {
-            if (!(be == orgBe && d == dep)) {
-                result |= hasIndirectDependency(d, dep, orgBe);
+            if (d != dep && reachable.get(d).get(depIndex)) {
+                return true;
             }
         }
-        return result;
+        return false;
     }
 
-    private static String getSlocCount(BuildEntity be, SourceScanner scanner) {
-        String fileList = "";
-        for (SrcFile sf : scanner.getAllFiles()) {
-            if (sf.getOwner() == be) {
-                fileList += " " + sf.relative;
-            }
+    /**
+     * Computes which build entities are reachable from each build entity via (optional) dependencies.
+     * Bit sets are computed in topological order (dependencies first) - so each is the union of its dependencies' sets.
+     *
+     * @param buildEntities List of build entities
+     * @param reachable Map to store result in (build entity => bit set with indices of reachable build entities - including itself)
+     * @param indices Map to store indices of build entities in
+     */
+    private static void computeReachability(List<BuildEntity> buildEntities, Map<BuildEntity, BitSet> reachable, Map<BuildEntity, Integer> indices) {
+        List<BuildEntity> order = new ArrayList<BuildEntity>();
+        for (BuildEntity be : buildEntities) {
+            addInTopologicalOrder(be, order, indices);
+        }
+        for (BuildEntity be : order) {
+            BitSet set = new BitSet(order.size());
+            set.set(indices.get(be));
+            reachable.put(be, set);
         }
 
-        try {
-            System.out.println("sloccount " + fileList);
-            Process p = Runtime.getRuntime().exec("sloccount " + fileList);
-            p.waitFor();
-            List<String> lines = Files.readLines(p.getInputStream());
-            boolean start = false;
-            int count = 0;
-            for (String line : lines) {
-                start |= line.equals("Totals grouped by language (dominant language first):");
-                if (start && (line.startsWith("cpp:") || line.startsWith("ansic:"))) {
-                    line = line.substring(line.indexOf(":") + 1);
-                    line = line.substring(0, line.indexOf("(") - 1);
-                    count += Integer.parseInt(line.trim());
+        // in acyclic graphs, the second pass changes nothing
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BuildEntity be : order) {
+                BitSet set = reachable.get(be);
+                int cardinality = set.cardinality();
+                for (BuildEntity dep : be.dependencies) {
+                    set.or(reachable.get(dep));
+                }
+                for (BuildEntity dep : be.optionalDependencies) {
+                    set.or(reachable.get(dep));
                 }
+                changed |= set.cardinality() != cardinality;
             }
-            return "" + count;
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        return "error";
     }
 
+    /**
+     * Adds build entity to list after all of its (optional) dependencies (depth-first post-order)
+     *
+     * @param be Build entity
+     * @param order List to add build entities to
+     * @param indices Indices of build entities in list (also marks visited build entities)
+     */
+    private static void addInTopologicalOrder(BuildEntity be, List<BuildEntity> order, Map<BuildEntity, Integer> indices) {
+        if (indices.containsKey(be)) {
+            return;
+        }
+        indices.put(be, -1);
+        for (BuildEntity dep : be.dependencies) {
+            addInTopologicalOrder(dep, order, indices);
+        }
+        for (BuildEntity dep : be.optionalDependencies) {
+            addInTopologicalOrder(dep, order, indices);
+        }
+        indices.put(be, order.size());
+        order.add(be);
+    }
+
+    /**
+     * Counts source lines of code (non-empty lines without comments in C/C++ files) of all build entities in parallel
+     * and stores them in their "sloc" parameter
+     *
+     * @param buildEntities List of build entities
+     * @param scanner Source scanner with all files
+     */
+    private static void countSloc(List<BuildEntity> buildEntities, SourceScanner scanner) throws Exception {
+        Map<BuildEntity, List<SrcFile>> files = new HashMap<BuildEntity, List<SrcFile>>();
+        for (BuildEntity be : buildEntities) {
+            files.put(be, new ArrayList<SrcFile>());
+        }
+        for (SrcFile sf : scanner.getAllFiles()) {
+            List<SrcFile> beFiles = files.get(sf.getOwner());
+            if (beFiles != null && (!sf.buildProduct) && sf.hasExtension("c", "cpp", "cc", "cxx", "h", "hpp", "hh")) {
+                beFiles.add(sf);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        List<Future<Integer>> counts = new ArrayList<Future<Integer>>();
+        for (BuildEntity be : buildEntities) {
+            final List<SrcFile> beFiles = files.get(be);
+            counts.add(pool.submit(new Callable<Integer>() {
+                public Integer call() {
+                    int count = 0;
+                    for (SrcFile sf : beFiles) {
+                        List<String> lines = sf.getCppLines();
+                        count += lines != null ? lines.size() : 0;
+                        sf.scanCompleted();
+                    }
+                    return count;
+                }
+            }));
+        }
+        for (int i = 0; i < buildEntities.size(); i++) {
+            buildEntities.get(i).setParameter("sloc", "" + counts.get(i).get());
+        }
+        pool.shutdown();
+    }
 }
@@ -0,0 +1,433 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import makebuilder.libdb.ExtLib;
+import makebuilder.util.CCOptions;
+
+/**
+ * @author Max Reichardt
+ *
+ * Persistent cache for the makefile fragments of build entities (stored in CACHE_FILE next to the source scanner's cache).
+ * Used for regenerating the makefile incrementally ('--incremental').
+ *
+ * For every build entity, the operations that generating its build commands performed on the makefile are recorded
+ * (see Makefile.beginRecording()) - together with a fingerprint of everything these build commands are derived from:
+ * Build file, source files and files owned by the entity (with all files they include - directly or indirectly),
+ * options, external libraries, fingerprints of dependencies and a global part
+ * (command line, relevant environment variables, builder version, makefile variables).
+ *
+ * If the fingerprint of an entity has not changed, its recorded operations are replayed - instead of calling the handlers again.
+ * As fingerprints of dependencies are part of an entity's fingerprint, entities that depend on changed entities are regenerated as well.
+ *
+ * Recorded operations consist of many - mostly recurring - strings.
+ * So the cache is stored in a simple binary format with a string table - which loads a lot faster than a serialized object graph.
+ */
+public class FragmentCache {
+
+    /** Name of cache file */
+    public static final String CACHE_FILE = ".makeBuilderFragmentCache";
+
+    /** Version of file format (cache files with other versions are ignored) */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Command line options that do not influence build commands of build entities */
+    private static final String[] IRRELEVANT_OPTIONS = {"--activitylog", "--changed", "--daemon", "--makefile=", "--parallel", "--profile"};
+
+    /** Fragments (key: target of build entity) */
+    private final Map<String, Fragment> fragments = new HashMap<String, Fragment>();
+
+    /** File that cache was loaded from */
+    private File file;
+
+    /** Has cache been modified since it was loaded? */
+    private boolean modified;
+
+    /** Fingerprints of build entities in this run */
+    private Map<BuildEntity, String> fingerprints;
+
+    /** Number of build entities whose recorded operations were replayed in this run */
+    private final AtomicInteger replayCount = new AtomicInteger();
+
+    /** Recorded makefile fragment of a build entity */
+    private static class Fragment {
+
+        /** Fingerprint of build entity when operations were recorded */
+        String fingerprint;
+
+        /** Recorded operations (see Makefile.endRecording()) */
+        List<String[]> operations;
+
+        /** Source files of build entity after its build commands were generated (relative names - handlers replace and remove source files) */
+        List<String> sources = new ArrayList<String>();
+    }
+
+    /**
+     * Loads cache from file
+     *
+     * @param file Cache file
+     * @return Loaded cache - or empty cache if file does not exist or cannot be loaded
+     */
+    public static FragmentCache load(File file) {
+        FragmentCache result = new FragmentCache();
+        result.file = file;
+        if (file.exists()) {
+            try {
+                DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    if (dis.readInt() == FORMAT_VERSION) {
+                        List<String> strings = new ArrayList<String>();
+                        for (int i = dis.readInt(); i > 0; i--) {
+                            Fragment fragment = new Fragment();
+                            String key = readString(dis, strings);
+                            fragment.fingerprint = readString(dis, strings);
+                            int operationCount = dis.readInt();
+                            fragment.operations = new ArrayList<String[]>(operationCount);
+                            for (int j = 0; j < operationCount; j++) {
+                                String[] operation = new String[dis.readInt()];
+                                for (int k = 0; k < operation.length; k++) {
+                                    operation[k] = readString(dis, strings);
+                                }
+                                fragment.operations.add(operation);
+                            }
+                            for (int j = dis.readInt(); j > 0; j--) {
+                                fragment.sources.add(readString(dis, strings));
+                            }
+                            result.fragments.put(key, fragment);
+                        }
+                    }
+                } finally {
+                    dis.close();
+                }
+            } catch (Exception e) {
+                result.fragments.clear();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Saves cache to file it was loaded from (if it was modified).
+     * Fragments of build entities that were not built in this run are removed.
+     */
+    public synchronized void save() {
+        if (fingerprints != null) {
+            Set<String> targets = new HashSet<String>();
+            for (BuildEntity be : fingerprints.keySet()) {
+                targets.add(be.getTarget());
+            }
+            modified |= fragments.keySet().retainAll(targets);
+        }
+        if (!modified) {
+            return;
+        }
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            Map<String, Integer> strings = new HashMap<String, Integer>();
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(fragments.size());
+            for (Map.Entry<String, Fragment> entry : fragments.entrySet()) {
+                Fragment fragment = entry.getValue();
+                writeString(dos, strings, entry.getKey());
+                writeString(dos, strings, fragment.fingerprint);
+                dos.writeInt(fragment.operations.size());
+                for (String[] operation : fragment.operations) {
+                    dos.writeInt(operation.length);
+                    for (String s : operation) {
+                        writeString(dos, strings, s);
+                    }
+                }
+                dos.writeInt(fragment.sources.size());
+                for (String s : fragment.sources) {
+                    writeString(dos, strings, s);
+                }
+            }
+            dos.close();
+            modified = false;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes string to cache file: Index in string table - followed by the string itself if it is written for the first time
+     *
+     * @param dos Stream to write to
+     * @param strings String table (string => index)
+     * @param s String to write (may be null)
+     */
+    private static void writeString(DataOutputStream dos, Map<String, Integer> strings, String s) throws IOException {
+        if (s == null) {
+            dos.writeInt(-1);
+            return;
+        }
+        Integer index = strings.get(s);
+        if (index != null) {
+            dos.writeInt(index);
+        } else {
+            dos.writeInt(strings.size());
+            strings.put(s, strings.size());
+            byte[] bytes = s.getBytes("UTF-8");
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+    }
+
+    /**
+     * Reads string written by writeString()
+     *
+     * @param dis Stream to read from
+     * @param strings String table (strings read so far)
+     * @return String (may be null)
+     */
+    private static String readString(DataInputStream dis, List<String> strings) throws IOException {
+        int index = dis.readInt();
+        if (index < 0) {
+            return null;
+        } else if (index < strings.size()) {
+            return strings.get(index);
+        }
+        byte[] bytes = new byte[dis.readInt()];
+        dis.readFully(bytes);
+        String s = new String(bytes, "UTF-8");
+        strings.add(s);
+        return s;
+    }
+
+    /**
+     * Computes fingerprints of all build entities that can be built
+     * (must be called after external libraries have been merged)
+     *
+     * @param builder Builder instance
+     * @param handlers Content handlers used in builder
+     */
+    public void computeFingerprints(MakeFileBuilder builder, Collection<SourceFileHandler> handlers) throws Exception {
+
+        // global part
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        StringBuilder sb = new StringBuilder();
+        sb.append(builder.getClass().getName()).append('\n');
+        File code = new File(MakeFileBuilder.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        sb.append(code.lastModified()).append(' ').append(code.length()).append('\n');
+        for (String arg : MakeFileBuilder.getOptions().args.split(" ")) {
+            boolean relevant = true;
+            for (String irrelevant : IRRELEVANT_OPTIONS) {
+                relevant &= !arg.startsWith(irrelevant);
+            }
+            if (relevant) {
+                sb.append(arg).append(' ');
+            }
+        }
+        sb.append('\n').append(BuilderDaemon.getRelevantEnvironment()).append('\n');
+        sb.append(BuildEntity.LINKING_AS_NEEDED).append(' ').append(builder.isStaticLinkingEnabled()).append(' ').append(builder.isCrossCompiling()).append('\n');
+        for (SourceFileHandler handler : handlers) {
+            sb.append(handler.getClass().getName()).append('\n');
+        }
+        for (String variable : builder.makefile.getVariables()) {
+            sb.append(variable).append('\n');
+        }
+        String global = hash(md5, sb.toString());
+
+        // files owned by build entities
+        Map<BuildEntity, List<SrcFile>> ownedFiles = new IdentityHashMap<BuildEntity, List<SrcFile>>();
+        synchronized (builder.getSources()) {
+            for (SrcFile sf : builder.getSources().getAllFiles()) {
+                if (sf.getOwner() != null) {
+                    List<SrcFile> files = ownedFiles.get(sf.getOwner());
+                    if (files == null) {
+                        files = new ArrayList<SrcFile>();
+                        ownedFiles.put(sf.getOwner(), files);
+                    }
+                    files.add(sf);
+                }
+            }
+        }
+
+        // build entities (dependencies first)
+        fingerprints = new IdentityHashMap<BuildEntity, String>();
+        for (BuildEntity be : builder.getBuildOrder()) {
+            if (be.missingDep) {
+                continue;
+            }
+            sb.setLength(0);
+            sb.append(global).append('\n');
+            sb.append(be.getClass().getName()).append(' ').append(be.name).append(' ').append(be.getTarget()).append(' ').append(be.getFinalHandler()).append('\n');
+            sb.append(be.buildFile.relative).append(' ').append(be.buildFile.lastChange).append(' ').append(be.buildFile.size).append(' ').append(be.lineNumber).append('\n');
+            sb.append(be.params).append(be.libs).append(be.optionalLibs).append('\n');
+            appendOptions(sb, be.opts);
+            for (ExtLib el : be.directExtlibs) {
+                sb.append("direct ").append(el.name).append(' ').append(el.options).append('\n');
+            }
+            for (ExtLib el : be.extlibs) {
+                sb.append("extlib ").append(el.name).append(' ').append(el.options).append('\n');
+            }
+            for (SrcDir dir : be.getRootDir().defaultIncludePaths) {
+                sb.append("include ").append(dir.relative).append('\n');
+            }
+            for (BuildEntity dependency : be.dependencies) {
+                sb.append("dependency ").append(fingerprints.get(dependency)).append(' ').append(dependency.getTarget()).append('\n');
+            }
+            for (SrcFile sf : be.sources) {
+                sb.append("source ").append(sf.relative).append('\n');
+            }
+
+            // files (and everything they include)
+            Set<SrcFile> visited = Collections.newSetFromMap(new IdentityHashMap<SrcFile, Boolean>());
+            for (SrcFile sf : be.sources) {
+                appendFiles(sb, sf, be, visited);
+            }
+            if (ownedFiles.containsKey(be)) {
+                for (SrcFile sf : ownedFiles.get(be)) {
+                    appendFiles(sb, sf, be, visited);
+                }
+            }
+            fingerprints.put(be, hash(md5, sb.toString()));
+        }
+    }
+
+    /**
+     * Appends file and all files it includes - directly or indirectly (the same files that SrcFile.getAllDependencies() collects).
+     * Files owned by other build entities whose fingerprints have been computed already are not traversed:
+     * Their owner's fingerprint is appended instead (it covers them and everything they include).
+     *
+     * @param sb StringBuilder to append files to
+     * @param sf File
+     * @param be Build entity whose fingerprint is computed
+     * @param visited Files that have been appended already
+     */
+    private void appendFiles(StringBuilder sb, SrcFile sf, BuildEntity be, Set<SrcFile> visited) {
+        if (!visited.add(sf)) {
+            return;
+        }
+        sb.append(sf.relative).append(' ').append(sf.lastChange).append(' ').append(sf.size).append(sf.buildProduct ? " p" : "");
+        BuildEntity owner = sf.getOwner();
+        if (owner != null && owner != be && fingerprints.containsKey(owner)) {
+            sb.append(" owner ").append(fingerprints.get(owner)).append('\n');
+            return;
+        }
+        sb.append('\n');
+        for (SrcFile dep : sf.getDependencies()) {
+            appendFiles(sb, dep, be, visited);
+        }
+        for (SrcFile dep : sf.getOptionalDependencies()) {
+            if ((!visited.contains(dep)) && dep.absolute.exists()) {
+                appendFiles(sb, dep, be, visited);
+            }
+        }
+    }
+
+    /**
+     * @param sb StringBuilder to append options to
+     * @param opts Options
+     */
+    private static void appendOptions(StringBuilder sb, CCOptions opts) {
+        for (String lib : opts.libs) {
+            sb.append("lib ").append(lib).append('\n');
+        }
+        sb.append(opts.libPaths).append(opts.includePaths).append(opts.linkOptions).append(opts.cxxCompileOptions).append(opts.cCompileOptions).append('\n');
+    }
+
+    /**
+     * Replays recorded operations of build entity - if its fingerprint has not changed
+     *
+     * @param be Build entity
+     * @param makefile Makefile
+     * @param scanner Source scanner
+     * @return True if operations were replayed. False if build commands need to be generated (and recorded).
+     */
+    public boolean replay(BuildEntity be, Makefile makefile, SourceScanner scanner) {
+        Fragment fragment = null;
+        synchronized (this) {
+            fragment = fragments.get(be.getTarget());
+        }
+        if (fragment == null || (!fragment.fingerprint.equals(fingerprints.get(be)))) {
+            return false;
+        }
+        makefile.replay(fragment.operations);
+        be.target = makefile.getTarget(be.getTarget());
+        be.sources.clear();
+        for (String source : fragment.sources) {
+            SrcFile sf = scanner.find(source);
+            be.sources.add(sf != null ? sf : scanner.registerBuildProduct(source));
+        }
+        replayCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stores recorded operations of build entity
+     *
+     * @param be Build entity
+     * @param operations Operations recorded while generating build commands for build entity
+     */
+    public synchronized void put(BuildEntity be, List<String[]> operations) {
+        Fragment fragment = new Fragment();
+        fragment.fingerprint = fingerprints.get(be);
+        fragment.operations = operations;
+        for (SrcFile sf : be.sources) {
+            fragment.sources.add(sf.relative);
+        }
+        fragments.put(be.getTarget(), fragment);
+        modified = true;
+    }
+
+    /**
+     * @return Number of build entities whose recorded operations were replayed in this run
+     */
+    public int getReplayCount() {
+        return replayCount.get();
+    }
+
+    /**
+     * @param md5 MD5 message digest to use
+     * @param s String
+     * @return MD5 hash of string (hex)
+     */
+    private static String hash(MessageDigest md5, String s) throws Exception {
+        byte[] digest = md5.digest(s.getBytes("UTF-8"));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
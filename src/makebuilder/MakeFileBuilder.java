@@ -25,12 +25,22 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import makebuilder.handler.CppHandler;
+import makebuilder.handler.LazyHandler;
 import makebuilder.handler.MakeXMLLoader;
 import makebuilder.libdb.LibDB;
+import makebuilder.libdb.PkgConfig;
 import makebuilder.util.ActivityLog;
+import makebuilder.util.Toolchain;
 import makebuilder.util.Util;
 
 /**
@@ -91,6 +101,15 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
     /** Activity log */
     private final ActivityLog activityLog;
 
+    /** Index over all build entities (created after source files have been scanned) */
+    private BuildEntityIndex buildEntityIndex;
+
+    /** All build entities in topological order - dependencies first (available after cycle check) */
+    private List<BuildEntity> buildOrder;
+
+    /** Cache with makefile fragments of build entities (null if makefile is not regenerated incrementally) */
+    private FragmentCache fragmentCache;
+
     /**
      * @return Single MakefileBuilder instance
      */
@@ -103,12 +122,50 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
         // Parse command line options
         opts = new Options(args);
 
+        // Run as daemon? (see BuilderDaemon)
+        if (opts.get("daemon") != null) {
+            try {
+                BuilderDaemon.serve(args);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        int status = execute();
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs main class with the specified command line arguments
+     * (does not terminate the process - so it can be called by a makebuilder daemon)
+     *
+     * @param args Command line arguments
+     * @return Exit status (0 on success)
+     */
+    public static int execute(String[] args) {
+        opts = new Options(args);
+        return execute();
+    }
+
+    /**
+     * Runs main class with the parsed command line arguments
+     *
+     * @return Exit status (0 on success)
+     */
+    private static int execute() {
         try {
             opts.mainClass.newInstance().run();
+        } catch (AbortException e) {
+            return e.status;
         } catch (Exception e) {
             e.printStackTrace();
             printErrorAdvice();
+            return 1;
         }
+        return 0;
     }
 
     /**
@@ -152,12 +209,48 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
     public void run() {
         try {
             build();
+        } catch (AbortException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
     public void build() throws Exception {
+        Profiler profiler = null;
+        if (opts.get("profile") != null) {
+            String topN = opts.getProperty("profile");
+            profiler = Profiler.start(topN.matches("[0-9]+") ? Integer.parseInt(topN) : 10);
+        }
+        try {
+            generateMakefile();
+        } finally {
+
+            // activity log and profile are also written if makefile is not created (e.g. --dotfile or --impact) or creating it fails
+            if (getOptions().printActivityLog) {
+                System.out.println("\nActivity Log:\n");
+                activityLog.print();
+            }
+            if (profiler != null) {
+                try {
+                    profiler.print();
+                } finally {
+                    Profiler.stop();
+                }
+            }
+            if (opts.get("activitylog-json") != null) {
+                activityLog.writeJson(new File(opts.getProperty("activitylog-json")));
+            }
+            if (opts.get("activitylog-trace") != null) {
+                activityLog.writeChromeTrace(new File(opts.getProperty("activitylog-trace")));
+            }
+        }
+    }
+
+    /**
+     * Creates makefile (or performs the alternative action requested with --dotfile or --impact)
+     */
+    private void generateMakefile() throws Exception {
 
         // init content handlers
         if (buildFileLoaders.isEmpty()) {
@@ -174,32 +267,38 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
         System.out.println("Caching and processing local source files...");
         try {
             sources.scan(makefile, buildFileLoaders, contentHandlers, true, getSourceDirs());
+        } catch (AbortException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println(Util.color("Error scanning files. A corrupted cache can cause errors. Trying again without cache.", Util.Color.RED, true));
             try {
                 sources = new SourceScanner(HOME, this);
                 sources.scan(makefile, buildFileLoaders, contentHandlers, false, getSourceDirs());
+            } catch (AbortException e2) {
+                throw e2;
             } catch (Exception e2) {
                 e2.printStackTrace();
                 System.out.println(Util.color("Error still occured. Exiting.", Util.Color.RED, true));
-                System.exit(-1);
+                throw new AbortException(-1);
             }
         }
 
+        // index build entities
+        activityLog.addActivity("Index build entities");
+        buildEntityIndex = new BuildEntityIndex(buildEntities);
+
         // find local dependencies in "external libraries" (note: ugly hack only required for some mca2 libraries with external .so files checked in)
         activityLog.addActivity("find local dependencies in external libraries");
-        LibDB.findLocalDependencies(buildEntities);
+        LibDB.findLocalDependencies(buildEntityIndex);
 
         // Check for duplicate targets
         activityLog.addActivity("Check for duplicate targets");
-        for (BuildEntity be : buildEntities) {
-            for (BuildEntity be2 : buildEntities) {
-                if (be != be2 && be.getTarget().equals(be2.getTarget())) {
-                    System.out.println(Util.color("Two build entities with same target: " + be.getTarget() + "  (from " + be.buildFile.toString() + " and " + be2.buildFile.toString() + ")", Util.Color.RED, true));
-                    System.exit(1);
-                }
+        if (!buildEntityIndex.getDuplicateTargets().isEmpty()) {
+            for (BuildEntity[] duplicate : buildEntityIndex.getDuplicateTargets()) {
+                System.out.println(Util.color("Two build entities with same target: " + duplicate[0].getTarget() + "  (from " + duplicate[0].buildFile.toString() + " and " + duplicate[1].buildFile.toString() + ")", Util.Color.RED, true));
             }
+            throw new AbortException(1);
         }
 
         // Check for files without owner
@@ -236,10 +335,24 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
             return;
         }
 
+        // print impact of changing source files?
+        if (opts.get("impact") != null) {
+            activityLog.addActivity("Query impact");
+            List<SrcFile> changed = ReverseDependencyIndex.findFiles(sources, HOME, opts.getProperty("impact"));
+            if (changed == null) {
+                throw new AbortException(1);
+            }
+            new ReverseDependencyIndex(sources.getAllFiles(), buildEntities).printImpact(changed, System.out);
+            return;
+        }
+
+        // check for cycles
+        activityLog.addActivity("check for cycles");
+        BuildEntity.checkForCycles(buildEntities);
+
         // check whether all dependencies are met
         activityLog.addActivity("check whether all dependencies are met");
         for (BuildEntity be : buildEntities) {
-            be.checkForCycles(1);
             be.checkDependencies(this);
         }
 
@@ -251,28 +364,69 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
 
         // check for new cycles
         activityLog.addActivity("check for new cycles");
-        for (BuildEntity be : buildEntities) {
-            be.checkForCycles(2);
-        }
+        buildOrder = BuildEntity.checkForCycles(buildEntities);
 
         // collect external libraries needed for building
         activityLog.addActivity("collect external libraries needed for building");
-        for (BuildEntity be : buildEntities) {
+        for (BuildEntity be : buildOrder) {
             be.mergeExtLibs();
         }
 
+        // compute fingerprints of build entities for incremental regeneration?
+        if (opts.get("incremental") != null) {
+            activityLog.addActivity("compute fingerprints of build entities");
+            if (isParallelBuildSupported()) { // recorded build commands of entities must not depend on other entities' handler calls - the same is required for generating them in parallel
+                fragmentCache = FragmentCache.load(new File(FragmentCache.CACHE_FILE));
+                fragmentCache.computeFingerprints(this, contentHandlers);
+            } else {
+                System.out.println(Util.color("Incremental regeneration is not supported by the active handlers. Regenerating build commands of all build entities.", Util.Color.Y, false));
+            }
+        }
+
         // add build commands for entity to makefile
         activityLog.addActivity("add build commands for entity to makefile");
-        for (BuildEntity be : buildEntities) {
-            if (be.missingDep) {
-                continue;
+        if (getOptions().buildThreads > 1 && isParallelBuildSupported()) {
+            buildParallel(getOptions().buildThreads);
+        } else {
+            boolean first = true;
+            for (BuildEntity be : buildEntities) {
+                if (be.missingDep) {
+                    continue;
+                }
+                build(be, !first);
+                first = false;
             }
-            build(be);
+        }
+        if (fragmentCache != null) {
+            System.out.println("Reused build commands of " + fragmentCache.getReplayCount() + " build entities.");
+        }
+
+        // add targets that run unit tests
+        activityLog.addActivity("add targets that run unit tests");
+        new UnitTestTargetCreator(this).createTargets(makefile, buildEntities);
+
+        // add targets for build entities affected by changed files?
+        if (opts.get("changed") != null) {
+            activityLog.addActivity("add targets for affected build entities");
+            AffectedTargetCreator creator = new AffectedTargetCreator(HOME);
+            List<String> changedFiles = null;
+            try {
+                changedFiles = creator.readChangedFiles(opts.getProperty("changed"));
+            } catch (Exception e) {
+                System.out.println(Util.color("Cannot read list of changed files: " + e.getMessage(), Util.Color.RED, true));
+                throw new AbortException(1);
+            }
+            creator.createTargets(makefile, sources, buildEntities, changedFiles);
         }
 
         // Write makefile
         activityLog.addActivity("Write makefile");
         writeMakefile();
+        PkgConfig.saveCache();
+        Toolchain.saveCache();
+        if (fragmentCache != null) {
+            fragmentCache.save();
+        }
 
         // print error messages at the end... so nobody will miss them
         //Collections.sort(errorMessages);
@@ -282,11 +436,6 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
 
         // completed
         System.out.println(Util.color("Creating Makefile successful.", Util.Color.GREEN, true));
-
-        if (getOptions().printActivityLog) {
-            System.out.println("\nActivity Log:\n");
-            activityLog.print();
-        }
     }
 
     /**
@@ -320,18 +469,185 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
 
     /**
      * Build single build entity
+     * (when regenerating incrementally, recorded build commands are replayed if the entity has not changed)
      *
      * @param be Build entity to build
+     * @param replayAllowed May recorded build commands be replayed? (handlers may create shared targets when they are called the first time - so the first entity is always built)
      */
-    private void build(final BuildEntity be) throws Exception {
+    private void build(final BuildEntity be, boolean replayAllowed) throws Exception {
         if (!be.getTargetPath().startsWith("/")) {
             System.out.println(Util.color("Processing " + be.getReferenceName(), Util.Color.GREEN, false));
         }
+        if (fragmentCache == null) {
+            generateBuildCommands(be);
+            return;
+        }
+        if (replayAllowed) {
+            boolean replayed = fragmentCache.replay(be, makefile, sources);
+            Profiler profiler = Profiler.getActive();
+            if (profiler != null) {
+                profiler.countCacheAccess("makefile fragments", replayed);
+            }
+            if (replayed) {
+                return;
+            }
+        }
+        List<String[]> operations = null;
+        makefile.beginRecording();
+        try {
+            generateBuildCommands(be);
+        } finally {
+            operations = makefile.endRecording();
+        }
+        fragmentCache.put(be, operations);
+    }
+
+    /**
+     * Generate build commands for single build entity (calls handlers)
+     *
+     * @param be Build entity to build
+     */
+    private void generateBuildCommands(BuildEntity be) throws Exception {
         be.initTarget(makefile);
         be.computeOptions();
 
+        Profiler profiler = Profiler.getActive();
         for (SourceFileHandler ch : contentHandlers) {
+            long start = profiler != null ? System.nanoTime() : 0;
             ch.build(be, makefile, this);
+            if (profiler != null) {
+                profiler.add(Profiler.BUILD, ch, null, be, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * @return Can build commands be generated for several build entities concurrently? (true, if all (activated) handlers that implement build() are thread-safe)
+     */
+    private boolean isParallelBuildSupported() {
+        for (SourceFileHandler ch : contentHandlers) {
+            if (ch instanceof LazyHandler) {
+                ch = ((LazyHandler)ch).getHandler();
+                if (ch == null) {
+                    continue;
+                }
+            }
+            if (ch instanceof SourceFileHandler.ThreadSafeBuild) {
+                continue;
+            }
+            try {
+                if (ch.getClass().getMethod("build", BuildEntity.class, Makefile.class, MakeFileBuilder.class).getDeclaringClass() != SourceFileHandler.Impl.class) {
+                    return false;
+                }
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build all build entities (that have no missing dependencies) in parallel:
+     * An entity is processed on a fork-join pool as soon as all of its dependencies have been processed.
+     *
+     * Targets created for each entity are collected in a makefile fragment.
+     * Fragments are appended in order of the build entity list - so the makefile is identical to the one created serially.
+     *
+     * @param threads Number of threads to use
+     */
+    private void buildParallel(int threads) throws Exception {
+        final List<BuildEntity> entities = new ArrayList<BuildEntity>();
+        for (BuildEntity be : buildEntities) {
+            if (!be.missingDep) {
+                be.getFinalHandler(); // may print an error - so determine this in deterministic order
+                entities.add(be);
+            }
+        }
+        if (entities.isEmpty()) {
+            return;
+        }
+
+        // handlers may create shared targets when they are called the first time - so the first entity is built on its own
+        build(entities.get(0), false);
+
+        // count dependencies that need to be built before each entity
+        final Map<BuildEntity, Integer> positions = new IdentityHashMap<BuildEntity, Integer>();
+        for (BuildEntity be : entities) {
+            positions.put(be, positions.size());
+        }
+        final AtomicInteger[] pendingDependencies = new AtomicInteger[entities.size()];
+        final List<List<Integer>> dependants = new ArrayList<List<Integer>>();
+        for (int i = 0; i < entities.size(); i++) {
+            pendingDependencies[i] = new AtomicInteger();
+            dependants.add(new ArrayList<Integer>());
+        }
+        for (int i = 1; i < entities.size(); i++) {
+            for (BuildEntity dependency : entities.get(i).dependencies) {
+                Integer position = positions.get(dependency);
+                if (position != null && position != 0) {
+                    pendingDependencies[i].incrementAndGet();
+                    dependants.get(position).add(i);
+                }
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        final CountDownLatch remaining = new CountDownLatch(entities.size() - 1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final List<List<Makefile.Target>> fragments = new ArrayList<List<Makefile.Target>>(Collections.<List<Makefile.Target>>nCopies(entities.size(), null));
+
+        class EntityBuildTask implements Runnable {
+
+            /** Index of entity to build */
+            private final int index;
+
+            EntityBuildTask(int index) {
+                this.index = index;
+            }
+
+            @Override
+            public void run() {
+                ActivityLog.ConcurrentActivity activity = activityLog.beginConcurrentActivity(entities.get(index).getTarget());
+                makefile.beginFragment();
+                try {
+                    build(entities.get(index), true);
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                } finally {
+                    activity.end();
+                    List<Makefile.Target> fragment = makefile.endFragment();
+                    synchronized (fragments) {
+                        fragments.set(index, fragment);
+                    }
+                    for (int dependant : dependants.get(index)) {
+                        if (pendingDependencies[dependant].decrementAndGet() == 0) {
+                            pool.execute(new EntityBuildTask(dependant));
+                        }
+                    }
+                    remaining.countDown();
+                }
+            }
+        }
+
+        List<Integer> ready = new ArrayList<Integer>(); // determined before any task is started - as tasks already decrement pending dependencies
+        for (int i = 1; i < entities.size(); i++) {
+            if (pendingDependencies[i].get() == 0) {
+                ready.add(i);
+            }
+        }
+        for (int i : ready) {
+            pool.execute(new EntityBuildTask(i));
+        }
+        remaining.await();
+        pool.shutdown();
+        if (error.get() instanceof Exception) {
+            throw (Exception)error.get();
+        } else if (error.get() != null) {
+            throw (Error)error.get();
+        }
+
+        for (int i = 1; i < entities.size(); i++) {
+            makefile.addFragment(fragments.get(i));
         }
     }
 
@@ -380,7 +696,7 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
      *
      * @param s line to print
      */
-    public void printErrorLine(String s) {
+    public synchronized void printErrorLine(String s) {
         errorMessages.add(s);
     }
 
@@ -391,7 +707,7 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
      * @param string Error string
      * @param c Color to print "Cannot build ..." in
      */
-    public void printCannotBuildError(BuildEntity be, String string, Util.Color c) {
+    public synchronized void printCannotBuildError(BuildEntity be, String string, Util.Color c) {
         be.errorMessageId = errorMessages.size() + 1;
         printErrorLine(Util.color("(" + be.errorMessageId + ") ", c, false) + Util.color("Cannot build " + (be.isOptional() ? "optional " : "") + be.getReferenceName(), c, true) + " (" + be.buildFile + (be.lineNumber != 0 ? (":" + be.lineNumber) : "") + ")" + Util.color(string, c, false));
     }
@@ -446,4 +762,46 @@ public class MakeFileBuilder implements FilenameFilter, Runnable {
     public ActivityLog getActivityLog() {
         return activityLog;
     }
+
+    /**
+     * @return Index over all build entities (null before source files have been scanned)
+     */
+    public BuildEntityIndex getBuildEntityIndex() {
+        return buildEntityIndex;
+    }
+
+    /**
+     * @return Cache with makefile fragments of build entities (null if makefile is not regenerated incrementally)
+     */
+    public FragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
+    /**
+     * @return All build entities in topological order - every entity comes after its dependencies (null before cycle check)
+     */
+    public List<BuildEntity> getBuildOrder() {
+        return buildOrder;
+    }
+
+    /**
+     * Thrown to abort creating the makefile after an error has been reported
+     * (instead of calling System.exit() - which would also terminate a makebuilder daemon)
+     */
+    public static class AbortException extends RuntimeException {
+
+        /** UID */
+        private static final long serialVersionUID = -3052486419021847793L;
+
+        /** Exit status of makebuilder process */
+        public final int status;
+
+        /**
+         * @param status Exit status of makebuilder process
+         */
+        public AbortException(int status) {
+            super("Creating makefile aborted (exit status " + status + ")");
+            this.status = status;
+        }
+    }
 }
@@ -28,18 +28,31 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import makebuilder.libdb.PkgConfigCache;
 import makebuilder.util.Files;
+import makebuilder.util.Toolchain;
 
 /**
  * @author Max Reichardt
  *
  * This class represents a makefile.
  * It encapsulates the Makefile syntax
+ *
+ * Targets may be added from several threads concurrently.
+ * In order to keep the order of targets deterministic, threads collect the targets they create
+ * in fragments (see beginFragment()) that are appended in well-defined order.
+ *
+ * Operations that a thread performs on the makefile can be recorded (see beginRecording()) and
+ * replayed later on - instead of performing them again (see FragmentCache).
  */
 public class Makefile {
 
@@ -55,6 +68,25 @@ public class Makefile {
     /** List of targets */
     private final List<Target> targets = new ArrayList<Target>();
 
+    /** Fragment that targets created by the current thread are added to (null: targets are added to target list directly) */
+    private final ThreadLocal<List<Target>> fragment = new ThreadLocal<List<Target>>();
+
+    /** Targets by name (last target added with a name) */
+    private final Map<String, Target> targetIndex = new HashMap<String, Target>();
+
+    /** Operations performed by the current thread are added to this list (null: operations are not recorded) */
+    private final ThreadLocal<List<String[]>> recording = new ThreadLocal<List<String[]>>();
+
+    /** Has any thread started recording? (avoids thread-local lookups otherwise) */
+    private volatile boolean recordingUsed;
+
+    /** Names of recorded operations (first element of each recorded operation) */
+    private static final String OP_TARGET = "target", OP_PHONY = "phony", OP_TO_PHONY = "toPhony", OP_DEPENDENCY = "dep", OP_ORDER_ONLY_DEPENDENCY = "ooDep",
+                                OP_COMMAND = "cmd", OP_KEEP_ORDER = "keepOrder", OP_VARIABLE = "var", OP_CHANGE_VARIABLE = "changeVar", OP_BUILD_DIR = "buildDir";
+
+    /** Kinds of targets that recorded operations refer to */
+    private static final String KIND_ALL = "all", KIND_PHONY = "phony", KIND_TARGET = "target";
+
     /** Variable name of message that is displayed, when build process finishes successfully */
     public static final String DONE_MSG_VAR = "DONE_MSG";
 
@@ -86,6 +118,7 @@ public class Makefile {
         variables.addAll(other.variables);
         phonyTargets.putAll(other.phonyTargets);
         targets.addAll(other.targets);
+        targetIndex.putAll(other.targetIndex);
     }
 
     /**
@@ -137,6 +170,9 @@ public class Makefile {
             clean.addCommand("rm -R -f " + s, true);
         }
         clean.addCommand("rm -f " + SourceScanner.CACHE_FILE, true);
+        clean.addCommand("rm -f " + PkgConfigCache.CACHE_FILE, true);
+        clean.addCommand("rm -f " + Toolchain.CACHE_FILE, true);
+        clean.addCommand("rm -f " + FragmentCache.CACHE_FILE, true);
         clean.writeTo(ps);
 
         //      // write 'init' target
@@ -178,6 +214,7 @@ public class Makefile {
      */
     public void addVariable(String variable) {
         variables.add(variable);
+        record(OP_VARIABLE, variable);
     }
 
     /**
@@ -186,6 +223,7 @@ public class Makefile {
      * @param variable Variable to change
      */
     public void changeVariable(String newVariable) {
+        record(OP_CHANGE_VARIABLE, newVariable);
         String varname = extractVarName(newVariable);
         for (int i = 0; i < variables.size(); i++) {
             String varname2 = extractVarName(variables.get(i));
@@ -221,12 +259,15 @@ public class Makefile {
      * @param name Target Name
      * @param dependencies Dependencies
      */
-    public Target addPhonyTarget(String name, String... dependencies) {
+    public synchronized Target addPhonyTarget(String name, String... dependencies) {
         Target t = new Target(name, null);
         for (String s : dependencies) {
             t.dependencies.add(s);
         }
         phonyTargets.put(name, t);
+        String[] operation = Arrays.copyOf(new String[] {OP_PHONY, name}, dependencies.length + 2);
+        System.arraycopy(dependencies, 0, operation, 2, dependencies.length);
+        record(operation);
         return t;
     }
 
@@ -234,7 +275,7 @@ public class Makefile {
      * @param name Target name
      * @return Phony target with specified name - or null if none exists
      */
-    public Target getPhonyTarget(String name) {
+    public synchronized Target getPhonyTarget(String name) {
         return phonyTargets.get(name);
     }
 
@@ -261,15 +302,188 @@ public class Makefile {
      */
     public Target addTarget(String name, boolean secondary, Object srcRootDir, boolean includeInAllTarget) {
         Target t = new Target(name, srcRootDir == null ? null : srcRootDir.toString());
-        targets.add(t);
+        List<Target> fragment = this.fragment.get();
+        if (fragment != null) {
+            fragment.add(t);
+        } else {
+            synchronized (this) {
+                targets.add(t);
+            }
+        }
+        synchronized (this) {
+            targetIndex.put(name, t);
+        }
+        record(OP_TARGET, name, Boolean.toString(secondary), t.srcDir, Boolean.toString(includeInAllTarget));
         if (secondary) {
             t.addToPhony(".SECONDARY");
         } else if (includeInAllTarget) {
-            all.addDependency(name);
+            synchronized (this) {
+                all.addDependency(name);
+            }
         }
         return t;
     }
 
+    /**
+     * Starts fragment for the current thread:
+     * Targets subsequently created by this thread are collected in the fragment - instead of being added to the target list.
+     */
+    public void beginFragment() {
+        fragment.set(new ArrayList<Target>());
+    }
+
+    /**
+     * Ends fragment of the current thread
+     *
+     * @return Targets created since beginFragment() was called (in order of creation)
+     */
+    public List<Target> endFragment() {
+        List<Target> result = fragment.get();
+        fragment.remove();
+        return result;
+    }
+
+    /**
+     * Appends fragment to target list
+     *
+     * @param fragment Targets returned by endFragment()
+     */
+    public synchronized void addFragment(List<Target> fragment) {
+        targets.addAll(fragment);
+    }
+
+    /**
+     * Starts recording for the current thread:
+     * Operations subsequently performed by this thread (adding targets, dependencies, commands, variables etc.) are recorded
+     * (Operations on targets that were not added to this makefile - e.g. DUMMY_TARGET - are not recorded)
+     */
+    public void beginRecording() {
+        recordingUsed = true;
+        recording.set(new ArrayList<String[]>());
+    }
+
+    /**
+     * Ends recording of the current thread
+     *
+     * @return Operations performed since beginRecording() was called (in order) - may be passed to replay()
+     */
+    public List<String[]> endRecording() {
+        List<String[]> result = recording.get();
+        recording.remove();
+        return result;
+    }
+
+    /**
+     * Performs recorded operations again
+     * (targets that operations refer to are looked up by name - so they may also be targets created before recording started)
+     *
+     * @param operations Operations returned by endRecording()
+     */
+    public void replay(List<String[]> operations) {
+        for (String[] op : operations) {
+            String name = op[1];
+            if (op[0].equals(OP_TARGET)) {
+                addTarget(name, Boolean.parseBoolean(op[2]), op[3], Boolean.parseBoolean(op[4]));
+            } else if (op[0].equals(OP_PHONY)) {
+                addPhonyTarget(name, Arrays.copyOfRange(op, 2, op.length));
+            } else if (op[0].equals(OP_TO_PHONY)) {
+                addToPhony(name, op[2], Arrays.copyOfRange(op, 3, op.length));
+            } else if (op[0].equals(OP_VARIABLE)) {
+                addVariable(name);
+            } else if (op[0].equals(OP_CHANGE_VARIABLE)) {
+                changeVariable(name);
+            } else if (op[0].equals(OP_BUILD_DIR)) {
+                addBuildDir(name);
+            } else {
+                Target t = null;
+                synchronized (this) {
+                    t = op[1].equals(KIND_ALL) ? all : (op[1].equals(KIND_PHONY) ? phonyTargets.get(op[2]) : targetIndex.get(op[2]));
+                }
+                if (t == null) {
+                    throw new RuntimeException("Cannot replay operation on target " + op[2] + ": no such target");
+                }
+                if (op[0].equals(OP_DEPENDENCY)) {
+                    t.dependencies.add(op[3]);
+                } else if (op[0].equals(OP_ORDER_ONLY_DEPENDENCY)) {
+                    t.ooDependencies.add(op[3]);
+                } else if (op[0].equals(OP_COMMAND)) {
+                    t.commands.add(op[3]);
+                } else if (op[0].equals(OP_KEEP_ORDER)) {
+                    t.setKeepDependencyOrder();
+                } else {
+                    throw new RuntimeException("Unknown operation " + op[0]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records operation - if current thread is recording
+     *
+     * @param operation Operation (name and arguments)
+     */
+    private void record(String... operation) {
+        if (recordingUsed) {
+            List<String[]> operations = recording.get();
+            if (operations != null) {
+                operations.add(operation);
+            }
+        }
+    }
+
+    /**
+     * Records operation on target - if current thread is recording
+     *
+     * @param target Target
+     * @param operation Operation name
+     * @param argument Argument (optional)
+     */
+    private void record(Target target, String operation, String argument) {
+        if (recordingUsed && recording.get() != null) {
+            String kind = null;
+            synchronized (this) {
+                if (target == all) {
+                    kind = KIND_ALL;
+                } else if (phonyTargets.get(target.name) == target) {
+                    kind = KIND_PHONY;
+                } else if (targetIndex.get(target.name) == target) {
+                    kind = KIND_TARGET;
+                }
+            }
+            if (kind != null) {
+                record(operation, kind, target.name, argument);
+            }
+        }
+    }
+
+    /**
+     * Add target to a phony ("virtual") target
+     *
+     * @param name Name of target to add
+     * @param phonyName Name of phony target
+     * @param phonyDefaultDependencies Default dependencies of phony target - in case it is created with this call
+     */
+    private synchronized void addToPhony(String name, String phonyName, String... phonyDefaultDependencies) {
+        Target phony = phonyTargets.get(phonyName);
+        if (phony == null) {
+            phony = new Target(phonyName, null);
+            phony.addCommand("echo $(" + DONE_MSG_VAR + ")", false);
+            for (String s : phonyDefaultDependencies) {
+                phony.addDependency(s);
+            }
+            phonyTargets.put(phonyName, phony);
+        }
+        phony.dependencies.add(name);
+    }
+
+    /**
+     * @param name Target name
+     * @return (Non-phony) target with specified name - or null if none exists
+     */
+    public synchronized Target getTarget(String name) {
+        return targetIndex.get(name);
+    }
+
     /**
      * Add initialization command
      *
@@ -299,6 +513,14 @@ public class Makefile {
      */
     public void addBuildDir(String dir) {
         buildDirs.add(dir);
+        record(OP_BUILD_DIR, dir);
+    }
+
+    /**
+     * @return Variables at the beginning of the makefile
+     */
+    public List<String> getVariables() {
+        return variables;
     }
 
     /**
@@ -320,8 +542,8 @@ public class Makefile {
         /** Phony target? */
         private final boolean phony;
 
-        /** Target dependencies */
-        private final TreeSet<String> dependencies = new TreeSet<String>();
+        /** Target dependencies (sorted - unless setKeepDependencyOrder() was called) */
+        private Set<String> dependencies = new TreeSet<String>();
 
         /** Order-only Target dependencies */
         private final TreeSet<String> ooDependencies = new TreeSet<String>();
@@ -393,6 +615,7 @@ public class Makefile {
          */
         public void addDependency(Object dep) {
             dependencies.add(dep.toString());
+            record(this, OP_DEPENDENCY, dep.toString());
         }
 
         /**
@@ -414,7 +637,9 @@ public class Makefile {
          * @param noindent Do not indentate? (this is necessary for lines such as ifeq ***, else, endif)
          */
         public void addCommand(String cmd, boolean consoleOutput, boolean noindent) {
-            commands.add((noindent ? NO_INDENT_PREFIX : "") + (noindent || consoleOutput ? "" : "@") + cmd);
+            String command = (noindent ? NO_INDENT_PREFIX : "") + (noindent || consoleOutput ? "" : "@") + cmd;
+            commands.add(command);
+            record(this, OP_COMMAND, command);
         }
 
         /**
@@ -434,16 +659,10 @@ public class Makefile {
          * @param phonyDefaultDependencies Default dependencies of phony target - in case it is created with this call
          */
         public void addToPhony(String phonyName, String... phonyDefaultDependencies) {
-            Target phony = phonyTargets.get(phonyName);
-            if (phony == null) {
-                phony = new Target(phonyName, null);
-                phony.addCommand("echo $(" + DONE_MSG_VAR + ")", false);
-                for (String s : phonyDefaultDependencies) {
-                    phony.addDependency(s);
-                }
-                phonyTargets.put(phonyName, phony);
-            }
-            phony.addDependency(name);
+            Makefile.this.addToPhony(name, phonyName, phonyDefaultDependencies);
+            String[] operation = Arrays.copyOf(new String[] {OP_TO_PHONY, name, phonyName}, phonyDefaultDependencies.length + 3);
+            System.arraycopy(phonyDefaultDependencies, 0, operation, 3, phonyDefaultDependencies.length);
+            record(operation);
         }
 
         public String toString() {
@@ -468,6 +687,15 @@ public class Makefile {
             return name;
         }
 
+        /**
+         * Write dependencies in the order they were added - instead of sorting them
+         * (make processes dependencies in this order - e.g. this decides which targets 'make -j' starts first)
+         */
+        public void setKeepDependencyOrder() {
+            dependencies = new LinkedHashSet<String>(dependencies);
+            record(this, OP_KEEP_ORDER, null);
+        }
+
         /**
          * Add order-only dependency to target (see GNU-make documentation for details)
          * (THIS IS NOT SUPPORTED BY pmake)
@@ -476,6 +704,7 @@ public class Makefile {
          */
         public void addOrderOnlyDependency(Object dep) {
             ooDependencies.add(dep.toString());
+            record(this, OP_ORDER_ONLY_DEPENDENCY, dep.toString());
         }
     }
 }
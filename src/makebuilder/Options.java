@@ -46,6 +46,9 @@ public class Options extends Properties {
     /** Print activity log? */
     public boolean printActivityLog = false;
 
+    /** Number of threads to generate build commands for build entities with (1: serial) */
+    public int buildThreads = 1;
+
     /** File name for generated makefile */
     public String generatedMakefileName = "Makefile";
 
@@ -75,8 +78,10 @@ public class Options extends Properties {
                 calculateDependencies = true;
             } else if (s.startsWith("--dotfile")) {
                 outputDotFile = true;
-            } else if (s.startsWith("--activitylog")) {
+            } else if (s.equals("--activitylog")) {
                 printActivityLog = true;
+            } else if (s.startsWith("--parallel")) {
+                buildThreads = s.startsWith("--parallel=") ? Integer.parseInt(s.substring("--parallel=".length())) : Runtime.getRuntime().availableProcessors();
             } else if (s.startsWith("--makefile=")) {
                 generatedMakefileName = s.substring("--makefile=".length());
             } else if (s.startsWith("--")) {
@@ -0,0 +1,218 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import makebuilder.handler.LazyHandler;
+
+/**
+ * @author Max Reichardt
+ *
+ * Collects hot-spot information during a makebuilder run (option --profile[=N]):
+ * cumulative time and call counts per handler and phase (loading build files, processing source files,
+ * generating build commands), the N slowest files and build entities, as well as hit and miss counts of caches.
+ *
+ * Instrumented code obtains the active profiler with getActive() - which returns null if profiling is disabled.
+ * So, when disabled, overhead is a (static) field read and a null check per call.
+ */
+public class Profiler {
+
+    /** Phases that are profiled */
+    public static final String LOAD = "load build files", PROCESS = "process source files", BUILD = "generate build commands";
+
+    /** Active profiler (null if profiling is disabled) */
+    private static volatile Profiler active;
+
+    /** Number of slowest files and build entities to report */
+    private final int topN;
+
+    /** Cumulative time and call count per phase and handler (phase => handler name => counter) */
+    private final Map<String, Map<String, Counter>> handlerCounters = new LinkedHashMap<String, Map<String, Counter>>();
+
+    /** Cumulative time per file and build entity */
+    private final Map<SrcFile, Counter> fileCounters = new HashMap<SrcFile, Counter>();
+    private final Map<BuildEntity, Counter> entityCounters = new HashMap<BuildEntity, Counter>();
+
+    /** Hit and miss counts of caches (cache name => {hits, misses}) */
+    private final Map<String, long[]> cacheCounters = new TreeMap<String, long[]>();
+
+    /** Cumulative time and number of calls */
+    private static class Counter {
+        long time, calls;
+    }
+
+    /**
+     * @param topN Number of slowest files and build entities to report
+     */
+    private Profiler(int topN) {
+        this.topN = topN;
+    }
+
+    /**
+     * Activates profiling (replaces any previously active profiler)
+     *
+     * @param topN Number of slowest files and build entities to report
+     * @return Active profiler
+     */
+    public static Profiler start(int topN) {
+        active = new Profiler(topN);
+        return active;
+    }
+
+    /**
+     * Deactivates profiling
+     */
+    public static void stop() {
+        active = null;
+    }
+
+    /**
+     * @return Active profiler - or null if profiling is disabled
+     */
+    public static Profiler getActive() {
+        return active;
+    }
+
+    /**
+     * Add time spent in handler call
+     *
+     * @param phase Phase (see constants)
+     * @param handler Handler (SourceFileHandler or BuildFileLoader)
+     * @param file File that was processed (null if not applicable)
+     * @param be Build entity that was processed (null if not applicable)
+     * @param time Time spent (ns)
+     */
+    public synchronized void add(String phase, Object handler, SrcFile file, BuildEntity be, long time) {
+        Map<String, Counter> counters = handlerCounters.get(phase);
+        if (counters == null) {
+            counters = new HashMap<String, Counter>();
+            handlerCounters.put(phase, counters);
+        }
+        add(counters, getName(handler), time);
+        if (file != null) {
+            add(fileCounters, file, time);
+        }
+        if (be != null) {
+            add(entityCounters, be, time);
+        }
+    }
+
+    /**
+     * Count cache access
+     *
+     * @param cache Name of cache
+     * @param hit Was requested information found (and up to date) in cache?
+     */
+    public synchronized void countCacheAccess(String cache, boolean hit) {
+        long[] counts = cacheCounters.get(cache);
+        if (counts == null) {
+            counts = new long[2];
+            cacheCounters.put(cache, counts);
+        }
+        counts[hit ? 0 : 1]++;
+    }
+
+    /**
+     * Print report to console
+     */
+    public synchronized void print() {
+        System.out.println("\nProfile:");
+        for (Map.Entry<String, Map<String, Counter>> phase : handlerCounters.entrySet()) {
+            System.out.println("\n  " + phase.getKey() + ":");
+            for (Map.Entry<String, Counter> entry : sort(phase.getValue(), Integer.MAX_VALUE)) {
+                System.out.println("    " + format(entry.getValue()) + "  " + entry.getKey());
+            }
+        }
+        System.out.println("\n  " + topN + " slowest files:");
+        for (Map.Entry<SrcFile, Counter> entry : sort(fileCounters, topN)) {
+            System.out.println("    " + format(entry.getValue()) + "  " + entry.getKey().relative);
+        }
+        System.out.println("\n  " + topN + " slowest build entities:");
+        for (Map.Entry<BuildEntity, Counter> entry : sort(entityCounters, topN)) {
+            System.out.println("    " + format(entry.getValue()) + "  " + entry.getKey().getTarget());
+        }
+        if (cacheCounters.size() > 0) {
+            System.out.println("\n  caches:");
+            for (Map.Entry<String, long[]> entry : cacheCounters.entrySet()) {
+                System.out.println("    " + entry.getKey() + ": " + entry.getValue()[0] + " hits, " + entry.getValue()[1] + " misses");
+            }
+        }
+    }
+
+    /**
+     * @param handler Handler
+     * @return Name of handler to use in report (for lazy handlers: the wrapped handler's name - if it was created)
+     */
+    private static String getName(Object handler) {
+        if (handler instanceof LazyHandler && ((LazyHandler)handler).getHandler() != null) {
+            handler = ((LazyHandler)handler).getHandler();
+        }
+        return handler.getClass().getSimpleName();
+    }
+
+    /**
+     * @param counters Counters
+     * @param key Key of counter to add to (counter is created if it does not exist)
+     * @param time Time to add (ns)
+     */
+    private static <K> void add(Map<K, Counter> counters, K key, long time) {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            counter = new Counter();
+            counters.put(key, counter);
+        }
+        counter.time += time;
+        counter.calls++;
+    }
+
+    /**
+     * @param counters Counters
+     * @param max Maximum number of entries to return
+     * @return Entries with highest time (sorted by time in descending order)
+     */
+    private static <K> List<Map.Entry<K, Counter>> sort(Map<K, Counter> counters, int max) {
+        List<Map.Entry<K, Counter>> result = new ArrayList<Map.Entry<K, Counter>>(counters.entrySet());
+        Collections.sort(result, new Comparator<Map.Entry<K, Counter>>() {
+            @Override
+            public int compare(Map.Entry<K, Counter> o1, Map.Entry<K, Counter> o2) {
+                return Long.compare(o2.getValue().time, o1.getValue().time);
+            }
+        });
+        return result.size() > max ? result.subList(0, max) : result;
+    }
+
+    /**
+     * @param counter Counter
+     * @return Formatted time and number of calls
+     */
+    private static String format(Counter counter) {
+        return String.format("%9.1fms %8d calls", counter.time / 1000000.0, counter.calls);
+    }
+}
@@ -0,0 +1,303 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import makebuilder.util.ToStringComparator;
+import makebuilder.util.Util;
+
+/**
+ * @author Max Reichardt
+ *
+ * Reverse index over the (resolved) dependencies of source files and build entities.
+ *
+ * Answers the question which files, translation units and build entities are affected
+ * if certain source files change (see --impact=<file>[,<file>...] and AffectedTargetCreator).
+ */
+public class ReverseDependencyIndex {
+
+    /** Extensions of translation units (files that are compiled) */
+    public static final String[] TRANSLATION_UNIT_EXTENSIONS = {"c", "cpp", "cc", "cxx", "cu"};
+
+    /** Source file => files that depend on it directly (e.g. include it) */
+    private final Map<SrcFile, Set<SrcFile>> dependentFiles = new IdentityHashMap<SrcFile, Set<SrcFile>>();
+
+    /** Source file => build entities that have it in their sources */
+    private final Map<SrcFile, Set<BuildEntity>> owners = new IdentityHashMap<SrcFile, Set<BuildEntity>>();
+
+    /** Build entity => build entities that depend on it directly */
+    private final Map<BuildEntity, Set<BuildEntity>> dependentEntities = new IdentityHashMap<BuildEntity, Set<BuildEntity>>();
+
+    /** Affected build entity with details */
+    public static class Impact {
+
+        /** Affected build entity */
+        public final BuildEntity buildEntity;
+
+        /** Translation units to recompile */
+        public final List<SrcFile> translationUnits = new ArrayList<SrcFile>();
+
+        /** Size of translation units including all files they depend on (bytes) - as estimate for compile cost */
+        public long bytes;
+
+        private Impact(BuildEntity buildEntity) {
+            this.buildEntity = buildEntity;
+        }
+
+        /**
+         * @return Does build entity only need to be linked again? (because build entities it depends on changed)
+         */
+        public boolean relinkOnly() {
+            return translationUnits.isEmpty();
+        }
+    }
+
+    /**
+     * @param files All source files (with resolved dependencies)
+     * @param buildEntities All build entities (with resolved dependencies)
+     */
+    public ReverseDependencyIndex(Collection<SrcFile> files, Collection<BuildEntity> buildEntities) {
+        for (SrcFile sf : files) {
+            for (SrcFile dep : sf.getDependencies()) {
+                add(dependentFiles, dep, sf);
+            }
+            for (SrcFile dep : sf.getOptionalDependencies()) {
+                add(dependentFiles, dep, sf);
+            }
+        }
+        for (BuildEntity be : buildEntities) {
+            for (SrcFile sf : be.sources) {
+                add(owners, sf, be);
+            }
+            for (BuildEntity dep : be.dependencies) {
+                add(dependentEntities, dep, be);
+            }
+            for (BuildEntity dep : be.optionalDependencies) {
+                add(dependentEntities, dep, be);
+            }
+        }
+    }
+
+    /**
+     * Adds value to set in map (sets keep insertion order - so output is deterministic)
+     */
+    private static <K, V> void add(Map<K, Set<V>> map, K key, V value) {
+        Set<V> set = map.get(key);
+        if (set == null) {
+            set = new LinkedHashSet<V>();
+            map.put(key, set);
+        }
+        set.add(value);
+    }
+
+    /**
+     * @param changed Changed source files
+     * @return Changed files and all files that depend on them directly or indirectly
+     */
+    public Set<SrcFile> getAffectedFiles(Collection<SrcFile> changed) {
+        Set<SrcFile> result = new LinkedHashSet<SrcFile>(changed);
+        List<SrcFile> queue = new ArrayList<SrcFile>(changed);
+        for (int i = 0; i < queue.size(); i++) {
+            Set<SrcFile> dependents = dependentFiles.get(queue.get(i));
+            if (dependents != null) {
+                for (SrcFile sf : dependents) {
+                    if (result.add(sf)) {
+                        queue.add(sf);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param changed Changed source files
+     * @param changedEntities Build entities that are affected in any case (e.g. because their build file changed)
+     * @return Build entities with affected files in their sources, changedEntities and all build entities that depend on any of them (directly or indirectly)
+     */
+    public Set<BuildEntity> getAffectedEntities(Collection<SrcFile> changed, Collection<BuildEntity> changedEntities) {
+        Set<BuildEntity> result = new LinkedHashSet<BuildEntity>(changedEntities);
+        for (SrcFile sf : getAffectedFiles(changed)) {
+            Set<BuildEntity> bes = owners.get(sf);
+            if (bes != null) {
+                result.addAll(bes);
+            }
+            if (sf.getOwner() != null) {
+                result.add(sf.getOwner());
+            }
+        }
+        List<BuildEntity> queue = new ArrayList<BuildEntity>(result);
+        for (int i = 0; i < queue.size(); i++) {
+            Set<BuildEntity> dependents = dependentEntities.get(queue.get(i));
+            if (dependents != null) {
+                for (BuildEntity be : dependents) {
+                    if (result.add(be)) {
+                        queue.add(be);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param changed Changed source files
+     * @return Affected build entities - first the ones with translation units to recompile, then the ones to relink (each sorted by target file name)
+     */
+    public List<Impact> getImpact(Collection<SrcFile> changed) {
+        Map<BuildEntity, Impact> impacts = new IdentityHashMap<BuildEntity, Impact>();
+        List<BuildEntity> queue = new ArrayList<BuildEntity>();
+        for (SrcFile sf : getAffectedFiles(changed)) {
+            Set<BuildEntity> bes = owners.get(sf);
+            if (bes == null || (!sf.hasExtension(TRANSLATION_UNIT_EXTENSIONS))) {
+                continue;
+            }
+            long bytes = 0;
+            for (SrcFile dep : sf.getAllDependencies(new TreeSet<SrcFile>(ToStringComparator.instance))) {
+                bytes += dep.size;
+            }
+            for (BuildEntity be : bes) {
+                Impact impact = impacts.get(be);
+                if (impact == null) {
+                    impact = new Impact(be);
+                    impacts.put(be, impact);
+                    queue.add(be);
+                }
+                impact.translationUnits.add(sf);
+                impact.bytes += bytes;
+            }
+        }
+
+        // build entities to relink
+        for (int i = 0; i < queue.size(); i++) {
+            Set<BuildEntity> dependents = dependentEntities.get(queue.get(i));
+            if (dependents != null) {
+                for (BuildEntity be : dependents) {
+                    if (!impacts.containsKey(be)) {
+                        impacts.put(be, new Impact(be));
+                        queue.add(be);
+                    }
+                }
+            }
+        }
+
+        List<Impact> result = new ArrayList<Impact>(impacts.values());
+        Collections.sort(result, new Comparator<Impact>() {
+            public int compare(Impact i1, Impact i2) {
+                if (i1.relinkOnly() != i2.relinkOnly()) {
+                    return i1.relinkOnly() ? 1 : -1;
+                }
+                return i1.buildEntity.getTargetFilename().compareTo(i2.buildEntity.getTargetFilename());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @param be Build entity
+     * @return Type of build entity (for output)
+     */
+    public static String getType(BuildEntity be) {
+        if (be.isUnitTest()) {
+            return "unit test";
+        } else if (be.isTestProgram()) {
+            return "test program";
+        }
+        return be.isLibrary() ? "library" : "program";
+    }
+
+    /**
+     * Resolves source files specified by user
+     *
+     * @param scanner Source scanner
+     * @param home Home directory (file names may be relative to it)
+     * @param fileNames Comma-separated list of file names (relative to home directory or absolute)
+     * @return Source files - null if any of them could not be found (error message is printed)
+     */
+    public static List<SrcFile> findFiles(SourceScanner scanner, File home, String fileNames) {
+        List<SrcFile> result = new ArrayList<SrcFile>();
+        String homePath = home.getAbsolutePath() + File.separator;
+        for (String fileName : fileNames.split(",")) {
+            fileName = fileName.trim();
+            if (fileName.startsWith(homePath)) {
+                fileName = fileName.substring(homePath.length());
+            }
+            SrcFile sf = scanner.find(fileName);
+            if (sf == null) {
+                System.out.println(Util.color("Cannot find source file " + fileName, Util.Color.RED, true));
+                return null;
+            }
+            result.add(sf);
+        }
+        return result;
+    }
+
+    /**
+     * Prints affected build entities and estimated recompile cost
+     *
+     * @param changed Changed source files
+     * @param out Stream to print to
+     */
+    public void printImpact(List<SrcFile> changed, PrintStream out) {
+        Set<SrcFile> affectedFiles = getAffectedFiles(changed);
+        List<Impact> impacts = getImpact(changed);
+        out.println("Impact of changing " + changed + ":");
+        out.println("  " + (affectedFiles.size() - changed.size()) + " other source files depend on changed files (directly or indirectly)");
+        int translationUnits = 0;
+        long bytes = 0;
+        Map<String, Integer> typeCounts = new TreeMap<String, Integer>();
+        for (Impact impact : impacts) {
+            String type = getType(impact.buildEntity);
+            Integer count = typeCounts.get(type);
+            typeCounts.put(type, count == null ? 1 : (count + 1));
+            translationUnits += impact.translationUnits.size();
+            bytes += impact.bytes;
+            out.println(String.format("  %-12s %-50s %s", type, impact.buildEntity.getTargetFilename(),
+                                      impact.relinkOnly() ? "relink" : (impact.translationUnits.size() + " translation units (" + formatBytes(impact.bytes) + ")")));
+        }
+        out.println("Total: " + translationUnits + " translation units (" + formatBytes(bytes) + ") in " + impacts.size() + " targets " + typeCounts);
+    }
+
+    /**
+     * @param bytes Number of bytes
+     * @return Human-readable string
+     */
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+        }
+        return String.format("%.1f KB", bytes / 1024.0);
+    }
+}
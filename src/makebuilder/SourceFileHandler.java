@@ -21,6 +21,8 @@
  */
 package makebuilder;
 
+import java.util.EnumSet;
+
 /**
  * @author Max Reichardt
  *
@@ -59,6 +61,24 @@ public interface SourceFileHandler {
      */
     public void build(BuildEntity be, Makefile makefile, MakeFileBuilder builder) throws Exception;
 
+    /**
+     * Marks handlers whose build() method may be called for different build entities concurrently.
+     * (build commands are only generated in parallel if all handlers that implement build() are marked)
+     */
+    public interface ThreadSafeBuild {}
+
+    /**
+     * Implemented by handlers that only process source files of certain types in processSourceFile().
+     * (scanner passes only files of these types)
+     */
+    public interface FileTypeFilter {
+
+        /**
+         * @return Types of source files to process
+         */
+        public EnumSet<SrcFile.FileType> getProcessedFileTypes();
+    }
+
     /**
      * @author max
      *
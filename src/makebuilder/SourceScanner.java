@@ -30,7 +30,11 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -77,6 +81,12 @@ public class SourceScanner {
     /** ShortCut to File.separator */
     public static final String FS = File.separator;
 
+    /** Keep file information in memory for the next scan - instead of saving it to cache file? (see BuilderDaemon) */
+    private static boolean retainInfo;
+
+    /** File information retained from last scan (null if there was none) */
+    private static SortedMap<String, SrcFile> retainedInfo;
+
     /**
      *
      * @param home Makefile/home directory ($MCAHOME)
@@ -136,21 +146,32 @@ public class SourceScanner {
         // load and apply cached information about files
         if (useCache) {
             activityLog.addActivity("load and apply cached information about files");
-            SortedMap<String, SrcFile> cachedFileInfo = loadCachedInfo();
+            SortedMap<String, SrcFile> cachedFileInfo = retainedInfo != null ? retainedInfo : loadCachedInfo();
             if (cachedFileInfo != null) {
                 for (SrcFile sf : files.values()) {
                     sf.applyCachedInfo(cachedFileInfo.get(sf.relative));
                 }
             }
+            Profiler profiler = Profiler.getActive();
+            if (profiler != null) {
+                for (SrcFile sf : files.values()) {
+                    profiler.countCacheAccess("source file information", sf.isInfoUpToDate());
+                }
+            }
         }
 
         ArrayList<SrcFile> tempFiles = new ArrayList<SrcFile>(files.values()); // make copy
 
         // load build files
         activityLog.addActivity("load build files");
+        Profiler profiler = Profiler.getActive();
         for (SrcFile file : tempFiles) {
             for (BuildFileLoader loader : loaders) {
+                long start = profiler != null ? System.nanoTime() : 0;
                 loader.process(file, builder.buildEntities, this, builder);
+                if (profiler != null) {
+                    profiler.add(Profiler.LOAD, loader, file, null, System.nanoTime() - start);
+                }
             }
         }
 
@@ -172,10 +193,36 @@ public class SourceScanner {
 
         // scan/process source files
         activityLog.addActivity("scan/process source files");
+        ArrayList<SrcFile> localFiles = new ArrayList<SrcFile>();
+        for (SrcFile file : tempFiles) {
+            if (!file.relative.startsWith("/")) {
+                localFiles.add(file);
+            }
+        }
+        Map<EnumSet<SrcFile.FileType>, List<SrcFile>> buckets = new HashMap<EnumSet<SrcFile.FileType>, List<SrcFile>>();
         for (SourceFileHandler handler : handlers) {
-            for (SrcFile file : tempFiles) {
-                if (!file.relative.startsWith("/")) {
-                    handler.processSourceFile(file, makefile, this, builder);
+            if (!processesSourceFiles(handler)) {
+                continue;
+            }
+            List<SrcFile> handlerFiles = localFiles;
+            if (handler instanceof SourceFileHandler.FileTypeFilter) {
+                EnumSet<SrcFile.FileType> types = ((SourceFileHandler.FileTypeFilter)handler).getProcessedFileTypes();
+                handlerFiles = buckets.get(types);
+                if (handlerFiles == null) {
+                    handlerFiles = new ArrayList<SrcFile>();
+                    for (SrcFile file : localFiles) {
+                        if (types.contains(file.type)) {
+                            handlerFiles.add(file);
+                        }
+                    }
+                    buckets.put(types, handlerFiles);
+                }
+            }
+            for (SrcFile file : handlerFiles) {
+                long start = profiler != null ? System.nanoTime() : 0;
+                handler.processSourceFile(file, makefile, this, builder);
+                if (profiler != null) {
+                    profiler.add(Profiler.PROCESS, handler, file, null, System.nanoTime() - start);
                 }
             }
         }
@@ -187,7 +234,10 @@ public class SourceScanner {
         }
 
         // save cached info
-        if (useCache) {
+        if (useCache && retainInfo) {
+            activityLog.addActivity("retaining cache");
+            retainedInfo = new TreeMap<String, SrcFile>(files);
+        } else if (useCache) {
             activityLog.addActivity("saving cache");
             System.out.print("Saving cache... ");
             saveCachedInfo();
@@ -230,13 +280,38 @@ public class SourceScanner {
         }
     }
 
+    /**
+     * @param retain Keep file information in memory for the next scan - instead of saving it to cache file after every scan?
+     */
+    public static synchronized void setRetainInfo(boolean retain) {
+        retainInfo = retain;
+    }
+
+    /**
+     * Save file information retained in memory to cache file
+     *
+     * @param home Makefile/home directory ($MCAHOME)
+     */
+    public static synchronized void saveRetainedInfo(File home) {
+        if (retainedInfo == null) {
+            return;
+        }
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(home.getAbsolutePath() + File.separator + CACHE_FILE)));
+            oos.writeObject(retainedInfo);
+            oos.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Create SrcDir instance
      *
      * @param dir Directory to create instance for
      * @return created and registered SrcDir instance
      */
-    public SrcDir createSrcDirInstance(File dir) {
+    public synchronized SrcDir createSrcDirInstance(File dir) {
         SrcDir sd = new SrcDir(this, dir);
         dirs.put(sd.relative, sd);
         if (needIncludePaths == null) {
@@ -254,7 +329,7 @@ public class SourceScanner {
      * @param file File that will be created (relative file name)
      * @return SrcFile instance that was created
      */
-    public SrcFile registerBuildProduct(String relFile) {
+    public synchronized SrcFile registerBuildProduct(String relFile) {
         File abs = new File(homeDirExt + relFile);
         String relDir = relFile.substring(0, relFile.lastIndexOf(File.separator));
         SrcDir sd = findDir(relDir, true);
@@ -270,7 +345,7 @@ public class SourceScanner {
      * @param createIfNonExistent Create new SrcDir object if no such object exists yet?
      * @return Directory
      */
-    public SrcDir findDir(String relativeName, boolean createIfNonExistent) {
+    public synchronized SrcDir findDir(String relativeName, boolean createIfNonExistent) {
         SrcDir result = dirs.get(relativeName);
         if (result == null && createIfNonExistent) {
             result = createSrcDirInstance(relativeName.startsWith(File.separator) ? new File(relativeName) : new File(homeDirExt + relativeName));
@@ -284,7 +359,7 @@ public class SourceScanner {
      * @param relFileName Relative file name
      * @return SrcFile instance if file exists - otherwise null
      */
-    public SrcFile find(String relFileName) {
+    public synchronized SrcFile find(String relFileName) {
         SrcFile result = files.get(relFileName);
         if (result != null) {
             return result;
@@ -328,6 +403,9 @@ public class SourceScanner {
     }
 
     /**
+     * (build products may be registered concurrently while build commands are generated in parallel
+     *  - so iterate over the collection in a block that is synchronized on this scanner)
+     *
      * @return Collection of all source files
      */
     public Collection<SrcFile> getAllFiles() {
@@ -341,6 +419,18 @@ public class SourceScanner {
         return dirs.values();
     }
 
+    /**
+     * @param handler Source file handler
+     * @return Does handler implement processSourceFile()? (otherwise there is no need to pass any files to it)
+     */
+    private static boolean processesSourceFiles(SourceFileHandler handler) {
+        try {
+            return handler.getClass().getMethod("processSourceFile", SrcFile.class, Makefile.class, SourceScanner.class, MakeFileBuilder.class).getDeclaringClass() != SourceFileHandler.Impl.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
 //  /**
 //   * Create and initialize h file cache
 //   *
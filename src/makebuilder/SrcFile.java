@@ -23,11 +23,16 @@ package makebuilder;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import makebuilder.util.Files;
 import makebuilder.util.Util;
@@ -36,11 +41,22 @@ import makebuilder.util.Util;
  * @author Max Reichardt
  *
  * Relevant info on single source file
+ *
+ * As there are many instances, the representation is compact: marks are bits in a single word,
+ * handler data is stored in an array indexed by property key (indices are shared by all files)
+ * and dependencies are stored in exactly-sized arrays (files without dependencies share an empty one).
  */
 public class SrcFile implements Serializable {
 
     /** UID */
-    private static final long serialVersionUID = 13835934634512L;
+    private static final long serialVersionUID = 13835934634513L;
+
+    /** Names of all marks and property keys used so far (their index is the same for all files) */
+    private static final List<String> markNames = new ArrayList<String>(), propertyKeys = new ArrayList<String>();
+    private static final ConcurrentHashMap<String, Integer> markIndices = new ConcurrentHashMap<String, Integer>(), propertyIndices = new ConcurrentHashMap<String, Integer>();
+
+    /** Shared empty array for files without dependencies */
+    private static final SrcFile[] NO_DEPENDENCIES = new SrcFile[0];
 
     /** Absolute file name */
     public final transient File absolute;
@@ -54,8 +70,11 @@ public class SrcFile implements Serializable {
     /** Reference to SrcDir containing file */
     public final transient SrcDir dir;
 
-    /** Contains any data that ContentHandlers wish to store about this file */
-    public final Hashtable<String, Serializable> properties = new Hashtable<String, Serializable>();
+    /** Marks set on this file (bit i is set if file has mark markNames.get(i)) */
+    private transient long marks;
+
+    /** Data that ContentHandlers wish to store about this file (index: see propertyKeys) - null if there is none */
+    private transient Serializable[] propertyValues;
 
     /** Date of last change to source file */
     public final long lastChange;
@@ -66,11 +85,17 @@ public class SrcFile implements Serializable {
     /** True, if properties/dependencies were cached and loaded from last run and file has not changed in the mean-time */
     private transient boolean infoCachedAndUpToDate = false;
 
-    /** Other source files that this file directly depends on - resolved */
-    public transient final List<SrcFile> dependencies = new ArrayList<SrcFile>();
+    /** Other source files that this file directly depends on - resolved (the first dependencyCount elements; grows geometrically) */
+    private transient SrcFile[] dependencies = NO_DEPENDENCIES;
+
+    /** Other optional source files that this file directly depends on - resolved (the first optionalDependencyCount elements; grows geometrically) */
+    private transient SrcFile[] optionalDependencies = NO_DEPENDENCIES;
+
+    /** Number of (optional) dependencies */
+    private transient int dependencyCount, optionalDependencyCount;
 
-    /** Other optional source files that this file directly depends on - resolved */
-    public transient final List<SrcFile> optionalDependencies = new ArrayList<SrcFile>();
+    /** Unmodifiable views on (optional) dependencies - created lazily and discarded when dependencies change */
+    private transient volatile List<SrcFile> dependencyView, optionalDependencyView;
 
     /** First raw dependency that could not be resolved - null if no dependencies were missing */
     public transient String missingDependency = null;
@@ -87,6 +112,30 @@ public class SrcFile implements Serializable {
     /** Currently processing file? (temporary variable for BuildEntity.java) */
     public transient boolean processing = false;
 
+    /** File extension (determined once in constructor) */
+    private final transient String extension;
+
+    /** Type of file (determined once from extension) */
+    public final transient FileType type;
+
+    /** Types of source files that handlers are interested in */
+    public enum FileType {
+        C, CPP, H, HPP, CU, UI, JAVA, OTHER;
+
+        /**
+         * @param extension File extension (uppercase/lowercase is not relevant)
+         * @return Type of file with this extension
+         */
+        public static FileType get(String extension) {
+            for (FileType t : values()) {
+                if (t != OTHER && t.name().equalsIgnoreCase(extension)) {
+                    return t;
+                }
+            }
+            return OTHER;
+        }
+    }
+
     /**
      * @param dir Directory that file is in
      * @param file File
@@ -99,6 +148,9 @@ public class SrcFile implements Serializable {
         this.dir = dir;
         lastChange = file.lastModified();
         size = file.length();
+        String n = absolute.getName();
+        extension = (n.contains(".") ? n.substring(n.lastIndexOf(".") + 1) : n).intern(); // few distinct values
+        type = FileType.get(extension);
     }
 
     /**
@@ -109,8 +161,67 @@ public class SrcFile implements Serializable {
     public void applyCachedInfo(SrcFile cachedInfo) {
         if ((cachedInfo != null) && (cachedInfo.size == size) && (cachedInfo.lastChange == lastChange)) {
             infoCachedAndUpToDate = true;
-            properties.putAll(cachedInfo.properties);
+            marks |= cachedInfo.marks;
+            if (cachedInfo.propertyValues != null) {
+                for (int i = 0; i < cachedInfo.propertyValues.length; i++) {
+                    if (cachedInfo.propertyValues[i] != null) {
+                        setProperty(i, cachedInfo.propertyValues[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param key Key of property
+     * @return Value of property - null if property is not set
+     */
+    public Serializable getProperty(String key) {
+        Integer index = propertyIndices.get(key);
+        Serializable[] values = propertyValues;
+        return (index == null || values == null || index >= values.length) ? null : values[index];
+    }
+
+    /**
+     * Store data about this file (used by ContentHandlers - and cached)
+     *
+     * @param key Key of property
+     * @param value Value of property
+     */
+    public void setProperty(String key, Serializable value) {
+        setProperty(getIndex(key, propertyKeys, propertyIndices), value);
+    }
+
+    /**
+     * @param index Index of property key
+     * @param value Value of property
+     */
+    private synchronized void setProperty(int index, Serializable value) {
+        if (propertyValues == null || index >= propertyValues.length) {
+            propertyValues = propertyValues == null ? new Serializable[index + 1] : Arrays.copyOf(propertyValues, index + 1);
+        }
+        propertyValues[index] = value;
+    }
+
+    /**
+     * @param name Name of mark or property key
+     * @param names Names registered so far
+     * @param indices Indices of names registered so far
+     * @return Index of name (registered if this is the first time it is used)
+     */
+    private static int getIndex(String name, List<String> names, ConcurrentHashMap<String, Integer> indices) {
+        Integer index = indices.get(name);
+        if (index == null) {
+            synchronized (names) {
+                index = indices.get(name);
+                if (index == null) {
+                    index = names.size();
+                    names.add(name);
+                    indices.put(name, index);
+                }
+            }
         }
+        return index;
     }
 
     /**
@@ -158,8 +269,7 @@ public class SrcFile implements Serializable {
      * @return File extension
      */
     public String getExtension() {
-        String n = absolute.getName();
-        return n.contains(".") ? n.substring(n.lastIndexOf(".") + 1) : n;
+        return extension;
     }
 
     /**
@@ -167,9 +277,8 @@ public class SrcFile implements Serializable {
      * @return Has file one of these extensions?
      */
     public boolean hasExtension(String... extensions) {
-        String ex = getExtension();
         for (String e : extensions) {
-            if (e.equalsIgnoreCase(ex)) {
+            if (e.equalsIgnoreCase(extension)) {
                 return true;
             }
         }
@@ -238,12 +347,12 @@ public class SrcFile implements Serializable {
      */
     public SortedSet<SrcFile> getAllDependencies(SortedSet<SrcFile> result) {
         result.add(this);
-        for (SrcFile dep : dependencies) {
+        for (SrcFile dep : getDependencies()) {
             if (!result.contains(dep)) {
                 dep.getAllDependencies(result);
             }
         }
-        for (SrcFile dep : optionalDependencies) {
+        for (SrcFile dep : getOptionalDependencies()) {
             if (!result.contains(dep) && (dep.absolute.exists())) {
                 dep.getAllDependencies(result);
             }
@@ -251,20 +360,164 @@ public class SrcFile implements Serializable {
         return result;
     }
 
+    /**
+     * @return Other source files that this file directly depends on - resolved (unmodifiable)
+     */
+    public List<SrcFile> getDependencies() {
+        List<SrcFile> result = dependencyView;
+        if (result == null) {
+            synchronized (this) {
+                result = createView(dependencies, dependencyCount);
+                dependencyView = result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Other optional source files that this file directly depends on - resolved (unmodifiable)
+     */
+    public List<SrcFile> getOptionalDependencies() {
+        List<SrcFile> result = optionalDependencyView;
+        if (result == null) {
+            synchronized (this) {
+                result = createView(optionalDependencies, optionalDependencyCount);
+                optionalDependencyView = result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param array Array with elements
+     * @param count Number of elements in array
+     * @return Unmodifiable view on first count elements of array (later additions to array beyond count do not affect it)
+     */
+    private static List<SrcFile> createView(SrcFile[] array, int count) {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(array).subList(0, count));
+    }
+
+    /**
+     * @param dependency Source file that this file directly depends on
+     */
+    public void addDependency(SrcFile dependency) {
+        addDependencies(Collections.singletonList(dependency), false);
+    }
+
+    /**
+     * @param dependencies Source files that this file directly depends on
+     * @param optional Optional dependencies?
+     */
+    public synchronized void addDependencies(Collection<SrcFile> dependencies, boolean optional) {
+        if (dependencies.isEmpty()) {
+            return;
+        }
+        SrcFile[] result = optional ? optionalDependencies : this.dependencies;
+        int i = optional ? optionalDependencyCount : dependencyCount;
+        int count = i + dependencies.size();
+        if (count > result.length) {
+            result = Arrays.copyOf(result, Math.max(count, result.length + (result.length >> 1) + 2));
+        }
+        for (SrcFile dependency : dependencies) {
+            result[i++] = dependency;
+        }
+        if (optional) {
+            optionalDependencies = result;
+            optionalDependencyCount = count;
+            optionalDependencyView = null;
+        } else {
+            this.dependencies = result;
+            dependencyCount = count;
+            dependencyView = null;
+        }
+    }
+
+    /**
+     * Removes all (resolved) dependencies
+     */
+    public synchronized void clearDependencies() {
+        dependencies = NO_DEPENDENCIES;
+        optionalDependencies = NO_DEPENDENCIES;
+        dependencyCount = 0;
+        optionalDependencyCount = 0;
+        dependencyView = null;
+        optionalDependencyView = null;
+    }
+
     /**
      * Mark file
      *
      * @param mark Name of mark
      */
-    public void mark(String mark) {
-        properties.put(mark, "");
+    public synchronized void mark(String mark) {
+        int index = getIndex(mark, markNames, markIndices);
+        if (index >= 64) {
+            throw new RuntimeException("Too many different marks (maximum is 64)");
+        }
+        marks |= 1L << index;
     }
 
     /**
      * @return Does file have mark with specified name?
      */
     public boolean hasMark(String mark) {
-        return properties.containsKey(mark);
+        Integer index = markIndices.get(mark);
+        return index != null && (marks & (1L << index)) != 0;
+    }
+
+    /**
+     * Marks and properties are serialized with their names (indices may differ in the next run)
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        List<String> markList = new ArrayList<String>();
+        synchronized (markNames) {
+            for (int i = 0; i < 64; i++) {
+                if ((marks & (1L << i)) != 0) {
+                    markList.add(markNames.get(i));
+                }
+            }
+        }
+        out.writeInt(markList.size());
+        for (String mark : markList) {
+            out.writeObject(mark);
+        }
+        Serializable[] values = propertyValues;
+        int count = 0;
+        for (int i = 0; values != null && i < values.length; i++) {
+            count += values[i] != null ? 1 : 0;
+        }
+        out.writeInt(count);
+        for (int i = 0; values != null && i < values.length; i++) {
+            if (values[i] != null) {
+                String key;
+                synchronized (propertyKeys) {
+                    key = propertyKeys.get(i);
+                }
+                out.writeObject(key);
+                out.writeObject(values[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        dependencies = NO_DEPENDENCIES;
+        optionalDependencies = NO_DEPENDENCIES;
+        dependencyCount = 0;
+        optionalDependencyCount = 0;
+        dependencyView = null;
+        optionalDependencyView = null;
+        for (int i = in.readInt(); i > 0; i--) {
+            mark((String)in.readObject());
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            String key = (String)in.readObject();
+            setProperty(key, (Serializable)in.readObject());
+        }
     }
 
     /**
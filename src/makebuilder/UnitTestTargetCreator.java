@@ -0,0 +1,203 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import makebuilder.handler.CppHandler;
+import makebuilder.util.Files;
+
+/**
+ * @author Max Reichardt
+ *
+ * Post-processor for makefiles.
+ *
+ * Creates a 'run-<unit test>' target for every unit test - and a 'test' phony target that runs all of them.
+ *
+ * Unit tests are run separately from linking them.
+ * A run target creates a stamp file when the test passes.
+ * The stamp depends on the test binary and on all libraries the test loads at runtime -
+ * so a test is skipped as long as none of them has changed.
+ *
+ * Only native unit tests get run targets (Java unit tests cannot be executed directly).
+ *
+ * The result and duration of every test run are appended to RESULTS_FILE
+ * (which is reduced to the last run of every unit test when it exceeds MAX_RESULTS lines).
+ * The 'test' target lists the unit tests with the longest recorded duration first
+ * (so 'make -j' starts them first).
+ */
+public class UnitTestTargetCreator {
+
+    /** Name of phony target that runs all unit tests */
+    public static final String TEST = "test";
+
+    /** Prefix of phony targets that run a single unit test */
+    public static final String RUN_PREFIX = "run-";
+
+    /** File that test results are appended to (one line per run: <unit test> <exit code> <duration in ms>) */
+    public static final String RESULTS_FILE = ".makeBuilderTestResults";
+
+    /** If RESULTS_FILE has more lines, it is reduced to the last run of every unit test */
+    public static final int MAX_RESULTS = 10000;
+
+    /** Reference to builder instance */
+    private final MakeFileBuilder builder;
+
+    /**
+     * @param builder Reference to builder instance
+     */
+    public UnitTestTargetCreator(MakeFileBuilder builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * @param be Unit test
+     * @return Name of phony target that runs unit test
+     */
+    public static String getRunTargetName(BuildEntity be) {
+        return RUN_PREFIX + be.getTargetFilename();
+    }
+
+    /**
+     * Reads durations of previous test runs
+     *
+     * @param resultsFile Results file
+     * @return Duration of last run in ms (key: unit test)
+     */
+    public static Map<String, Long> readDurations(File resultsFile) {
+        Map<String, Long> result = new HashMap<String, Long>();
+        if (!resultsFile.exists()) {
+            return result;
+        }
+        try {
+            for (String line : Files.readLines(resultsFile)) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length >= 3) {
+                    try {
+                        result.put(parts[0], Long.parseLong(parts[2]));
+                    } catch (NumberFormatException e) {
+                        // incomplete line (e.g. make was interrupted)
+                    }
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    /**
+     * Reduces results file to the last run of every unit test - if it has more than maxLines lines
+     * (results are appended on every test run - so the file would grow without bounds otherwise)
+     *
+     * @param resultsFile Results file
+     * @param maxLines Maximum number of lines to keep results file as it is
+     */
+    public static void compactResults(File resultsFile, int maxLines) {
+        if (!resultsFile.exists()) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readLines(resultsFile);
+            if (lines.size() <= maxLines) {
+                return;
+            }
+            Map<String, String> lastRuns = new LinkedHashMap<String, String>();
+            for (String line : lines) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length >= 3) {
+                    lastRuns.remove(parts[0]); // keep order of last runs
+                    lastRuns.put(parts[0], line);
+                }
+            }
+            Files.writeLines(resultsFile, new ArrayList<String>(lastRuns.values()));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Create 'run-<unit test>' and 'test' targets
+     *
+     * @param mf Makefile
+     * @param buildEntities All build entities (in build order)
+     */
+    public void createTargets(Makefile mf, List<BuildEntity> buildEntities) {
+        Makefile.Target testTarget = mf.getPhonyTarget(TEST);
+        if (testTarget == null) {
+            testTarget = mf.addPhonyTarget(TEST);
+        }
+        if (builder.isCrossCompiling()) {
+            return; // unit tests cannot be run on this machine
+        }
+
+        List<BuildEntity> unitTests = new ArrayList<BuildEntity>();
+        for (BuildEntity be : buildEntities) {
+            if (be.isUnitTest() && (!be.missingDep) && be.target != null && (!be.getTarget().endsWith(".jar"))) { // only native unit tests can be executed directly
+                unitTests.add(be);
+            }
+        }
+
+        // tests without history first, then by duration of last run (descending)
+        File resultsFile = new File(MakeFileBuilder.HOME, RESULTS_FILE);
+        compactResults(resultsFile, MAX_RESULTS);
+        final Map<String, Long> durations = readDurations(resultsFile);
+        Collections.sort(unitTests, new Comparator<BuildEntity>() {
+            @Override
+            public int compare(BuildEntity o1, BuildEntity o2) {
+                Long d1 = durations.get(o1.getTargetFilename());
+                Long d2 = durations.get(o2.getTargetFilename());
+                return Long.compare(d2 == null ? Long.MAX_VALUE : d2, d1 == null ? Long.MAX_VALUE : d1);
+            }
+        });
+
+        testTarget.setKeepDependencyOrder();
+        for (BuildEntity be : unitTests) {
+            String name = be.getTargetFilename();
+            SrcFile stamp = builder.getTempBuildArtifact(be, "stamp", "run");
+            Makefile.Target run = mf.addTarget(stamp.relative, false, be.getRootDir());
+            run.addDependency(be.getTarget());
+            List<BuildEntity> dependencies = new ArrayList<BuildEntity>();
+            CppHandler.collectDependencies(be, dependencies);
+            for (BuildEntity dependency : dependencies) {
+                if (dependency.isLibrary() && dependency.target != null) {
+                    run.addDependency(dependency.getTarget());
+                }
+            }
+            run.addCommand("echo ; echo \"===== Running unit test " + name + " =====\"", false);
+            run.addCommand("start=$$(date +%s%N) ; " + be.getTarget() + " ; result=$$? ; end=$$(date +%s%N) ; " +
+                           "echo \"" + name + " $$result $$(( (end - start) / 1000000 ))\" >> " + RESULTS_FILE + " ; " +
+                           "echo \"=====\" ; echo ; exit $$result", false);
+            run.addCommand("touch " + stamp.relative, false);
+
+            mf.addPhonyTarget(getRunTargetName(be), stamp.relative);
+            testTarget.addDependency(getRunTargetName(be));
+        }
+    }
+}
@@ -272,7 +272,7 @@ public abstract class FinrocBuildEntity extends BuildEntity {
             typeDetermined = true;
         } catch (RuntimeException e) {
             System.out.println(this.buildFile + ":" + this.lineNumber + ": error: " + e.getMessage());
-            System.exit(-1);
+            throw new MakeFileBuilder.AbortException(-1);
         }
 
     }
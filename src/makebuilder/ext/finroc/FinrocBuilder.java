@@ -116,7 +116,7 @@ public class FinrocBuilder extends MakeFileBuilder implements JavaHandler.Import
         if (!TARGET_FILE.exists()) {
             System.out.println(Util.color("No configuration file for current target found (expected " + TARGET_FILE.getPath() + ")!", Color.RED, true));
             System.out.println(Util.color("Maybe you need to source scripts/setenv again to update your environment.", Color.RED, true));
-            System.exit(-1);
+            throw new AbortException(-1);
         }
         String pkgConfigExtraPath = null;
         try {
@@ -170,9 +170,9 @@ public class FinrocBuilder extends MakeFileBuilder implements JavaHandler.Import
         } else {
             addLoader(new MakeXMLLoader(Library.class, Program.class, MCALibrary.class, MCAPlugin.class, MCAProgram.class, FinrocLibrary.class, FinrocPlugin.class, UnitTest.class, TestProgram.class, RRLib.class, FinrocProgram.class));
         }
-        addHandler(new Qt4Handler());
-        addHandler(new NvccHandler("-Xcompiler -fPIC"/*"-include libinfo.h"*/));
-        addHandler(new DescriptionBuilderHandler());
+        addHandler(Qt4Handler.createLazy());
+        addHandler(NvccHandler.createLazy("-Xcompiler -fPIC"/*"-include libinfo.h"*/));
+        addHandler(DescriptionBuilderHandler.createLazy());
         String cflags = "-Wall -Wwrite-strings -Wno-unknown-pragmas -include libinfo.h";
         String cxxflags = cflags + " -include make_builder/enum_strings_builder/enum_strings.h";
         String clangCodeGenerationFlags = "-std=c++11 -include libinfo.h -include make_builder/enum_strings_builder/enum_strings.h";
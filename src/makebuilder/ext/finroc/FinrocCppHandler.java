@@ -66,7 +66,7 @@ public class FinrocCppHandler extends CppHandler {
 
         // Add 'presence' file dependencies to source files
         if (file.hasExtension("c", "cpp", "h", "hpp")) {
-            CodeTreeNode codeTreeRoot = (CodeTreeNode)file.properties.get(CPP_MODEL_KEY);
+            CodeTreeNode codeTreeRoot = (CodeTreeNode)file.getProperty(CPP_MODEL_KEY);
             if (codeTreeRoot != null) {
                 macros.clear();
                 getAllMacros(macros, codeTreeRoot);
@@ -81,8 +81,8 @@ public class FinrocCppHandler extends CppHandler {
                                 dependency = sources.registerBuildProduct("build/$(PRESENCE_DIR)/" + lib);
                                 optionalLibraries.put(lib, dependency);
                             }
-                            if (!file.dependencies.contains(dependency)) {
-                                file.dependencies.add(dependency);
+                            if (!file.getDependencies().contains(dependency)) {
+                                file.addDependency(dependency);
                             }
                         }
                     }
@@ -106,14 +106,8 @@ public class FinrocCppHandler extends CppHandler {
         // Create/update presence files that are required
         for (String requiredFile : optionalLibraries.keySet()) {
             File presenceFile = new File(presencePath.getPath() + File.separator + requiredFile);
-            boolean present = false;
-            requiredFile += ".$(LIB_EXTENSION)";
-            for (BuildEntity be : MakeFileBuilder.getInstance().buildEntities) {
-                if (requiredFile.equals(be.getTargetFilename())) {
-                    present = !be.missingDep;
-                    break;
-                }
-            }
+            BuildEntity be = MakeFileBuilder.getInstance().getBuildEntityIndex().getByTargetFilename(requiredFile + ".$(LIB_EXTENSION)");
+            boolean present = be != null && !be.missingDep;
 
             boolean write = true;
             if (presenceFile.exists()) {
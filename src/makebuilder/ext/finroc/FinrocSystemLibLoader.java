@@ -33,6 +33,7 @@ import makebuilder.Makefile;
 import makebuilder.SourceFileHandler;
 import makebuilder.SourceScanner;
 import makebuilder.SrcFile;
+import makebuilder.libdb.PkgConfigFile;
 import makebuilder.util.Files;
 import makebuilder.util.Util;
 
@@ -133,6 +134,7 @@ public class FinrocSystemLibLoader extends SourceFileHandler.Impl {
         }
 
         // find/load all libraries that contain system information
+        PkgConfigFile.SearchPath searchPath = null;
         File[] pkgconfigFiles = new File(PKG_CONFIG_DIR).exists() ? new File(PKG_CONFIG_DIR).listFiles() : new File[0];
         for (File f : pkgconfigFiles) {
             if (f.getName().startsWith("rrlib_") || f.getName().startsWith("finroc_") || f.getName().startsWith("mca2_")) {
@@ -169,9 +171,10 @@ public class FinrocSystemLibLoader extends SourceFileHandler.Impl {
                     be.buildFile = scanner.registerBuildProduct(f.getAbsolutePath());
 
                     // Get compile options
-                    Process p = Runtime.getRuntime().exec("pkg-config --libs --cflags " + rawName);
-                    p.waitFor();
-                    String options = Files.readLines(p.getInputStream()).get(0).replaceAll("\\s+", " ");
+                    if (searchPath == null) {
+                        searchPath = PkgConfigFile.SearchPath.createFromEnvironment();
+                    }
+                    String options = searchPath.getOptions(new PkgConfigFile(f, searchPath.getSysroot()), false).trim();
 
                     // string replacement because of pkgconfig glitch (add missing '-D's that are present in .pc files)
                     for (int i = 0; i < options.length() - 1; i++) {
@@ -22,6 +22,7 @@
 package makebuilder.ext.finroc;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeSet;
@@ -33,6 +34,7 @@ import makebuilder.Makefile;
 import makebuilder.SourceScanner;
 import makebuilder.SrcDir;
 import makebuilder.SrcFile;
+import makebuilder.SrcFile.FileType;
 import makebuilder.handler.EnumStringsBuilderHandler;
 import makebuilder.util.CCOptions;
 import makebuilder.util.ToStringComparator;
@@ -42,7 +44,7 @@ import makebuilder.util.ToStringComparator;
  *
  * Responsible for calling finroc_port_description_builder on relevant files
  */
-public class PortDescriptionBuilderHandler extends SourceFileHandler.Impl {
+public class PortDescriptionBuilderHandler extends SourceFileHandler.Impl implements SourceFileHandler.ThreadSafeBuild, SourceFileHandler.FileTypeFilter {
 
     /** Single target for .cpp descr files */
     class CppDescrTarget {
@@ -78,9 +80,6 @@ public class PortDescriptionBuilderHandler extends SourceFileHandler.Impl {
     /** Contains a makefile target for each build entity with files to call description build upon */
     private Map<BuildEntity, CppDescrTarget> descrTargets = new HashMap<BuildEntity, CppDescrTarget>();
 
-    /** Dependency buffer */
-    private final TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
-
     /** Target for clang plugin */
     private Makefile.Target clangPlugin;
 
@@ -96,6 +95,11 @@ public class PortDescriptionBuilderHandler extends SourceFileHandler.Impl {
         LLVM_CLANG_PLUGIN = "make_builder/dist/clang-" + CLANG_VERSION + "-plugin-port_names-" + nativeArchitectureString + ".so";
     }
 
+    @Override
+    public EnumSet<FileType> getProcessedFileTypes() {
+        return EnumSet.of(FileType.H);
+    }
+
     @Override
     public void processSourceFile(SrcFile file, Makefile makefile, SourceScanner scanner, MakeFileBuilder builder) throws Exception {
         if (file.hasExtension("h") && (file.getName().startsWith("m") || file.getName().startsWith("g")) && (!file.getName().toLowerCase().equals(file.getName()))) { // at least one upper case character
@@ -142,11 +146,11 @@ public class PortDescriptionBuilderHandler extends SourceFileHandler.Impl {
         if (target != null) {
 
             // Add all dependencies of original files to generated .descr cpp file
-            dependencyBuffer.clear();
+            TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
             for (SrcFile sf : target.originalSourceFiles) {
                 sf.getAllDependencies(dependencyBuffer);
             }
-            target.descrFile.dependencies.addAll(dependencyBuffer);
+            target.descrFile.addDependencies(dependencyBuffer, false);
 
             // Input files string
             String inputFiles = "";
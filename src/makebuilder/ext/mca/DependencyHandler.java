@@ -27,6 +27,7 @@ import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,13 +40,14 @@ import makebuilder.Makefile;
 import makebuilder.SourceScanner;
 import makebuilder.SrcDir;
 import makebuilder.SrcFile;
+import makebuilder.SrcFile.FileType;
 
 /**
  * @author Max Reichardt
  *
  * Responsible for calculation of build entity dependencies files (the files are named ".dependencies" and include one line with the repository name for each depending entity)
  */
-public class DependencyHandler extends SourceFileHandler.Impl {
+public class DependencyHandler extends SourceFileHandler.Impl implements SourceFileHandler.FileTypeFilter {
 
     /** Dependencies for all directories (repository roots) */
     private Map<SrcDir, TreeSet<SrcDir>> dependencies = new HashMap<SrcDir, TreeSet<SrcDir>>();
@@ -156,6 +158,11 @@ public class DependencyHandler extends SourceFileHandler.Impl {
         return rootDir.getRepositoryRoot().relative;
     }
 
+    @Override
+    public EnumSet<FileType> getProcessedFileTypes() {
+        return EnumSet.of(FileType.C, FileType.CPP, FileType.H, FileType.HPP);
+    }
+
     @Override
     public void processSourceFile(SrcFile file, Makefile makefile, SourceScanner scanner, MakeFileBuilder builder) throws Exception {
         String f = file.relative;
@@ -165,7 +172,7 @@ public class DependencyHandler extends SourceFileHandler.Impl {
 
         boolean testProgram = file.getOwner() == null || file.getOwner().isTestProgram();
         TreeSet<SrcDir> depSet = getTreeSet(file.dir, testProgram);
-        for (SrcFile sf : file.dependencies) {
+        for (SrcFile sf : file.getDependencies()) {
             //String name = dep.substring(0, dep.indexOf("/"));
 
             //String name = getLibraryDirName(file.dir);
@@ -22,6 +22,7 @@
 package makebuilder.ext.mca;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeSet;
@@ -32,6 +33,8 @@ import makebuilder.MakeFileBuilder;
 import makebuilder.Makefile;
 import makebuilder.SourceScanner;
 import makebuilder.SrcFile;
+import makebuilder.SrcFile.FileType;
+import makebuilder.handler.LazyHandler;
 import makebuilder.util.ToStringComparator;
 
 /**
@@ -39,7 +42,7 @@ import makebuilder.util.ToStringComparator;
  *
  * Responsible for calling MCA descriptionbuilder on relevant files
  */
-public class DescriptionBuilderHandler extends SourceFileHandler.Impl {
+public class DescriptionBuilderHandler extends SourceFileHandler.Impl implements SourceFileHandler.ThreadSafeBuild, SourceFileHandler.FileTypeFilter {
 
     /** Single target for .cpp descr files */
     class CppDescrTarget {
@@ -65,8 +68,21 @@ public class DescriptionBuilderHandler extends SourceFileHandler.Impl {
     /** Contains a makefile target for each build entity with files to call description build upon */
     private Map<BuildEntity, CppDescrTarget> descrTargets = new HashMap<BuildEntity, CppDescrTarget>();
 
-    /** Dependency buffer */
-    private final TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
+    /**
+     * @return Description builder handler that is only created if there are headers with _DESCR_ macros
+     */
+    public static LazyHandler createLazy() {
+        return new LazyHandler(new LazyHandler.Factory() {
+            public SourceFileHandler createHandler() {
+                return new DescriptionBuilderHandler();
+            }
+        }, new LazyHandler.Trigger(EnumSet.of(FileType.H), new String[] {"DESCR", "DESCR_TEMPLATE"}, "_DESCR_"));
+    }
+
+    @Override
+    public EnumSet<FileType> getProcessedFileTypes() {
+        return EnumSet.of(FileType.H);
+    }
 
     @Override
     public void processSourceFile(SrcFile file, Makefile makefile, SourceScanner scanner, MakeFileBuilder builder) throws Exception {
@@ -124,11 +140,11 @@ public class DescriptionBuilderHandler extends SourceFileHandler.Impl {
         if (target != null) {
 
             // Add all dependencies of original files to generated .descr cpp file
-            dependencyBuffer.clear();
+            TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
             for (SrcFile sf : target.originalSourceFiles) {
                 sf.getAllDependencies(dependencyBuffer);
             }
-            target.descrFile.dependencies.addAll(dependencyBuffer);
+            target.descrFile.addDependencies(dependencyBuffer, false);
         }
     }
 }
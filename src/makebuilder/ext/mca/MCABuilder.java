@@ -81,9 +81,9 @@ public class MCABuilder extends MakeFileBuilder {
         // init handlers
         addLoader(new SConscriptParser());
         addLoader(new MakeXMLLoader(MCALibrary.class, MCAPlugin.class, MCAProgram.class));
-        addHandler(new Qt4Handler());
-        addHandler(new NvccHandler(""/*"-include Makefile.h"*/));
-        addHandler(new DescriptionBuilderHandler());
+        addHandler(Qt4Handler.createLazy());
+        addHandler(NvccHandler.createLazy(""/*"-include Makefile.h"*/));
+        addHandler(DescriptionBuilderHandler.createLazy());
         if (getOptions().combineCppFiles) {
             addHandler(new CppMerger("#undef LOCAL_DEBUG", "#undef MODULE_DEBUG"));
             makefile.changeVariable(Makefile.DONE_MSG_VAR + "=" + QUICK_BUILD_DONE_MSG);
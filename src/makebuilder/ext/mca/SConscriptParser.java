@@ -222,7 +222,7 @@ public class SConscriptParser implements BuildFileLoader {
             curLine--;
             System.err.println("Error parsing " + sconscript.toString() + ", line " + curLine + ": " + lines.get(curLine));
             e.printStackTrace();
-            System.exit(1);
+            throw new MakeFileBuilder.AbortException(1);
         }
 
         return result;
@@ -338,7 +338,7 @@ public class SConscriptParser implements BuildFileLoader {
             curLine--;
             System.err.println("Error parsing " + sconscript.toString() + ", line " + curLine + ": " + lines.get(curLine));
             e.printStackTrace();
-            System.exit(1);
+            throw new MakeFileBuilder.AbortException(1);
         }
 
         return curLine;
@@ -24,6 +24,7 @@ package makebuilder.handler;
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.TreeSet;
 
@@ -34,6 +35,7 @@ import makebuilder.Makefile;
 import makebuilder.SourceScanner;
 import makebuilder.SrcDir;
 import makebuilder.SrcFile;
+import makebuilder.SrcFile.FileType;
 import makebuilder.util.CCOptions;
 import makebuilder.util.ToStringComparator;
 
@@ -42,7 +44,7 @@ import makebuilder.util.ToStringComparator;
  *
  * Responsible for building executables and libraries from C/C++ source files
  */
-public class CppHandler implements SourceFileHandler {
+public class CppHandler implements SourceFileHandler, SourceFileHandler.ThreadSafeBuild, SourceFileHandler.FileTypeFilter {
 
     /** Standard compile and linker options (included in every compile/link) */
     private final String cCompileOptions, cxxCompileOptions, compileOptionsLib, compileOptionsBin,
@@ -57,9 +59,6 @@ public class CppHandler implements SourceFileHandler {
     /** Key for include guard that a source file might have */
     public static final String CPP_INCLUDE_GUARD_KEY = "cppIncludeGuard";
 
-    /** Dependency buffer */
-    private final TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
-
     /** Debug cpp handler? */
     private final boolean debug = MakeFileBuilder.getOptions().containsKey("debug_cpp_handler");
 
@@ -120,6 +119,11 @@ public class CppHandler implements SourceFileHandler {
         makefile.addVariable("LINK_OPTIONS_BIN=$(LDFLAGS) " + linkOptions + " $(if $(STATIC_LINKING),-static,) $(LDFLAGS_BIN) ");
     }
 
+    @Override
+    public EnumSet<FileType> getProcessedFileTypes() {
+        return EnumSet.of(FileType.C, FileType.CPP, FileType.H, FileType.HPP);
+    }
+
     @Override
     public void processSourceFile(SrcFile file, Makefile makefile, SourceScanner sources, MakeFileBuilder builder) {
         if (file.hasExtension("c", "cpp", "h", "hpp")) {
@@ -129,16 +133,16 @@ public class CppHandler implements SourceFileHandler {
 
             if (debug) {
                 System.out.println("\nParsing of " + file.relative + ":");
-                ((CodeTreeNode)file.properties.get(CPP_MODEL_KEY)).dumpTree("");
+                ((CodeTreeNode)file.getProperty(CPP_MODEL_KEY)).dumpTree("");
             }
-            resolveDependencies(file, (CodeTreeNode)file.properties.get(CPP_MODEL_KEY), true, false, false);
+            resolveDependencies(file, (CodeTreeNode)file.getProperty(CPP_MODEL_KEY), true, false, false);
             if (debug) {
                 System.out.println("\nResolved dependencies:");
-                for (SrcFile sf : file.dependencies) {
+                for (SrcFile sf : file.getDependencies()) {
                     System.out.println(" " + sf.relative);
                 }
                 System.out.println("\nResolved optional dependencies:");
-                for (SrcFile sf : file.optionalDependencies) {
+                for (SrcFile sf : file.getOptionalDependencies()) {
                     System.out.println(" " + sf.relative);
                 }
             }
@@ -196,7 +200,7 @@ public class CppHandler implements SourceFileHandler {
                         }
                     } else if (line.startsWith("error")) {
                         if (lastPreprocessorLine.startsWith("#ifndef")) {
-                            file.properties.put(CPP_INCLUDE_GUARD_KEY, lastPreprocessorLine.substring("#ifndef".length()).trim());
+                            file.setProperty(CPP_INCLUDE_GUARD_KEY, lastPreprocessorLine.substring("#ifndef".length()).trim());
                         }
                     }
                 } catch (Exception e) {
@@ -210,7 +214,7 @@ public class CppHandler implements SourceFileHandler {
         root.optimize();
 
         // set source file's tree model
-        file.properties.put(CPP_MODEL_KEY, root);
+        file.setProperty(CPP_MODEL_KEY, root);
     }
 
     /**
@@ -247,7 +251,7 @@ public class CppHandler implements SourceFileHandler {
                 //throw new RuntimeException("Dependency " + raw + " not found");
             }
         }
-        (mandatory ? file.dependencies : file.optionalDependencies).addAll(result);
+        file.addDependencies(result, !mandatory);
 
         for (CodeTreeNode child : (elseBranch ? node.altChildren : node.children)) {
             resolveDependencies(file, child, mandatory && (child.makroName == null), ignoreMissing, false);
@@ -300,7 +304,7 @@ public class CppHandler implements SourceFileHandler {
                     Makefile.Target target = makefile.addTarget(ofile.relative, true, be.getRootDir());
                     be.sources.remove(sf);
                     be.sources.add(ofile);
-                    dependencyBuffer.clear();
+                    TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
                     target.addDependencies(sf.getAllDependencies(dependencyBuffer));
                     boolean cxx = sf.hasExtension("cpp");
                     atLeastOneCxx |= cxx;
@@ -394,7 +398,7 @@ public class CppHandler implements SourceFileHandler {
 
         } else { // compiling and linking in one step (static linking and versioned libraries are unsupported in this experimental mode)
             ArrayList<SrcFile> copy = new ArrayList<SrcFile>(be.sources);
-            dependencyBuffer.clear();
+            TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
 
             String sources = "";
             String cxxSources = "";
@@ -431,11 +435,6 @@ public class CppHandler implements SourceFileHandler {
             }
             be.target.addDependencies(dependencyBuffer);
         }
-        if (be.isUnitTest() && (!builder.isCrossCompiling())) {
-            be.target.addCommand("echo ; echo \"===== Running unit test " + be.getTargetFilename() + " =====\"" , false);
-            be.target.addCommand("" + be.getTarget() + " || ( rm " + be.getTarget() + " && false )" , false);
-            be.target.addCommand("echo \"=====\" ; echo", false);
-        }
     }
 
     /**
@@ -444,7 +443,7 @@ public class CppHandler implements SourceFileHandler {
      * @param be Build Entity to fetch all dependencies of
      * @param dependencies Container to place dependencies in
      */
-    private void collectDependencies(BuildEntity be, ArrayList<BuildEntity> dependencies) {
+    public static void collectDependencies(BuildEntity be, List<BuildEntity> dependencies) {
         for (BuildEntity dependency : be.dependencies) {
             if (!dependencies.contains(dependency)) {
                 dependencies.add(dependency);
@@ -37,14 +37,11 @@ import makebuilder.util.ToStringComparator;
  *
  * Merges cpp files before building them
  */
-public class CppMerger extends SourceFileHandler.Impl {
+public class CppMerger extends SourceFileHandler.Impl implements SourceFileHandler.ThreadSafeBuild {
 
     /** Lines to append to each file */
     private final String[] appendLines;
 
-    /** Dependency buffer */
-    private final TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
-
     /**
      * @param appendLines Lines to append to each file
      */
@@ -96,7 +93,7 @@ public class CppMerger extends SourceFileHandler.Impl {
         // command addition if blacklist says we want to replace #include with #import
         String importString = (blacklist != null && blacklist.importMode) ? " | sed -e 's/#include \"/#import \"/'" : "";
 
-        dependencyBuffer.clear();
+        TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
         SrcFile sft = builder.getTempBuildArtifact(be, files.get(0).getExtension(), "merged"); // sft = "source file target"
         Makefile.Target target = makefile.addTarget(sft.relative, true, be.getRootDir());
         target.addDependency(be.buildFile);
@@ -23,6 +23,7 @@ package makebuilder.handler;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,16 +36,17 @@ import makebuilder.Makefile;
 import makebuilder.SourceScanner;
 import makebuilder.SrcDir;
 import makebuilder.SrcFile;
+import makebuilder.SrcFile.FileType;
 import makebuilder.util.CCOptions;
-import makebuilder.util.Files;
 import makebuilder.util.ToStringComparator;
+import makebuilder.util.Toolchain;
 
 /**
  * @author Max Reichardt
  *
  * Creates strings for all enum constants
  */
-public class EnumStringsBuilderHandler extends SourceFileHandler.Impl {
+public class EnumStringsBuilderHandler extends SourceFileHandler.Impl implements SourceFileHandler.ThreadSafeBuild, SourceFileHandler.FileTypeFilter {
 
     /** Single target for .cpp descr files */
     class CppDescrTarget {
@@ -83,9 +85,6 @@ public class EnumStringsBuilderHandler extends SourceFileHandler.Impl {
     /** Contains a makefile target for each build entity with files to call strings builder upon */
     private Map<BuildEntity, CppDescrTarget> descrTargets = new HashMap<BuildEntity, CppDescrTarget>();
 
-    /** Dependency buffer */
-    private final TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
-
     /** Build directory - set if lib_enum_strings.so needs to be built */
     private final String buildDir;
 
@@ -103,9 +102,12 @@ public class EnumStringsBuilderHandler extends SourceFileHandler.Impl {
         boolean suitableDoxygenVersion = false;
         boolean suitableLlvmVersion = false;
 
+        // probe both tools concurrently
+        Toolchain.prefetch(new String[] {"doxygen", "--version"}, new String[] {"clang++", "--version"});
+
         // get doxygen version
         try {
-            String[] versionString = Files.readLines(Runtime.getRuntime().exec("doxygen --version").getInputStream()).get(0).split("[.]");
+            String[] versionString = Toolchain.probe("doxygen", "--version").get(0).split("[.]");
             suitableDoxygenVersion = versionString[0].equals("1") && Integer.parseInt(versionString[1]) <= 7;
             if (suitableDoxygenVersion) {
                 System.out.println("Suitable doxygen version found");
@@ -115,7 +117,7 @@ public class EnumStringsBuilderHandler extends SourceFileHandler.Impl {
         // get llvm version
         String clangVersion = "0";
         try {
-            String[] output = Files.readLines(Runtime.getRuntime().exec("clang++ --version").getInputStream()).get(0).split("[ ]");
+            String[] output = Toolchain.probe("clang++", "--version").get(0).split("[ ]");
             String[] versionString = null;
             for (String o : output) {
                 if (o.contains(".")) {
@@ -151,6 +153,11 @@ public class EnumStringsBuilderHandler extends SourceFileHandler.Impl {
         LLVM_CLANG_PLUGIN = "make_builder/dist/clang-" + CLANG_VERSION + "-plugin-enum_strings-" + nativeArchitectureString + ".so";
     }
 
+    @Override
+    public EnumSet<FileType> getProcessedFileTypes() {
+        return EnumSet.of(FileType.H);
+    }
+
     @Override
     public void processSourceFile(SrcFile file, Makefile makefile, SourceScanner scanner, MakeFileBuilder builder) throws Exception {
         if (file.hasExtension("h")) {
@@ -208,7 +215,7 @@ public class EnumStringsBuilderHandler extends SourceFileHandler.Impl {
     /**
      * @return Enum string lib target
      */
-    private Makefile.Target getEnumStringsLib(Makefile makefile, MakeFileBuilder builder) {
+    private synchronized Makefile.Target getEnumStringsLib(Makefile makefile, MakeFileBuilder builder) {
         if (enumStringsLib == null) {
             enumStringsLib = makefile.addTarget(buildDir + "/libenum_strings.$(LIB_EXTENSION)", false, null);
             if (builder.isStaticLinkingEnabled()) {
@@ -248,11 +255,11 @@ public class EnumStringsBuilderHandler extends SourceFileHandler.Impl {
             }
 
             // Add all dependencies of original files to generated .descr cpp file
-            dependencyBuffer.clear();
+            TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
             for (SrcFile sf : target.originalSourceFiles) {
                 sf.getAllDependencies(dependencyBuffer);
             }
-            target.descrFile.dependencies.addAll(dependencyBuffer);
+            target.descrFile.addDependencies(dependencyBuffer, false);
 
             // Input files string
             String inputFiles = "";
@@ -284,7 +291,7 @@ public class EnumStringsBuilderHandler extends SourceFileHandler.Impl {
                 String includeDir = "";
                 for (SrcFile sf : target.originalSourceFiles) {
                     clangInputFiles += "-include " + sf.relative + " ";
-                    Object includeGuard = sf.properties.get(CppHandler.CPP_INCLUDE_GUARD_KEY);
+                    Object includeGuard = sf.getProperty(CppHandler.CPP_INCLUDE_GUARD_KEY);
                     if (includeGuard != null) {
                         includeGuards += " " + includeGuard.toString();
                     }
@@ -0,0 +1,770 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.handler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import makebuilder.util.Files;
+
+/**
+ * @author Max Reichardt
+ *
+ * Incremental compiler for .jar files (used by JavaHandler with --incremental-javac).
+ *
+ * Compiles Java sources in-process (javax.tools.JavaCompiler) and creates the .jar file.
+ * The dependencies between classes are extracted from the compiled class files.
+ * They are stored in a state file - together with modification time and size of all sources.
+ * So only changed sources are recompiled - and sources that use classes whose API changed.
+ *
+ * The API of all classes (type hierarchy, non-private members, constants) is hashed - including the
+ * API hashes of their supertypes in the .jar file (so a class's API also changes with inherited members).
+ * The public API of the .jar file (public classes, public and protected members) is
+ * written to an API stamp file - which is only modified if the public API changes.
+ * The targets of dependent .jar files depend on this stamp (instead of the .jar file),
+ * so they are only rebuilt if the API changes.
+ * If the stamp of an upstream .jar file (or an external .jar file) changes, all sources are recompiled.
+ *
+ * Usage: java -cp build.jar makebuilder.handler.IncrementalJavaCompiler --state=<file> --api=<file> --classes=<dir>
+ *        --jar=<file> --manifest=<file> [--sourcepath=<dir>] [--classpath=<.jar files>] [--upstream=<.jar file>=<API stamp>:...] <source files>
+ */
+public class IncrementalJavaCompiler {
+
+    /** Access flags (see JVM specification) */
+    private static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_PROTECTED = 0x0004, ACC_SYNTHETIC = 0x1000;
+
+    /** Pattern for class names in descriptors and signatures */
+    private static final Pattern CLASS_IN_DESCRIPTOR = Pattern.compile("L([\\w/$]+)[;<]");
+
+    /** Files and directories passed to compiler */
+    private final File stateFile, apiFile, classDir, jarFile, manifestFile;
+
+    /** Source path and class path (external .jar files) */
+    private final String sourcePath, classPath;
+
+    /** Upstream .jar files (key) and their API stamps (value) */
+    private final Map<String, String> upstream = new LinkedHashMap<String, String>();
+
+    /** Source files of .jar file */
+    private final Set<String> sources = new LinkedHashSet<String>();
+
+    /** Compiler state of a .jar file (stored in state file) */
+    private static class State implements Serializable {
+
+        /** UID */
+        private static final long serialVersionUID = -3482715095622410372L;
+
+        /** Compiler options that state is valid for */
+        String options;
+
+        /** Fingerprints of class path entries and upstream API stamps (key: file) */
+        Map<String, String> classPath = new HashMap<String, String>();
+
+        /** Compiled sources (key: source file) */
+        Map<String, SourceState> sources = new HashMap<String, SourceState>();
+
+        /** API hashes of classes - including APIs of supertypes (key: internal class name - e.g. "org/finroc/core/FrameworkElement") */
+        Map<String, String> apis = new HashMap<String, String>();
+
+        /** Hashes of APIs declared in classes themselves (key: internal class name) */
+        Map<String, String> declaredApis = new HashMap<String, String>();
+
+        /** Direct supertypes of classes - superclass and interfaces (key: internal class name) */
+        Map<String, List<String>> supertypes = new HashMap<String, List<String>>();
+
+        /** Hashes of public APIs of classes (key: internal class name) */
+        Map<String, String> publicApis = new HashMap<String, String>();
+
+        /** Hashes of constant values of classes (key: internal class name) */
+        Map<String, String> constants = new HashMap<String, String>();
+    }
+
+    /** State of a compiled source file */
+    private static class SourceState implements Serializable {
+
+        /** UID */
+        private static final long serialVersionUID = 8064127720383962745L;
+
+        /** Modification time and size of source file */
+        long lastModified, size;
+
+        /** Was source file passed to compiler? (false if compiler found it on source path) */
+        boolean explicit;
+
+        /** Internal names of classes compiled from source file */
+        List<String> classes = new ArrayList<String>();
+
+        /** Internal names of classes that compiled classes refer to */
+        Set<String> references = new HashSet<String>();
+    }
+
+    /** Info extracted from class file */
+    private static class ClassInfo {
+
+        /** Hash of API, public API and constant values */
+        String api, publicApi, constants;
+
+        /** Internal names of classes that class refers to */
+        Set<String> references = new HashSet<String>();
+
+        /** Internal names of direct supertypes (superclass and interfaces) */
+        List<String> supertypes = new ArrayList<String>();
+    }
+
+    /** Reference to another constant pool entry (CONSTANT_Class, CONSTANT_String) */
+    private static class PoolRef {
+
+        final int tag, index;
+
+        PoolRef(int tag, int index) {
+            this.tag = tag;
+            this.index = index;
+        }
+    }
+
+    /**
+     * @param options Options (key: option name without '--')
+     * @param sources Source files
+     */
+    public IncrementalJavaCompiler(Map<String, String> options, List<String> sources) {
+        stateFile = new File(options.get("state"));
+        apiFile = new File(options.get("api"));
+        classDir = new File(options.get("classes"));
+        jarFile = new File(options.get("jar"));
+        manifestFile = new File(options.get("manifest"));
+        sourcePath = options.containsKey("sourcepath") ? options.get("sourcepath") : "";
+        classPath = options.containsKey("classpath") ? options.get("classpath") : "";
+        if (options.containsKey("upstream")) {
+            for (String entry : options.get("upstream").split(File.pathSeparator)) {
+                if (entry.contains("=")) {
+                    upstream.put(entry.substring(0, entry.indexOf("=")), entry.substring(entry.indexOf("=") + 1));
+                }
+            }
+        }
+        for (String source : sources) {
+            this.sources.add(key(new File(source)));
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+        List<String> sources = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf("=")), arg.substring(arg.indexOf("=") + 1));
+            } else {
+                sources.add(arg);
+            }
+        }
+        for (String required : new String[] {"state", "api", "classes", "jar", "manifest"}) {
+            if (!options.containsKey(required)) {
+                System.err.println("Missing option --" + required + "=...");
+                System.exit(1);
+            }
+        }
+
+        try {
+            System.exit(new IncrementalJavaCompiler(options, sources).run() ? 0 : 1);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compiles changed sources (and sources affected by API changes) and creates .jar file
+     *
+     * @return True if compiling succeeded
+     */
+    public boolean run() throws Exception {
+        State old = loadState();
+        State state = new State();
+        state.options = sourcePath + "\n" + classPath + "\n" + upstream.keySet();
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (entry.length() > 0) {
+                File f = new File(entry);
+                state.classPath.put(entry, f.exists() ? (f.lastModified() + ":" + f.length()) : "missing");
+            }
+        }
+        for (String stamp : upstream.values()) {
+            File f = new File(stamp);
+            state.classPath.put(stamp, f.exists() ? Files.readLines(f).toString() : "missing");
+        }
+
+        // Full rebuild? (like javac does without state)
+        if (old == null || (!old.options.equals(state.options)) || (!old.classPath.equals(state.classPath))) {
+            deleteClassFiles(classDir);
+            old = new State();
+        }
+        classDir.mkdirs();
+
+        // Find changed and removed sources
+        Set<String> toCompile = new LinkedHashSet<String>();
+        Set<String> pendingClasses = new HashSet<String>(); // classes that will be compiled again
+        Set<String> tracked = new LinkedHashSet<String>(sources);
+        tracked.addAll(old.sources.keySet());
+        for (String source : tracked) {
+            SourceState sourceState = old.sources.get(source);
+            File f = new File(source);
+            boolean removed = (!f.exists()) || (sourceState != null && sourceState.explicit && (!sources.contains(source)));
+            boolean changed = sourceState == null || sourceState.lastModified != f.lastModified() || sourceState.size != f.length();
+            if (removed || changed) {
+                if (sourceState != null) {
+                    deleteClasses(sourceState, state);
+                }
+                if ((!removed) && sources.contains(source)) {
+                    toCompile.add(source);
+                    if (sourceState != null) {
+                        pendingClasses.addAll(sourceState.classes);
+                    }
+                }
+            } else {
+                state.sources.put(source, sourceState);
+                for (String c : sourceState.classes) {
+                    state.declaredApis.put(c, old.declaredApis.get(c));
+                    state.supertypes.put(c, old.supertypes.get(c));
+                    state.publicApis.put(c, old.publicApis.get(c));
+                    state.constants.put(c, old.constants.get(c));
+                }
+            }
+        }
+
+        // Compile - until no further APIs change
+        Set<String> compiled = new HashSet<String>();
+        while (true) {
+
+            // Find classes whose API changed (or that were removed)
+            computeApis(state, pendingClasses);
+            Set<String> changedApis = new HashSet<String>();
+            boolean constantsChanged = false;
+            Set<String> classes = new HashSet<String>(old.apis.keySet());
+            classes.addAll(state.apis.keySet());
+            for (String c : classes) {
+                boolean pending = pendingClasses.contains(c) || (state.declaredApis.containsKey(c) && !state.apis.containsKey(c));
+                if ((!pending) && (!equals(old.apis.get(c), state.apis.get(c)))) {
+                    changedApis.add(c);
+                    constantsChanged |= !equals(old.constants.get(c), state.constants.get(c));
+                    update(old.apis, c, state.apis.get(c));
+                    update(old.constants, c, state.constants.get(c));
+                }
+            }
+
+            // Recompile sources that use them (constants are inlined - so their usages cannot be found in class files)
+            for (Map.Entry<String, SourceState> entry : new ArrayList<Map.Entry<String, SourceState>>(state.sources.entrySet())) {
+                String source = entry.getKey();
+                if ((!compiled.contains(source)) && (!toCompile.contains(source)) && (constantsChanged || intersects(entry.getValue().references, changedApis))) {
+                    deleteClasses(entry.getValue(), state);
+                    state.sources.remove(source);
+                    if (sources.contains(source)) {
+                        toCompile.add(source);
+                        pendingClasses.addAll(entry.getValue().classes);
+                    }
+                }
+            }
+
+            if (toCompile.isEmpty()) {
+                break;
+            }
+            if (!compile(toCompile, state)) {
+                stateFile.delete();
+                return false;
+            }
+            compiled.addAll(toCompile);
+            toCompile.clear();
+            pendingClasses.clear();
+        }
+
+        saveState(state);
+        writeApiStamp(state);
+        writeJar();
+        return true;
+    }
+
+    /**
+     * Compiles source files
+     *
+     * @param files Source files to compile
+     * @param state State to add compiled sources and classes to
+     * @return True if compiling succeeded
+     */
+    private boolean compile(Set<String> files, State state) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.err.println("No Java compiler available (is this a JRE only?)");
+            return false;
+        }
+        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, null);
+        final Map<String, List<String>> outputs = new LinkedHashMap<String, List<String>>();
+        JavaFileManager fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(standardFileManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+                if (kind == JavaFileObject.Kind.CLASS && sibling != null) {
+                    String source = key(new File(sibling.toUri()));
+                    synchronized (outputs) {
+                        if (!outputs.containsKey(source)) {
+                            outputs.put(source, new ArrayList<String>());
+                        }
+                        outputs.get(source).add(className.replace('.', '/'));
+                    }
+                }
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+        };
+
+        List<String> options = new ArrayList<String>();
+        options.addAll(Arrays.asList("-d", classDir.getPath(), "-cp", classDir.getPath()));
+        List<String> classPathEntries = new ArrayList<String>(Arrays.asList(classPath.split(File.pathSeparator)));
+        classPathEntries.addAll(upstream.keySet());
+        for (String entry : classPathEntries) {
+            if (entry.length() > 0) {
+                options.set(options.size() - 1, options.get(options.size() - 1) + File.pathSeparator + entry);
+            }
+        }
+        if (sourcePath.length() > 0) {
+            options.addAll(Arrays.asList("-sourcepath", sourcePath));
+        }
+        boolean success = compiler.getTask(null, fileManager, null, options, null, standardFileManager.getJavaFileObjectsFromStrings(files)).call();
+        fileManager.close();
+        if (!success) {
+            return false;
+        }
+
+        // Add compiled sources (possibly including sources from source path) to state
+        for (Map.Entry<String, List<String>> output : outputs.entrySet()) {
+            File f = new File(output.getKey());
+            SourceState sourceState = new SourceState();
+            sourceState.lastModified = f.lastModified();
+            sourceState.size = f.length();
+            sourceState.explicit = sources.contains(output.getKey());
+            for (String c : output.getValue()) {
+                ClassInfo info = readClass(new File(classDir, c + ".class"));
+                sourceState.classes.add(c);
+                sourceState.references.addAll(info.references);
+                state.declaredApis.put(c, info.api);
+                state.supertypes.put(c, info.supertypes);
+                state.publicApis.put(c, info.publicApi);
+                state.constants.put(c, info.constants);
+            }
+            state.sources.put(output.getKey(), sourceState);
+        }
+        return true;
+    }
+
+    /**
+     * Extracts API and references from class file
+     *
+     * @param classFile Class file
+     * @return Info on class
+     */
+    private static ClassInfo readClass(File classFile) throws Exception {
+        ClassInfo result = new ClassInfo();
+        StringBuilder api = new StringBuilder();
+        StringBuilder publicApi = new StringBuilder();
+        StringBuilder constants = new StringBuilder();
+        int classAccess;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(classFile)));
+        try {
+            in.readInt(); // magic
+            in.readInt(); // version
+
+            // constant pool
+            Object[] pool = new Object[in.readUnsignedShort()];
+            for (int i = 1; i < pool.length; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                case 1:
+                    pool[i] = in.readUTF();
+                    break;
+                case 3:
+                    pool[i] = in.readInt();
+                    break;
+                case 4:
+                    pool[i] = in.readFloat();
+                    break;
+                case 5:
+                    pool[i++] = in.readLong();
+                    break;
+                case 6:
+                    pool[i++] = in.readDouble();
+                    break;
+                case 7:
+                case 8:
+                    pool[i] = new PoolRef(tag, in.readUnsignedShort());
+                    break;
+                case 16:
+                case 19:
+                case 20:
+                    in.readUnsignedShort();
+                    break;
+                case 15:
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                default: // 9, 10, 11, 12, 17, 18
+                    in.readInt();
+                    break;
+                }
+            }
+            for (Object entry : pool) {
+                String s = entry instanceof String ? (String)entry : (entry instanceof PoolRef && ((PoolRef)entry).tag == 7) ? (String)pool[((PoolRef)entry).index] : null;
+                if (s == null) {
+                    continue;
+                }
+                if (entry instanceof PoolRef && !s.startsWith("[")) {
+                    addReference(result, s);
+                }
+                Matcher m = CLASS_IN_DESCRIPTOR.matcher(s);
+                while (m.find()) {
+                    addReference(result, m.group(1));
+                }
+            }
+
+            // class
+            classAccess = in.readUnsignedShort();
+            api.append(classAccess).append(' ').append(className(pool, in.readUnsignedShort()));
+            int superClass = in.readUnsignedShort();
+            api.append(" extends ").append(superClass == 0 ? "" : className(pool, superClass)).append(" implements");
+            if (superClass != 0) {
+                result.supertypes.add(className(pool, superClass));
+            }
+            for (int i = in.readUnsignedShort(); i > 0; i--) {
+                String superInterface = className(pool, in.readUnsignedShort());
+                api.append(' ').append(superInterface);
+                result.supertypes.add(superInterface);
+            }
+            api.append('\n');
+
+            // fields and methods
+            for (int member = 0; member < 2; member++) {
+                for (int i = in.readUnsignedShort(); i > 0; i--) {
+                    int access = in.readUnsignedShort();
+                    String name = (String)pool[in.readUnsignedShort()];
+                    String descriptor = (String)pool[in.readUnsignedShort()];
+                    StringBuilder attributes = new StringBuilder();
+                    for (int j = in.readUnsignedShort(); j > 0; j--) {
+                        String attribute = (String)pool[in.readUnsignedShort()];
+                        int length = in.readInt();
+                        if (attribute.equals("ConstantValue")) {
+                            Object value = pool[in.readUnsignedShort()];
+                            value = value instanceof PoolRef ? pool[((PoolRef)value).index] : value;
+                            attributes.append(" = ").append(value);
+                            constants.append(name).append(" = ").append(value).append('\n');
+                        } else if (attribute.equals("Signature")) {
+                            attributes.append(' ').append(pool[in.readUnsignedShort()]);
+                        } else if (attribute.equals("Exceptions")) {
+                            attributes.append(" throws");
+                            for (int k = in.readUnsignedShort(); k > 0; k--) {
+                                attributes.append(' ').append(className(pool, in.readUnsignedShort()));
+                            }
+                        } else {
+                            in.readFully(new byte[length]);
+                        }
+                    }
+                    String line = access + " " + name + " " + descriptor + attributes + "\n";
+                    if ((access & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0) {
+                        api.append(line);
+                    }
+                    if ((access & (ACC_PUBLIC | ACC_PROTECTED)) != 0 && (access & ACC_SYNTHETIC) == 0) {
+                        publicApi.append(line);
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        result.api = hash(api.toString());
+        result.publicApi = (classAccess & ACC_PUBLIC) != 0 ? hash(api.substring(0, api.indexOf("\n") + 1) + publicApi) : "";
+        result.constants = hash(constants.toString());
+        return result;
+    }
+
+    /**
+     * Computes API hashes of all classes in state (from their declared APIs and the API hashes of their supertypes).
+     * Classes with a supertype that is about to be compiled again get no API hash yet.
+     *
+     * @param state State
+     * @param pendingClasses Classes that will be compiled again
+     */
+    private static void computeApis(State state, Set<String> pendingClasses) throws Exception {
+        Map<String, String> apis = new HashMap<String, String>();
+        for (String c : state.declaredApis.keySet()) {
+            computeApi(c, state, pendingClasses, apis);
+        }
+        state.apis.clear();
+        for (Map.Entry<String, String> api : apis.entrySet()) {
+            if (api.getValue() != null) {
+                state.apis.put(api.getKey(), api.getValue());
+            }
+        }
+    }
+
+    /**
+     * @param c Internal class name
+     * @param state State
+     * @param pendingClasses Classes that will be compiled again
+     * @param apis API hashes computed so far (result is added)
+     * @return API hash of class - including APIs of supertypes ("" for classes not in .jar file; null if class or a supertype is pending)
+     */
+    private static String computeApi(String c, State state, Set<String> pendingClasses, Map<String, String> apis) throws Exception {
+        if (apis.containsKey(c)) {
+            return apis.get(c);
+        }
+        if (pendingClasses.contains(c)) {
+            return null;
+        }
+        if (!state.declaredApis.containsKey(c)) {
+            return "";
+        }
+        apis.put(c, null); // guards against cyclic type hierarchies in inconsistent class files
+        StringBuilder sb = new StringBuilder(state.declaredApis.get(c));
+        for (String supertype : state.supertypes.get(c)) {
+            String api = computeApi(supertype, state, pendingClasses, apis);
+            if (api == null) {
+                return null;
+            }
+            sb.append(' ').append(supertype).append(' ').append(api);
+        }
+        String result = hash(sb.toString());
+        apis.put(c, result);
+        return result;
+    }
+
+    /**
+     * @param pool Constant pool
+     * @param index Index of CONSTANT_Class entry
+     * @return Internal name of class
+     */
+    private static String className(Object[] pool, int index) {
+        return (String)pool[((PoolRef)pool[index]).index];
+    }
+
+    /**
+     * Adds reference to class info (unless it refers to a class of the Java platform)
+     */
+    private static void addReference(ClassInfo info, String className) {
+        if (!(className.startsWith("java/") || className.startsWith("javax/"))) {
+            info.references.add(className);
+        }
+    }
+
+    /**
+     * Writes API stamp (only modified if public API of any class changed)
+     *
+     * @param state Current state
+     */
+    private void writeApiStamp(State state) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> api : new TreeMap<String, String>(state.publicApis).entrySet()) {
+            sb.append(api.getKey()).append(' ').append(api.getValue()).append('\n');
+        }
+        List<String> content = Arrays.asList(hash(sb.toString()));
+        if (apiFile.exists() && Files.readLines(apiFile).equals(content)) {
+            return;
+        }
+        apiFile.getAbsoluteFile().getParentFile().mkdirs();
+        Files.writeLines(apiFile, content);
+    }
+
+    /**
+     * Creates .jar file from manifest and all files in class directory
+     * (entries keep modification times of files)
+     */
+    private void writeJar() throws Exception {
+        InputStream manifestStream = new FileInputStream(manifestFile);
+        Manifest manifest = new Manifest(manifestStream);
+        manifestStream.close();
+        jarFile.getAbsoluteFile().getParentFile().mkdirs();
+        File tempFile = new File(jarFile.getPath() + ".tmp");
+        JarOutputStream jar = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)), manifest);
+        addToJar(jar, classDir, "");
+        jar.close();
+        if (!tempFile.renameTo(jarFile)) {
+            jarFile.delete();
+            if (!tempFile.renameTo(jarFile)) {
+                throw new IOException("Cannot create " + jarFile);
+            }
+        }
+    }
+
+    /**
+     * Adds contents of directory to .jar file (recursively)
+     *
+     * @param jar .jar file
+     * @param dir Directory
+     * @param prefix Prefix of entry names
+     */
+    private void addToJar(JarOutputStream jar, File dir, String prefix) throws Exception {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            File f = new File(dir, name);
+            JarEntry entry = new JarEntry(prefix + name + (f.isDirectory() ? "/" : ""));
+            entry.setTime(f.lastModified());
+            jar.putNextEntry(entry);
+            if (f.isDirectory()) {
+                jar.closeEntry();
+                addToJar(jar, f, entry.getName());
+            } else {
+                InputStream is = new FileInputStream(f);
+                jar.write(Files.readStreamFully(is, true));
+                jar.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Deletes class files compiled from source file (and removes their API from state)
+     */
+    private void deleteClasses(SourceState sourceState, State state) {
+        for (String c : sourceState.classes) {
+            new File(classDir, c + ".class").delete();
+            state.apis.remove(c);
+            state.declaredApis.remove(c);
+            state.supertypes.remove(c);
+            state.publicApis.remove(c);
+            state.constants.remove(c);
+        }
+    }
+
+    /**
+     * Deletes all class files in directory (recursively)
+     */
+    private static void deleteClassFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.isDirectory()) {
+                deleteClassFiles(f);
+            } else if (f.getName().endsWith(".class")) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * @return State loaded from state file - or null if it does not exist or cannot be loaded
+     */
+    private State loadState() {
+        if (!stateFile.exists()) {
+            return null;
+        }
+        try {
+            ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(stateFile)));
+            State result = (State)ois.readObject();
+            ois.close();
+            return result;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves state to state file
+     */
+    private void saveState(State state) throws Exception {
+        stateFile.getAbsoluteFile().getParentFile().mkdirs();
+        ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(stateFile)));
+        oos.writeObject(state);
+        oos.close();
+    }
+
+    /**
+     * @param f File
+     * @return Key for file in state (path relative to current directory - or absolute path if outside)
+     */
+    private static String key(File f) {
+        String path = f.getAbsoluteFile().toPath().normalize().toString();
+        String cwd = new File("").getAbsolutePath() + File.separator;
+        return path.startsWith(cwd) ? path.substring(cwd.length()) : path;
+    }
+
+    /**
+     * @return MD5 hash of string (hex)
+     */
+    private static String hash(String s) throws Exception {
+        byte[] digest = MessageDigest.getInstance("MD5").digest(s.getBytes("UTF-8"));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    private static boolean equals(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    private static void update(Map<String, String> map, String key, String value) {
+        if (value == null) {
+            map.remove(key);
+        } else {
+            map.put(key, value);
+        }
+    }
+
+    private static boolean intersects(Set<String> set1, Set<String> set2) {
+        for (String s : set1) {
+            if (set2.contains(s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -24,6 +24,7 @@ package makebuilder.handler;
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -35,7 +36,7 @@ import makebuilder.Makefile;
 import makebuilder.SourceScanner;
 import makebuilder.SrcDir;
 import makebuilder.SrcFile;
-import makebuilder.util.Files;
+import makebuilder.SrcFile.FileType;
 import makebuilder.libdb.ExtLib;
 
 /**
@@ -43,7 +44,7 @@ import makebuilder.libdb.ExtLib;
  *
  * Responsible for building executables and libraries from Java source files
  */
-public class JavaHandler implements SourceFileHandler {
+public class JavaHandler implements SourceFileHandler, SourceFileHandler.ThreadSafeBuild, SourceFileHandler.FileTypeFilter {
 
     private static final Pattern packagePattern = Pattern.compile("\\s*package\\s+(.*)\\s*;");
 
@@ -56,6 +57,9 @@ public class JavaHandler implements SourceFileHandler {
     /** Debug Java handler? */
     private final boolean debug = MakeFileBuilder.getOptions().containsKey("debug_java_handler");
 
+    /** Compile .jar files with IncrementalJavaCompiler? (instead of javac and jar) */
+    private final boolean incremental = MakeFileBuilder.getOptions().containsKey("incremental-javac");
+
     /** Dependency Resolver to use */
     private final ImportDependencyResolver dependencyResolver;
 
@@ -101,8 +105,8 @@ public class JavaHandler implements SourceFileHandler {
         /** Dependencies to .jar files resolved from import statements (without path - e.g. "finroc_core.jar") */
         ArrayList<String> resolvedDependencies;
 
-        /** Package that Java file is in */
-        //String package2 = "";
+        /** Package that Java file is in ("" for default package; null if info was cached by an older version) */
+        String packageName;
 
         /** Version of dependency resolver that is used (newer version will udpate info on all files) */
         short dependencyResolverVersion;
@@ -112,16 +116,21 @@ public class JavaHandler implements SourceFileHandler {
     public void init(Makefile makefile) {
     }
 
+    @Override
+    public EnumSet<FileType> getProcessedFileTypes() {
+        return EnumSet.of(FileType.JAVA);
+    }
+
     @Override
     public void processSourceFile(SrcFile file, Makefile makefile, SourceScanner scanner, MakeFileBuilder builder) throws Exception {
         if (file.hasExtension("java")) {
-            if ((!file.isInfoUpToDate()) || file.properties.get(JAVA_INFO_KEY) == null ||
-                    (dependencyResolver != null && ((JavaInfo)file.properties.get(JAVA_INFO_KEY)).dependencyResolverVersion < dependencyResolver.getVersion())) {
+            if ((!file.isInfoUpToDate()) || file.getProperty(JAVA_INFO_KEY) == null || ((JavaInfo)file.getProperty(JAVA_INFO_KEY)).packageName == null ||
+                    (dependencyResolver != null && ((JavaInfo)file.getProperty(JAVA_INFO_KEY)).dependencyResolverVersion < dependencyResolver.getVersion())) {
                 processFile(file, scanner);
             }
 
             // Add dependencies to build entity
-            JavaInfo info = (JavaInfo)file.properties.get(JAVA_INFO_KEY);
+            JavaInfo info = (JavaInfo)file.getProperty(JAVA_INFO_KEY);
             if (info != null && info.resolvedDependencies != null && file.getOwner() != null) {
                 for (String dependency : info.resolvedDependencies) {
                     if (!file.getOwner().libs.contains(dependency)) {
@@ -148,6 +157,7 @@ public class JavaHandler implements SourceFileHandler {
     public void processFile(SrcFile file, SourceScanner sources) {
 
         JavaInfo info = new JavaInfo();
+        info.packageName = "";
 
         // parse code and add dependencies
         ArrayList<String> imports = new ArrayList<String>();
@@ -156,9 +166,11 @@ public class JavaHandler implements SourceFileHandler {
                 line = line.trim().substring("import ".length());
                 line = line.substring(0, line.length() - 1).trim();
                 imports.add(line.replaceAll("\\s+", ""));
-//            } else if (line.trim().startsWith("package ") && line.trim().endsWith(";")) {
-//                line = line.trim().substring("package ".length());
-//                info.package2 = line.substring(0, line.length() - 1).trim().replaceAll("\\s+","");
+            } else {
+                Matcher m = packagePattern.matcher(line);
+                if (m.matches()) {
+                    info.packageName = m.group(1).trim();
+                }
             }
         }
 
@@ -167,7 +179,7 @@ public class JavaHandler implements SourceFileHandler {
             info.dependencyResolverVersion = dependencyResolver.getVersion();
             info.resolvedDependencies = dependencyResolver.getDependencies(file, imports);
         }
-        file.properties.put(JAVA_INFO_KEY, info);
+        file.setProperty(JAVA_INFO_KEY, info);
     }
 
 
@@ -183,6 +195,8 @@ public class JavaHandler implements SourceFileHandler {
 
         String jars = ""; // line in manifest
         String cpJars = ""; // class path
+        String extJars = ""; // class path - external .jar files only
+        String upstream = ""; // .jar files built by us and their API stamps
 
         // collect .jar files and copy .jar files to export/javab (I do not think this should be supported - as external libraries should not be checked in as binary files)
 //        ArrayList<SrcFile> copy = new ArrayList<SrcFile>(be.sources);
@@ -210,13 +224,20 @@ public class JavaHandler implements SourceFileHandler {
                 systemDependencies |= systemDependency;
                 jars += (systemDependency ? " lib/" : " ") + manifestJar;
                 cpJars += ":" + el.options;
+                extJars += ":" + el.options;
             }
         }
         for (BuildEntity dep : be.dependencies) {
             if (dep.getFinalHandler() == JavaHandler.class) { // C++ dependencies are only relevant at runtime
                 jars += " " + dep.getTargetFilename();
                 cpJars += ":" + dep.getTarget();
-                mainTarget.addDependency(dep.getTarget());
+                if (incremental) { // rebuild only if API changes
+                    String apiStamp = getApiStamp(dep, builder);
+                    upstream += ":" + dep.getTarget() + "=" + apiStamp;
+                    mainTarget.addDependency(apiStamp);
+                } else {
+                    mainTarget.addDependency(dep.getTarget());
+                }
             } else {
                 mainTarget.addDependency(dep.getTarget());
             }
@@ -258,10 +279,6 @@ public class JavaHandler implements SourceFileHandler {
                 mainTarget.addDependency(javaFile);
             }
         }
-        cpJars = buildDir + cpJars;
-        mainTarget.addCommand("if [ -e " + buildDir + " ]; then find " + buildDir + " -type f -name \\*.class -delete; fi", false);
-        mainTarget.addCommand("mkdir -p " + buildDir, false);
-        mainTarget.addCommand("javac -sourcepath " + srcPath + " -d " + buildDir + " -cp " + cpJars + javaFiles, true);
 
         // copy any other files
         for (SrcFile other : be.sources) {
@@ -272,8 +289,27 @@ public class JavaHandler implements SourceFileHandler {
             mainTarget.addDependency(t);
         }
 
-        // jar java files
-        mainTarget.addCommand("jar cfm " + mainTarget.getName() + " " + mfTarget.getName() + "  -C " + buildDir + "/ .", false);
+        if (incremental) {
+            // compile and jar java files
+            String apiStamp = getApiStamp(be, builder);
+            mainTarget.addCommand("java -cp " + getCompilerClassPath() + " " + IncrementalJavaCompiler.class.getName() + " --state=" + builder.getTempBuildDir(be) + "/javac.state" +
+                                  " --api=" + apiStamp + " --classes=" + buildDir + " --jar=" + mainTarget.getName() + " --manifest=" + mfTarget.getName() + " --sourcepath=" + srcPath +
+                                  (extJars.length() > 0 ? " --classpath=" + extJars.substring(1) : "") + (upstream.length() > 0 ? " --upstream=" + upstream.substring(1) : "") + javaFiles, true);
+
+            // API stamp is only modified by compiler if API changes
+            Makefile.Target apiTarget = makefile.addTarget(apiStamp, false, be.getRootDir(), false);
+            apiTarget.addDependency(mainTarget.getName());
+            apiTarget.addCommand("test -e " + apiStamp + " || touch " + apiStamp, false);
+        } else {
+            // compile java files
+            cpJars = buildDir + cpJars;
+            mainTarget.addCommand("if [ -e " + buildDir + " ]; then find " + buildDir + " -type f -name \\*.class -delete; fi", false);
+            mainTarget.addCommand("mkdir -p " + buildDir, false);
+            mainTarget.addCommand("javac -sourcepath " + srcPath + " -d " + buildDir + " -cp " + cpJars + javaFiles, true);
+
+            // jar java files
+            mainTarget.addCommand("jar cfm " + mainTarget.getName() + " " + mfTarget.getName() + "  -C " + buildDir + "/ .", false);
+        }
 
         // possibly create symlink for system libraries
         if (systemDependencies) {
@@ -288,40 +324,60 @@ public class JavaHandler implements SourceFileHandler {
 
     /**
      * Returns root dir of java source tree (dir which would have namespace "")
+     * (derived from scanned files and the package declarations in their cached JavaInfo)
      *
      * @param dir directory to search for java files
      * @return dir
      */
     private String findSourceRoot(SrcDir dir, MakeFileBuilder builder) {
-        List<File> files = Files.getAllFiles(dir.absolute, new String[] {"java"}, false, false);
-        for (File f : files) {
-
-            // is it in a sub-repository?
-            File makeXMLPath = f;
-            do {
-                makeXMLPath = makeXMLPath.getParentFile();
-            } while (!new File(makeXMLPath.getAbsolutePath() + "/make.xml").exists());
-            if (!makeXMLPath.equals(dir.absolute)) {
-                continue;
-            }
+        SourceScanner scanner = builder.getSources();
+        synchronized (scanner) {
+            for (SrcFile file : scanner.getAllFilesStartingWith(dir.relative + File.separator)) {
+                JavaInfo info = (JavaInfo)file.getProperty(JAVA_INFO_KEY);
+                if (file.type != FileType.JAVA || info == null || info.packageName == null || info.packageName.length() == 0) {
+                    continue;
+                }
 
-            try {
-                for (String line : Files.readLines(f)) {
-                    Matcher m = packagePattern.matcher(line);
-                    if (m.matches()) {
-                        String pkg = m.group(1);
-                        String root = f.getParentFile().getAbsolutePath();
-                        root = root.substring(0, root.length() - (pkg.length() + 1));
-                        return SrcDir.relativeDirName(new File(root), builder.getSources());
-                    }
+                // is it in a sub-repository?
+                String makeXMLDir = file.dir.relative;
+                while (scanner.find(makeXMLDir + File.separator + "make.xml") == null && makeXMLDir.contains(File.separator)) {
+                    makeXMLDir = makeXMLDir.substring(0, makeXMLDir.lastIndexOf(File.separator));
+                }
+                if (!makeXMLDir.equals(dir.relative)) {
+                    continue;
+                }
+
+                String packageDir = File.separator + info.packageName.replace('.', File.separatorChar);
+                if (file.dir.relative.endsWith(packageDir)) {
+                    return file.dir.relative.substring(0, file.dir.relative.length() - packageDir.length());
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
         }
         throw new RuntimeException("Could not find package declaration in java source tree " + dir.relative);
     }
 
+    /**
+     * @param be Build entity (.jar file)
+     * @return Stamp file that is only modified if the API of the .jar file changes (see IncrementalJavaCompiler)
+     */
+    private String getApiStamp(BuildEntity be, MakeFileBuilder builder) {
+        return builder.getTempBuildDir(be) + "/javac.api";
+    }
+
+    /**
+     * @return Class path to run IncrementalJavaCompiler (relative to home directory if possible)
+     */
+    private String getCompilerClassPath() {
+        String path;
+        try {
+            path = new File(IncrementalJavaCompiler.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        String home = MakeFileBuilder.HOME.getAbsolutePath() + File.separator;
+        return path.startsWith(home) ? path.substring(home.length()) : path;
+    }
+
     /**
      * Removes path from .jar file if it is located in the system library path
      *
@@ -0,0 +1,171 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.handler;
+
+import java.util.EnumSet;
+
+import makebuilder.BuildEntity;
+import makebuilder.MakeFileBuilder;
+import makebuilder.Makefile;
+import makebuilder.SourceFileHandler;
+import makebuilder.SourceScanner;
+import makebuilder.SrcFile;
+import makebuilder.SrcFile.FileType;
+
+/**
+ * @author Max Reichardt
+ *
+ * Wraps a handler that is only needed if certain files are present in the source tree
+ * (e.g. Qt or CUDA files).
+ *
+ * The wrapped handler is only created and initialized when the scanner finds a file matching
+ * one of the triggers. Until then, processing files only requires a check of their types.
+ * Triggers must cover all types of files that the wrapped handler processes.
+ */
+public class LazyHandler implements SourceFileHandler, SourceFileHandler.ThreadSafeBuild, SourceFileHandler.FileTypeFilter {
+
+    /** Creates wrapped handler */
+    public interface Factory {
+        public SourceFileHandler createHandler();
+    }
+
+    /** Files that activate the wrapped handler */
+    public static class Trigger {
+
+        /** Types of files */
+        private final EnumSet<FileType> types;
+
+        /** Marks the wrapped handler sets on matching files (used if file's info is up to date) */
+        private final String[] marks;
+
+        /** Strings one of which must occur in file's (C preprocessor) lines - none means that extension suffices */
+        private final String[] contents;
+
+        /**
+         * @param types Types of files
+         * @param marks Marks the wrapped handler sets on matching files (used instead of scanning contents if file's info is up to date)
+         * @param contents Strings one of which must occur in file's (C preprocessor) lines - none means that extension suffices
+         */
+        public Trigger(EnumSet<FileType> types, String[] marks, String... contents) {
+            this.types = types;
+            this.marks = marks;
+            this.contents = contents;
+        }
+
+        /**
+         * @param file Source file
+         * @return Does file activate handler?
+         */
+        public boolean matches(SrcFile file) {
+            if (!types.contains(file.type)) {
+                return false;
+            }
+            if (contents.length == 0) {
+                return true;
+            }
+            if (file.isInfoUpToDate()) {
+                for (String mark : marks) {
+                    if (file.hasMark(mark)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            for (String s : file.getCppLines()) {
+                for (String content : contents) {
+                    if (s.contains(content)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Creates wrapped handler */
+    private final Factory factory;
+
+    /** Files that activate the wrapped handler */
+    private final Trigger[] triggers;
+
+    /** Types of files that triggers match (wrapped handler must not process any other files) */
+    private final EnumSet<FileType> types = EnumSet.noneOf(FileType.class);
+
+    /** Wrapped handler - null as long as it has not been activated */
+    private SourceFileHandler handler;
+
+    /** Makefile passed to init() */
+    private Makefile makefile;
+
+    /**
+     * @param factory Creates wrapped handler
+     * @param triggers Files that activate the wrapped handler
+     */
+    public LazyHandler(Factory factory, Trigger... triggers) {
+        this.factory = factory;
+        this.triggers = triggers;
+        for (Trigger trigger : triggers) {
+            types.addAll(trigger.types);
+        }
+    }
+
+    /**
+     * @return Wrapped handler - null if it has not been activated (yet)
+     */
+    public SourceFileHandler getHandler() {
+        return handler;
+    }
+
+    @Override
+    public EnumSet<FileType> getProcessedFileTypes() {
+        return types;
+    }
+
+    @Override
+    public void init(Makefile makefile) {
+        this.makefile = makefile;
+    }
+
+    @Override
+    public void processSourceFile(SrcFile file, Makefile makefile, SourceScanner scanner, MakeFileBuilder builder) throws Exception {
+        if (handler == null) {
+            for (Trigger trigger : triggers) {
+                if (trigger.matches(file)) {
+                    handler = factory.createHandler();
+                    handler.init(this.makefile);
+                    break;
+                }
+            }
+            if (handler == null) {
+                return;
+            }
+        }
+        handler.processSourceFile(file, makefile, scanner, builder);
+    }
+
+    @Override
+    public void build(BuildEntity be, Makefile makefile, MakeFileBuilder builder) throws Exception {
+        if (handler != null) {
+            handler.build(be, makefile, builder);
+        }
+    }
+}
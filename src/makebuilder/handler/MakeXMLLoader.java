@@ -30,7 +30,6 @@ import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
@@ -68,13 +67,19 @@ public class MakeXMLLoader implements BuildFileLoader {
     static private final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
     static private final SAXParserFactory saxFactory = SAXParserFactory.newInstance();
     static private DocumentBuilder dbuilder;
+    static private SAXParser saxParser;
 
     static {
 
-        // Initialize document builder
+        // Initialize document builder and SAX parser (DTD disabled - they are reused for all files)
         try {
+            factory.setValidating(false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
             dbuilder = factory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
+            saxFactory.setValidating(false);
+            saxFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            saxParser = saxFactory.newSAXParser();
+        } catch (Exception e) {
             e.printStackTrace();
             System.exit(-1);
         }
@@ -108,10 +113,6 @@ public class MakeXMLLoader implements BuildFileLoader {
         } catch (UnknownHostException ex) {
             System.out.println(Util.color("Disabling DTD parsing, because there seems to be no internet connection available.", Util.Color.Y, false));*/
 
-        // disable DTD
-        factory.setValidating(false);
-        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        dbuilder = factory.newDocumentBuilder();
         doc = dbuilder.parse(file.absolute);
         //}
 
@@ -177,9 +178,6 @@ public class MakeXMLLoader implements BuildFileLoader {
             }
         }
 
-        saxFactory.setValidating(false);
-        saxFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        SAXParser saxParser = saxFactory.newSAXParser();
         saxParser.parse(file.absolute, new DefaultHandler() {
 
             Locator l;
@@ -22,6 +22,7 @@
 package makebuilder.handler;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.TreeSet;
 
 import makebuilder.BuildEntity;
@@ -31,6 +32,7 @@ import makebuilder.Makefile;
 import makebuilder.SourceScanner;
 import makebuilder.SrcDir;
 import makebuilder.SrcFile;
+import makebuilder.SrcFile.FileType;
 import makebuilder.handler.CppHandler.CodeTreeNode;
 import makebuilder.util.CCOptions;
 import makebuilder.util.ToStringComparator;
@@ -40,14 +42,11 @@ import makebuilder.util.ToStringComparator;
  *
  * Responsible for building executables and libraries from C/C++ source files
  */
-public class NvccHandler extends SourceFileHandler.Impl {
+public class NvccHandler extends SourceFileHandler.Impl implements SourceFileHandler.ThreadSafeBuild, SourceFileHandler.FileTypeFilter {
 
     /** Options for compiling */
     public final String compileOptions;
 
-    /** Dependency buffer */
-    private final TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
-
     /**
      * @param compileOptions Standard compile options (included in every compile)
      */
@@ -55,6 +54,18 @@ public class NvccHandler extends SourceFileHandler.Impl {
         this.compileOptions = compileOptions;
     }
 
+    /**
+     * @param compileOptions Standard compile options (included in every compile)
+     * @return Nvcc handler that is only created if there are .cu files
+     */
+    public static LazyHandler createLazy(final String compileOptions) {
+        return new LazyHandler(new LazyHandler.Factory() {
+            public SourceFileHandler createHandler() {
+                return new NvccHandler(compileOptions);
+            }
+        }, new LazyHandler.Trigger(EnumSet.of(FileType.CU), null));
+    }
+
     @Override
     public void init(Makefile makefile) {
         makefile.addVariable("NVCC_FLAGS=");
@@ -62,6 +73,11 @@ public class NvccHandler extends SourceFileHandler.Impl {
         makefile.addVariable("NVCC=nvcc");
     }
 
+    @Override
+    public EnumSet<FileType> getProcessedFileTypes() {
+        return EnumSet.of(FileType.CU);
+    }
+
     @Override
     public void processSourceFile(SrcFile file, Makefile makefile, SourceScanner scanner, MakeFileBuilder builder) throws Exception {
         if (file.hasExtension("cu")) {
@@ -69,7 +85,7 @@ public class NvccHandler extends SourceFileHandler.Impl {
                 CppHandler.processIncludes(file, scanner);
             }
 
-            CppHandler.resolveDependencies(file, (CodeTreeNode)file.properties.get(CppHandler.CPP_MODEL_KEY), true, false, false);
+            CppHandler.resolveDependencies(file, (CodeTreeNode)file.getProperty(CppHandler.CPP_MODEL_KEY), true, false, false);
         }
     }
 
@@ -95,7 +111,7 @@ public class NvccHandler extends SourceFileHandler.Impl {
                 Makefile.Target target = makefile.addTarget(ofile.relative, false, be.getRootDir());
                 be.sources.remove(sf);
                 be.sources.add(ofile);
-                dependencyBuffer.clear();
+                TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
                 target.addDependencies(sf.getAllDependencies(dependencyBuffer));
                 target.addCommand("$(NVCC) -o " + ofile.relative + " " + sf.relative + " " + options.createCudaString() + " -dc" , true);
             }
@@ -35,7 +35,7 @@ import makebuilder.SrcFile;
  * Handler to generate pkgconfig (.pc) files for all C++ libraries that
  * are created using makebuilder.
  */
-public class PkgConfigFileHandler extends SourceFileHandler.Impl {
+public class PkgConfigFileHandler extends SourceFileHandler.Impl implements SourceFileHandler.ThreadSafeBuild {
 
     /** Directory to place generated .pc files in */
     private final String outputDir;
@@ -76,16 +76,18 @@ public class PkgConfigFileHandler extends SourceFileHandler.Impl {
 
         // find all header files belonging to target
         StringBuilder sb = new StringBuilder();
-        for (SrcFile sf : builder.getSources().getAllFiles()) {
-            if (sf.getOwner() == be && (sf.relative.endsWith(".h") || sf.relative.endsWith(".hpp"))) {
-                if (sb.length() > 0) {
-                    sb.append(" ");
+        synchronized (builder.getSources()) {
+            for (SrcFile sf : builder.getSources().getAllFiles()) {
+                if (sf.getOwner() == be && (sf.relative.endsWith(".h") || sf.relative.endsWith(".hpp"))) {
+                    if (sb.length() > 0) {
+                        sb.append(" ");
+                    }
+                    String s = sf.relative;
+                    if (s.startsWith("sources/cpp/")) {
+                        s = s.substring("sources/cpp/".length());
+                    }
+                    sb.append(s);
                 }
-                String s = sf.relative;
-                if (s.startsWith("sources/cpp/")) {
-                    s = s.substring("sources/cpp/".length());
-                }
-                sb.append(s);
             }
         }
 
@@ -22,6 +22,7 @@
 package makebuilder.handler;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeSet;
@@ -33,6 +34,7 @@ import makebuilder.Makefile;
 import makebuilder.SourceScanner;
 import makebuilder.SrcDir;
 import makebuilder.SrcFile;
+import makebuilder.SrcFile.FileType;
 import makebuilder.util.ToStringComparator;
 
 /**
@@ -42,7 +44,7 @@ import makebuilder.util.ToStringComparator;
  *
  * Handles .ui files as well as headers requiring call to moc
  */
-public class Qt4Handler extends SourceFileHandler.Impl {
+public class Qt4Handler extends SourceFileHandler.Impl implements SourceFileHandler.ThreadSafeBuild, SourceFileHandler.FileTypeFilter {
 
     /** Single target for .cpp descr files */
     class CppQtTarget {
@@ -71,8 +73,22 @@ public class Qt4Handler extends SourceFileHandler.Impl {
     /** Contains a makefile target for each build entity with files to moc */
     private Map<BuildEntity, CppQtTarget> mocTargets = new HashMap<BuildEntity, CppQtTarget>();
 
-    /** Dependency buffer */
-    private final TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
+    /**
+     * @return Qt4 handler that is only created if there are .ui files or headers with Qt macros
+     */
+    public static LazyHandler createLazy() {
+        return new LazyHandler(new LazyHandler.Factory() {
+            public SourceFileHandler createHandler() {
+                return new Qt4Handler();
+            }
+        }, new LazyHandler.Trigger(EnumSet.of(FileType.UI), null),
+        new LazyHandler.Trigger(EnumSet.of(FileType.H, FileType.HPP), new String[] {"moc"}, "Q_OBJECT", "Q_PROPERTY", "Q_CLASSINFO"));
+    }
+
+    @Override
+    public EnumSet<FileType> getProcessedFileTypes() {
+        return EnumSet.of(FileType.H, FileType.HPP, FileType.UI);
+    }
 
     @Override
     public void processSourceFile(SrcFile file, Makefile makefile, SourceScanner scanner, MakeFileBuilder builder) throws Exception {
@@ -144,11 +160,11 @@ public class Qt4Handler extends SourceFileHandler.Impl {
         if (target != null) {
 
             // Add all dependencies of original files to generated .descr cpp file
-            dependencyBuffer.clear();
+            TreeSet<SrcFile> dependencyBuffer = new TreeSet<SrcFile>(ToStringComparator.instance);
             for (SrcFile sf : target.originalSourceFiles) {
                 sf.getAllDependencies(dependencyBuffer);
             }
-            target.descrFile.dependencies.addAll(dependencyBuffer);
+            target.descrFile.addDependencies(dependencyBuffer, false);
         }
     }
 }
@@ -32,7 +32,7 @@ import makebuilder.StartScript;
  *
  * Creates start scripts for build entities
  */
-public class ScriptHandler extends SourceFileHandler.Impl {
+public class ScriptHandler extends SourceFileHandler.Impl implements SourceFileHandler.ThreadSafeBuild {
 
     /** Home/root directory relative to script dir */
     private final String homeDirFromScriptDir;
@@ -24,12 +24,12 @@ package makebuilder.libdb;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import makebuilder.BuildEntity;
+import makebuilder.BuildEntityIndex;
 import makebuilder.util.CCOptions;
 import makebuilder.util.Files;
 import makebuilder.util.Util;
@@ -79,17 +79,15 @@ public class ExtLib {
      * Find local dependencies in external libraries
      * having this is ugly... but sometimes occurs
      *
-     * @param bes All build entities
+     * @param index Index over all build entities
      */
-    public void findLocalDependencies(Collection<BuildEntity> bes) {
+    public void findLocalDependencies(BuildEntityIndex index) {
         ArrayList<String> libCopy = new ArrayList<String>(ccOptions.libs);
         for (String lib : libCopy) {
-            for (BuildEntity be : bes) {
-                if (be.getTarget().endsWith("/lib" + lib + ".so") || be.getTarget().endsWith("/lib" + lib + ".$(LIB_EXTENSION)")) {
-                    ccOptions.libs.remove(lib);
-                    dependencies.add(be);
-                    break;
-                }
+            BuildEntity be = index.getByTargetFilename("lib" + lib + ".so", "lib" + lib + ".$(LIB_EXTENSION)");
+            if (be != null) {
+                ccOptions.libs.remove(lib);
+                dependencies.add(be);
             }
         }
     }
@@ -23,12 +23,12 @@ package makebuilder.libdb;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import makebuilder.BuildEntity;
+import makebuilder.BuildEntityIndex;
+import makebuilder.MakeFileBuilder;
 import makebuilder.util.Files;
 import makebuilder.util.Util;
 
@@ -67,7 +67,7 @@ public class LibDB {
             }
         } catch (Exception e) {
             System.err.println("Error loading libdb file: " + e.getMessage());
-            System.exit(-1);
+            throw new MakeFileBuilder.AbortException(-1);
         }
     }
 
@@ -146,11 +146,11 @@ public class LibDB {
      * Find local dependencies in external libraries
      * having this is ugly... but sometimes occurs
      *
-     * @param bes All build entities
+     * @param index Index over all build entities
      */
-    public static void findLocalDependencies(Collection<BuildEntity> bes) {
+    public static void findLocalDependencies(BuildEntityIndex index) {
         for (ExtLib el : libs.values()) {
-            el.findLocalDependencies(bes);
+            el.findLocalDependencies(index);
         }
     }
 }
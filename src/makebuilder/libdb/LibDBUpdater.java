@@ -0,0 +1,862 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.libdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import makebuilder.util.Toolchain;
+import makebuilder.util.Util;
+
+/**
+ * @author Max Reichardt
+ *
+ * Creates libdb.txt and libdb.java from libdb.raw and libdb.raw.local.
+ * (replaces the former Perl implementation of scripts/updatelibdb - which now calls this class;
+ * the file format is the same - but all SEARCH_DIR entries of the linker are used as default library directories)
+ *
+ * Headers and libraries are searched in the directories listed in etc/libdb.search.default: its 'find' commands
+ * are interpreted by this class (options -L, -maxdepth and -regex are supported; commands in backticks are run).
+ * Directory trees are crawled in parallel. The contents of all crawled directories are stored in
+ * an index file (INDEX_FILE) - in later runs, only directories whose modification time has changed
+ * are listed again. The index also contains the resolved libdb.raw entries together with the file names
+ * they were looked up with. In later runs, only entries that changed - or that look up any file name which
+ * was added to or removed from a directory - are resolved again.
+ * libdb.txt and libdb.java are only rewritten if any of their entries changed.
+ * etc/libdb.search is still executed (without libdb.search.default) - so that local modifications and
+ * the files listed by /etc/make_builder/libdb.search and etc/libdb.search.local are considered.
+ *
+ * Usage: java -cp dist/build.jar makebuilder.libdb.LibDBUpdater [<suffix>]
+ * (with suffix, etc/libdb.<suffix> is created instead of etc/libdb.txt)
+ */
+public class LibDBUpdater {
+
+    /** Name of index file in etc directory */
+    public static final String INDEX_FILE = "libdb.index";
+
+    /** Script with the default directories to search (in etc directory - interpreted by this class) */
+    public static final String DEFAULT_SEARCH_SCRIPT = "libdb.search.default";
+
+    /** Scripts that print additional files to consider (absolute - or relative to etc directory) */
+    public static final String[] SEARCH_SCRIPTS = {"libdb.search"};
+
+    /** Environment variable that tells libdb.search not to call libdb.search.default (its directories are crawled by this class) */
+    public static final String SKIP_DEFAULT_SEARCH_VARIABLE = "LIBDB_SEARCH_SKIP_DEFAULT";
+
+    /** Patterns for parsing libdb.raw */
+    private static final Pattern LINE = Pattern.compile("^\\s*(\\S*)\\s*:(.+)$"), INCLUDE = Pattern.compile("(\\s|^)(-I<(\\S+)>)(\\s|$)"),
+                                 LIB = Pattern.compile("(\\s|^)-l(\\S+)"), LIB_PATH = Pattern.compile("(\\s|:)-L(\\S+)"),
+                                 FIRST_LIB = Pattern.compile("(\\s|^)(-l\\S+)(\\s|$)"), QUOTED = Pattern.compile("^('?)(.*)\\1$"),
+                                 SEARCH_DIR = Pattern.compile("SEARCH_DIR\\(\"=([^\"]+)\"\\);"), JAR = Pattern.compile(".*/(\\S+[.]jar)$"),
+                                 SCRIPT_TOKEN = Pattern.compile("'([^']*)'|\"([^\"]*)\"|(\\S+)"), BACKTICKS = Pattern.compile("`([^`]*)`");
+
+    /** Directory tree to search */
+    private static class SearchRoot {
+
+        /** Root directory */
+        final String path;
+
+        /** Maximum depth of files to find (-1 for no limit) */
+        final int maxDepth;
+
+        /** Pattern that paths of relevant files and directories match (find's -regex) - null if all are relevant */
+        final Pattern regex;
+
+        SearchRoot(String path, int maxDepth, Pattern regex) {
+            this.path = path;
+            this.maxDepth = maxDepth;
+            this.regex = regex;
+        }
+
+        /**
+         * @param path Path of file or directory
+         * @return Is file relevant?
+         */
+        boolean matches(String path) {
+            return regex == null || regex.matcher(path).matches();
+        }
+
+        public String toString() {
+            return path + " " + maxDepth + " " + regex;
+        }
+    }
+
+    /** Contents of index file */
+    private static class Index implements Serializable {
+
+        /** UID */
+        private static final long serialVersionUID = 6730312415981062573L;
+
+        /** Directory contents (path => contents) */
+        Map<String, DirEntry> dirs = new HashMap<String, DirEntry>();
+
+        /** Resolved libdb.raw entries (line => result) */
+        Map<String, ResolvedEntry> entries = new HashMap<String, ResolvedEntry>();
+
+        /** Everything else that resolved entries depend on (default directories, search roots etc.) */
+        String key = "";
+    }
+
+    /** Resolved libdb.raw entry */
+    private static class ResolvedEntry implements Serializable {
+
+        /** UID */
+        private static final long serialVersionUID = -1590370776211418474L;
+
+        /** Options for libdb.txt - or null if library is not available */
+        String options;
+
+        /** Status for output */
+        String statusOk, statusFail;
+
+        /** Names of files (without path) that entry was looked up with */
+        String[] names;
+    }
+
+    /** Cached contents of a directory */
+    private static class DirEntry implements Serializable {
+
+        /** UID */
+        private static final long serialVersionUID = -4308615371625844817L;
+
+        /** Modification time of directory */
+        long lastModified;
+
+        /** Names of files (sorted) */
+        String[] files;
+
+        /** Names of subdirectories (sorted) */
+        String[] dirs;
+
+        /** Canonical paths of subdirectories that are symbolic links (null entries for other subdirectories) */
+        String[] linkTargets;
+    }
+
+    /** Crawls a directory (and its subdirectories) */
+    private class DirectoryWalk extends RecursiveTask<List<String>> {
+
+        /** UID */
+        private static final long serialVersionUID = 2846028356613958247L;
+
+        /** Search root that directory belongs to */
+        private final SearchRoot root;
+
+        /** Path of directory (as found) */
+        private final String path;
+
+        /** Canonical path of directory (to detect file system loops) */
+        private final String canonicalPath;
+
+        /** Depth of directory (relative to search root) */
+        private final int depth;
+
+        DirectoryWalk(SearchRoot root, String path, String canonicalPath, int depth) {
+            this.root = root;
+            this.path = path;
+            this.canonicalPath = canonicalPath;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<String> compute() {
+            List<String> result = new ArrayList<String>();
+            DirEntry entry = getDirEntry(path);
+            for (String file : entry.files) {
+                if (root.matches(path + "/" + file)) {
+                    result.add(path + "/" + file);
+                }
+            }
+            List<DirectoryWalk> subdirs = new ArrayList<DirectoryWalk>();
+            List<String> subdirPaths = new ArrayList<String>();
+            for (int i = 0; i < entry.dirs.length; i++) {
+                String subdir = path + "/" + entry.dirs[i];
+                String canonicalSubdir = entry.linkTargets[i] != null ? entry.linkTargets[i] : (canonicalPath + "/" + entry.dirs[i]);
+                if (canonicalPath.equals(canonicalSubdir) || canonicalPath.startsWith(canonicalSubdir + "/")) {
+                    continue; // file system loop
+                }
+                if (root.matches(subdir)) {
+                    subdirPaths.add(subdir);
+                } else {
+                    subdirPaths.add(null);
+                }
+                if (root.maxDepth < 0 || depth + 1 < root.maxDepth) {
+                    DirectoryWalk walk = new DirectoryWalk(root, subdir, canonicalSubdir, depth + 1);
+                    walk.fork();
+                    subdirs.add(walk);
+                } else {
+                    subdirs.add(null);
+                }
+            }
+            for (int i = 0; i < subdirs.size(); i++) {
+                if (subdirPaths.get(i) != null) {
+                    result.add(subdirPaths.get(i));
+                }
+                if (subdirs.get(i) != null) {
+                    result.addAll(subdirs.get(i).join());
+                }
+            }
+            return result;
+        }
+    }
+
+    /** etc directory */
+    private final File etcDir;
+
+    /** Name of libdb file to create */
+    private final String libdbTxt;
+
+    /** Index loaded from last run */
+    private Index oldIndex = new Index();
+
+    /** Directory contents of this run (path => directory contents) */
+    private final Map<String, DirEntry> index = new ConcurrentHashMap<String, DirEntry>();
+
+    /** Has any directory been listed (again) in this run? */
+    private volatile boolean indexModified;
+
+    /** Names of files and directories that were added or removed since last run */
+    private final Set<String> changedNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** Names of files (without path) that current libdb entry was looked up with */
+    private final Set<String> lookedUpNames = new HashSet<String>();
+
+    /** All relevant files found (in search order) */
+    private final List<String> files = new ArrayList<String>();
+
+    /** Set with all relevant files found */
+    private final Set<String> fileSet = new HashSet<String>();
+
+    /** Relevant files by file name (without path) */
+    private final Map<String, List<String>> filesByName = new HashMap<String, List<String>>();
+
+    /** System's default include and library directories */
+    private final List<String> defaultIncludeDirs = new ArrayList<String>(), defaultLibDirs = new ArrayList<String>();
+
+    /** Status of current libdb entry (for output) */
+    private String statusOk, statusFail;
+
+    public static void main(String[] args) {
+        try {
+            new LibDBUpdater(args.length > 0 ? ("libdb." + args[0]) : LibDB.LIBDB_TXT).run();
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param libdbTxt Name of libdb file to create (in etc directory)
+     */
+    public LibDBUpdater(String libdbTxt) {
+        this.etcDir = Util.getFileInEtcDir("").getAbsoluteFile();
+        this.libdbTxt = libdbTxt;
+    }
+
+    /**
+     * Creates libdb.txt and libdb.java
+     */
+    public void run() throws Exception {
+
+        // read libdb.raw.local and libdb.raw
+        List<String> lines = new ArrayList<String>();
+        for (String raw : new String[] {LibDB.LIBDB_RAW + ".local", LibDB.LIBDB_RAW}) {
+            File f = new File(etcDir, raw);
+            if (f.exists()) {
+                for (String line : makebuilder.util.Files.readLines(f)) {
+                    lines.add(trim(line));
+                }
+            }
+        }
+
+        // obtain system's default include and library dirs
+        List<String> output = Toolchain.probe(true, "cpp", "-Wp,-v");
+        for (String line : output != null ? output : new ArrayList<String>()) {
+            line = trim(line);
+            if (line.startsWith("/")) {
+                defaultIncludeDirs.add(line.split("\\s")[0]);
+            }
+        }
+        output = Toolchain.probe("c++", "-Wl,--verbose");
+        for (String line : output != null ? output : new ArrayList<String>()) {
+            Matcher m = SEARCH_DIR.matcher(line);
+            while (m.find()) {
+                defaultLibDirs.add(m.group(1));
+            }
+        }
+
+        // find relevant files
+        List<SearchRoot> roots = readSearchRoots();
+        crawl(roots);
+        for (String file : files) {
+            fileSet.add(file);
+        }
+        List<String> scriptFiles = new ArrayList<String>();
+        for (String script : SEARCH_SCRIPTS) {
+            File f = script.startsWith("/") ? new File(script) : new File(etcDir, script);
+            if (f.isFile()) {
+                ProcessBuilder pb = new ProcessBuilder(f.getPath()).redirectError(ProcessBuilder.Redirect.INHERIT);
+                pb.environment().put(SKIP_DEFAULT_SEARCH_VARIABLE, "1");
+                Process p = pb.start();
+                p.getOutputStream().close();
+                for (String line : makebuilder.util.Files.readLines(p.getInputStream())) {
+                    line = trim(line);
+                    if (line.length() > 0 && fileSet.add(line)) {
+                        files.add(line);
+                        scriptFiles.add(line);
+                    }
+                }
+                p.waitFor();
+            }
+        }
+        for (String file : files) {
+            String name = file.substring(file.lastIndexOf("/") + 1);
+            List<String> list = filesByName.get(name);
+            if (list == null) {
+                list = new ArrayList<String>();
+                filesByName.put(name, list);
+            }
+            list.add(file);
+        }
+
+        // process each line (entries resolved in last run are reused - unless they are affected by changes)
+        String key = defaultIncludeDirs + "\n" + defaultLibDirs + "\n" + System.getenv("LD_LIBRARY_PATH") + "\n" + roots + "\n" + scriptFiles.hashCode();
+        Map<String, ResolvedEntry> oldEntries = key.equals(oldIndex.key) ? oldIndex.entries : new HashMap<String, ResolvedEntry>();
+        Map<String, ResolvedEntry> entries = new HashMap<String, ResolvedEntry>();
+        boolean entriesModified = !key.equals(oldIndex.key);
+        Map<String, String> libs = new TreeMap<String, String>(); // will contain mapping "libname => line" of all available libraries
+        for (String line : lines) {
+            Matcher m = LINE.matcher(line);
+            if (!m.matches()) {
+                continue;
+            }
+            String libname = m.group(1);
+            if (libs.containsKey(libname) && (!libs.get(libname).equals("N/A"))) {
+                continue; // we already have an entry for this lib
+            }
+            ResolvedEntry entry = entries.get(line);
+            if (entry == null) {
+                entry = oldEntries.get(line);
+                if (entry == null || isAffected(entry)) {
+                    entry = resolveEntry(line, trim(m.group(2)));
+                    entriesModified = true;
+                }
+                if (entry.names != null) {
+                    entries.put(line, entry);
+                }
+            }
+            libs.put(libname, entry.options != null ? entry.options : "N/A");
+            System.out.println(libname + ": " + (entry.options != null ? ("yes " + entry.statusOk) : ("no (missing " + entry.statusFail + ")")));
+        }
+
+        // sort jars
+        Map<String, String> jars = new TreeMap<String, String>();
+        for (String file : files) {
+            Matcher m = JAR.matcher(file);
+            if (m.matches()) {
+                String existing = jars.get(m.group(1));
+                if (existing == null || existing.length() > file.length()) {
+                    jars.put(m.group(1), file);
+                }
+            }
+        }
+        for (String libname : new ArrayList<String>(jars.keySet())) {
+            if (inFinrocRepository(jars.get(libname))) {
+                jars.remove(libname);
+            }
+        }
+
+        // write libdb.txt and libdb.java
+        write(new File(etcDir, libdbTxt), libs);
+        write(new File(etcDir, LibDB.LIBDB_JAVA), jars);
+
+        // write index
+        if (indexModified || index.size() != oldIndex.dirs.size() || entriesModified || entries.size() != oldEntries.size()) {
+            Index newIndex = new Index();
+            newIndex.dirs = new HashMap<String, DirEntry>(index);
+            newIndex.entries = entries;
+            newIndex.key = key;
+            ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(new File(etcDir, INDEX_FILE))));
+            oos.writeObject(newIndex);
+            oos.close();
+        }
+    }
+
+    /**
+     * @return Directory trees to search - from the 'find' commands in DEFAULT_SEARCH_SCRIPT
+     */
+    private List<SearchRoot> readSearchRoots() throws Exception {
+        String systemRoot = System.getenv("SYSTEM_ROOT") != null ? System.getenv("SYSTEM_ROOT") : "";
+        List<SearchRoot> roots = new ArrayList<SearchRoot>();
+        for (String line : makebuilder.util.Files.readLines(new File(etcDir, DEFAULT_SEARCH_SCRIPT))) {
+            line = trim(line);
+            if (!line.startsWith("find ")) {
+                continue; // comments and shell options
+            }
+
+            // replace variables and commands in backticks (e.g. `uname -r`)
+            line = line.replace("${SYSTEM_ROOT}", systemRoot).replace("$SYSTEM_ROOT", systemRoot);
+            StringBuffer sb = new StringBuffer();
+            Matcher m = BACKTICKS.matcher(line);
+            boolean commandFailed = false;
+            while (m.find()) {
+                List<String> output = Toolchain.probe(trim(m.group(1)).split("\\s+"));
+                commandFailed |= (output == null || output.isEmpty());
+                m.appendReplacement(sb, Matcher.quoteReplacement(commandFailed ? "" : trim(output.get(0))));
+            }
+            m.appendTail(sb);
+            if (commandFailed) {
+                continue;
+            }
+
+            // parse arguments
+            List<String> paths = new ArrayList<String>();
+            int maxDepth = -1;
+            Pattern regex = null;
+            m = SCRIPT_TOKEN.matcher(sb.toString());
+            m.find(); // 'find'
+            while (m.find()) {
+                String arg = m.group(1) != null ? m.group(1) : (m.group(2) != null ? m.group(2) : m.group(3));
+                if (arg.equals("-L")) {
+                    continue;
+                } else if (arg.equals("-maxdepth") && m.find()) {
+                    maxDepth = Integer.parseInt(m.group());
+                } else if (arg.equals("-regex") && m.find()) {
+                    regex = Pattern.compile(toJavaRegex(m.group(1) != null ? m.group(1) : (m.group(2) != null ? m.group(2) : m.group(3))));
+                } else if (arg.startsWith("-")) {
+                    System.out.println(Util.color("Ignoring line in " + DEFAULT_SEARCH_SCRIPT + " with unsupported option " + arg + ": " + line, Util.Color.RED, true));
+                    paths.clear();
+                    break;
+                } else {
+                    paths.add(arg);
+                }
+            }
+            for (String path : paths) {
+                roots.add(new SearchRoot(path, maxDepth, regex));
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * @param regex Regular expression as used by find (emacs syntax: groups and alternatives are escaped)
+     * @return Regular expression in Java syntax
+     */
+    private static String toJavaRegex(String regex) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length() && "()|{}".indexOf(regex.charAt(i + 1)) >= 0) {
+                sb.append(regex.charAt(++i));
+            } else if (c == '\\' && i + 1 < regex.length()) {
+                sb.append(c).append(regex.charAt(++i));
+            } else if ("()|{}".indexOf(c) >= 0) {
+                sb.append('\\').append(c);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Finds all relevant files in the search roots
+     *
+     * @param roots Search roots
+     */
+    private void crawl(List<SearchRoot> roots) throws Exception {
+        File indexFile = new File(etcDir, INDEX_FILE);
+        if (indexFile.exists()) {
+            try {
+                ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+                oldIndex = (Index)ois.readObject();
+                ois.close();
+            } catch (Exception e) {
+                oldIndex = new Index();
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        List<DirectoryWalk> walks = new ArrayList<DirectoryWalk>();
+        for (SearchRoot root : roots) {
+            File dir = new File(root.path);
+            if (dir.isDirectory()) {
+                DirectoryWalk walk = new DirectoryWalk(root, root.path, dir.getCanonicalPath(), 0);
+                pool.execute(walk);
+                walks.add(walk);
+            }
+        }
+        for (DirectoryWalk walk : walks) {
+            if (walk.root.matches(walk.root.path)) {
+                files.add(walk.root.path);
+            }
+            files.addAll(walk.join());
+        }
+        pool.shutdown();
+
+        // contents of directories that are no longer crawled have changed as well
+        for (Map.Entry<String, DirEntry> entry : oldIndex.dirs.entrySet()) {
+            if (!index.containsKey(entry.getKey())) {
+                addChangedNames(entry.getValue(), null);
+            }
+        }
+    }
+
+    /**
+     * @param path Directory
+     * @return Contents of directory (from index, if directory has not changed)
+     */
+    private DirEntry getDirEntry(String path) {
+        File dir = new File(path);
+        long lastModified = dir.lastModified();
+        DirEntry oldEntry = oldIndex.dirs.get(path);
+        DirEntry entry = oldEntry;
+        if (entry == null || entry.lastModified != lastModified) {
+            entry = new DirEntry();
+            entry.lastModified = lastModified;
+            String[] names = dir.list();
+            if (names == null) {
+                names = new String[0];
+            }
+            Arrays.sort(names);
+            List<String> fileList = new ArrayList<String>(), dirList = new ArrayList<String>(), linkTargets = new ArrayList<String>();
+            for (String name : names) {
+                File f = new File(dir, name);
+                if (f.isDirectory()) {
+                    dirList.add(name);
+                    String target = null;
+                    if (Files.isSymbolicLink(f.toPath())) {
+                        try {
+                            target = f.getCanonicalPath();
+                        } catch (IOException e) {
+                            target = f.getAbsolutePath();
+                        }
+                    }
+                    linkTargets.add(target);
+                } else {
+                    fileList.add(name);
+                }
+            }
+            entry.files = fileList.toArray(new String[0]);
+            entry.dirs = dirList.toArray(new String[0]);
+            entry.linkTargets = linkTargets.toArray(new String[0]);
+            indexModified = true;
+            addChangedNames(entry, oldEntry);
+        }
+        index.put(path, entry);
+        return entry;
+    }
+
+    /**
+     * Adds names of files and directories that are only contained in one of two directory listings to changedNames
+     *
+     * @param entry Directory listing
+     * @param other Other listing of the same directory (null if there is none)
+     */
+    private void addChangedNames(DirEntry entry, DirEntry other) {
+        Set<String> otherNames = new HashSet<String>();
+        if (other != null) {
+            otherNames.addAll(Arrays.asList(other.files));
+            otherNames.addAll(Arrays.asList(other.dirs));
+        }
+        Set<String> names = new HashSet<String>(Arrays.asList(entry.files));
+        names.addAll(Arrays.asList(entry.dirs));
+        for (String name : names) {
+            if (!otherNames.remove(name)) {
+                changedNames.add(name);
+            }
+        }
+        changedNames.addAll(otherNames);
+    }
+
+    /**
+     * @param entry Entry resolved in last run
+     * @return Is entry affected by changes since last run? (does it look up any file name that was added or removed?)
+     */
+    private boolean isAffected(ResolvedEntry entry) {
+        for (String name : entry.names) {
+            if (changedNames.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolves libdb.raw entry
+     *
+     * @param line Line in libdb.raw
+     * @param opts Raw options of entry
+     * @return Resolved entry
+     */
+    private ResolvedEntry resolveEntry(String line, String opts) {
+        lookedUpNames.clear();
+        ResolvedEntry entry = new ResolvedEntry();
+        entry.options = processEntry(line, opts);
+        entry.statusOk = statusOk;
+        entry.statusFail = statusFail;
+        // entries with -L paths check for libraries in the file system directly - so they are always resolved again
+        entry.names = LIB_PATH.matcher(line).find() ? null : lookedUpNames.toArray(new String[0]);
+        return entry;
+    }
+
+    /**
+     * Resolves options of libdb.raw entry
+     *
+     * @param line Line in libdb.raw
+     * @param opts Raw options of entry
+     * @return Options for libdb.txt - or null if library is not available
+     */
+    private String processEntry(String line, String opts) {
+        statusOk = "";
+        statusFail = "";
+
+        // process includes
+        Matcher m = INCLUDE.matcher(opts);
+        while (m.find()) {
+            String old = m.group(2);
+            String path = findPath(m.group(3).split(","), false);
+            if (path.length() == 0) {
+                return null;
+            } else if (defaultIncludeDirs.contains(path)) {
+                opts = replaceFirst(opts, old, "");
+            } else {
+                opts = replaceFirst(opts, old, "-I" + path);
+            }
+            m = INCLUDE.matcher(opts);
+        }
+
+        // process libraries
+        List<String> existingLibPaths = new ArrayList<String>(); // existing -L entries
+        m = LIB_PATH.matcher(line);
+        while (m.find()) {
+            existingLibPaths.add(m.group(2));
+        }
+        String libPaths = "";
+        m = LIB.matcher(opts);
+        while (m.find()) {
+            String lib = m.group(2);
+            String so = "lib" + lib + ".so";
+            String a = "lib" + lib + ".a";
+            boolean skip = lib.contains("$"); // skip any libraries with a makefile variable
+            for (String existingLibPath : existingLibPaths) { // if library is available in existing -L path... continue
+                if (new File(existingLibPath + "/" + so).exists() || new File(existingLibPath + "/" + a).exists()) {
+                    skip = true;
+                }
+            }
+            if (!skip) {
+                String path = findPath(new String[] {so}, true);
+                if (path.length() == 0) {
+                    path = findPath(new String[] {a}, true);
+                    if (path.length() == 0) {
+                        return null;
+                    }
+                }
+                if (!defaultLibDirs.contains(path)) {
+                    String newPath = "-L" + path + " ";
+                    if (!libPaths.contains(newPath)) {
+                        libPaths += newPath;
+                    }
+                }
+            }
+        }
+        if (opts.length() > 0 && libPaths.length() > 0) {
+            m = FIRST_LIB.matcher(opts);
+            m.find();
+            String firstLib = m.group(2);
+            opts = replaceFirst(opts, firstLib, libPaths + firstLib);
+        }
+        return trim(opts.replace("  ", " "));
+    }
+
+    /**
+     * Returns path that contains all specified files.
+     * If there are multiple paths, the one with the highest score is chosen.
+     *
+     * @param files Files to look for (relative to path)
+     * @param libPath Are we looking for a library path? (otherwise include path)
+     * @return Path - or "" if there is no such path
+     */
+    private String findPath(String[] files, boolean libPath) {
+
+        // search for directories containing all files
+        List<String> candidates = new ArrayList<String>();
+        String first = unquote(files[0]);
+        statusFail = first;
+        for (String file : files) {
+            String name = unquote(file);
+            lookedUpNames.add(name.substring(name.lastIndexOf("/") + 1));
+        }
+        List<String> found = filesByName.get(first.substring(first.lastIndexOf("/") + 1));
+        for (String file : found != null ? found : new ArrayList<String>()) {
+            if (file.endsWith("/" + first)) {
+                String path = file.substring(0, file.length() - first.length() - 1);
+                boolean allInPath = true;
+                for (int i = 1; i < files.length && allInPath; i++) {
+                    statusFail = files[i];
+                    allInPath = fileSet.contains(path + "/" + unquote(files[i]));
+                }
+                if (allInPath) {
+                    candidates.add(path);
+                }
+            }
+        }
+
+        // find best candidate
+        String best = "";
+        int bestScore = -100000000;
+        if (candidates.size() > 1) {
+            statusOk = "(multiple)";
+        }
+        for (String candidate : candidates) {
+            int score = scorePath(candidate, libPath);
+            if (score > bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+        return best.endsWith("/") ? best.substring(0, best.length() - 1) : best;
+    }
+
+    /**
+     * Calculates score for path (higher is better)
+     *
+     * @param path Path
+     * @param libPath Is path a library path? (otherwise include path)
+     * @return Score
+     */
+    private int scorePath(String path, boolean libPath) {
+        int score = 0;
+
+        // if user invested the effort to specify a search path to his home directory, prefer any files we can find there
+        if (path.startsWith("/home/")) {
+            score += 10000;
+        }
+
+        // Is this a default system path?
+        List<String> pathList = libPath ? defaultLibDirs : defaultIncludeDirs;
+        int currentCandidateScore = 3000 + (pathList.size() - 1) * 1000;
+        for (String p : pathList) {
+            if (path.equals(p)) {
+                score += currentCandidateScore;
+            }
+            currentCandidateScore -= 1000;
+        }
+
+        // Search for libraries in LD_LIBRARY_PATHS
+        String ldLibraryPath = System.getenv("LD_LIBRARY_PATH");
+        if (ldLibraryPath != null && libPath) {
+            for (String p : ldLibraryPath.split(":")) {
+                if (path.equals(p) || path.equals(p + "/")) {
+                    score += 1000;
+                }
+            }
+        }
+        return score - path.length(); // heuristic: shorter paths are typically better
+    }
+
+    /**
+     * @param file File
+     * @return Is this file in a finroc repository?
+     */
+    private boolean inFinrocRepository(String file) {
+        String[] paths = file.split("/");
+        String check = paths[0] + "/" + paths[1];
+        for (int i = 2; i < paths.length; i++) {
+            check += "/" + paths[i];
+            if (new File(check + "/scripts/finroc_get").exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes libdb file - if its contents changed
+     *
+     * @param file File to write
+     * @param entries Entries (libname => options or path)
+     */
+    private void write(File file, Map<String, String> entries) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        String content = sb.toString();
+        if (file.exists() && new String(Files.readAllBytes(file.toPath())).equals(content)) {
+            return;
+        }
+        PrintStream ps = new PrintStream(new FileOutputStream(file));
+        ps.print(content);
+        ps.close();
+    }
+
+    /**
+     * @param s String
+     * @return String with any leading and trailing whitespace removed
+     */
+    private static String trim(String s) {
+        return s.replaceAll("^\\s+|\\s+$", "");
+    }
+
+    /**
+     * @param s String
+     * @return String with enclosing single quotes removed
+     */
+    private static String unquote(String s) {
+        Matcher m = QUOTED.matcher(s);
+        return m.matches() ? m.group(2) : s;
+    }
+
+    /**
+     * @param s String
+     * @param old Substring to replace (first occurrence)
+     * @param replacement Replacement
+     * @return String with replacement
+     */
+    private static String replaceFirst(String s, String old, String replacement) {
+        int index = s.indexOf(old);
+        return index < 0 ? s : (s.substring(0, index) + replacement + s.substring(index + old.length()));
+    }
+}
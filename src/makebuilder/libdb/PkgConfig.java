@@ -21,18 +21,17 @@
  */
 package makebuilder.libdb;
 
-import java.util.Collection;
+import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import makebuilder.BuildEntity;
+import makebuilder.BuildEntityIndex;
 import makebuilder.MakeFileBuilder;
-import makebuilder.util.Files;
 import makebuilder.util.Util;
 
 /**
- * Get infos on libraries using the pkg-config tool
+ * Get infos on libraries using pkg-config (.pc) files
  *
  * @author Michael Arndt <m_arndt@cs.uni-kl.de>
  */
@@ -41,8 +40,11 @@ public class PkgConfig {
     /** Mapping: Library name => library */
     private static Map<String, ExtLib> known_packages = new HashMap<String, ExtLib>();
 
-    /** Alternative system environment for cross-compiling */
-    private static String[] environmentVariables = null;
+    /** pkg-config search path (alternative one for cross-compiling) */
+    private static PkgConfigFile.SearchPath searchPath;
+
+    /** Persistent cache for pkg-config information */
+    private static PkgConfigCache cache = PkgConfigCache.load(new File(MakeFileBuilder.HOME, PkgConfigCache.CACHE_FILE));
 
     static {
         reinit(null, null);
@@ -57,7 +59,7 @@ public class PkgConfig {
      */
     public static void reinit(String systemRoot, String pkgConfigExtraPath) {
         if (systemRoot == null) {
-            environmentVariables = null;
+            searchPath = PkgConfigFile.SearchPath.createFromEnvironment();
         } else {
             String extraPathString = "";
             if (pkgConfigExtraPath != null) {
@@ -66,27 +68,12 @@ public class PkgConfig {
                     extraPathString += ":" + systemRoot + s;
                 }
             }
-            environmentVariables = new String[] { "PKG_CONFIG_DIR=",
-                                                  "PKG_CONFIG_LIBDIR=" + systemRoot + "/usr/lib/pkgconfig:" + systemRoot + "/usr/share/pkgconfig" + extraPathString,
-                                                  "PKG_CONFIG_SYSROOT_DIR=" + systemRoot
-                                                };
+            searchPath = new PkgConfigFile.SearchPath(systemRoot + "/usr/lib/pkgconfig:" + systemRoot + "/usr/share/pkgconfig" + extraPathString, null, systemRoot, false, false);
         }
+        searchPath.setCache(cache);
         known_packages.clear();
-        try {
-            Process p = Runtime.getRuntime().exec("pkg-config --list-all", environmentVariables);
-            p.waitFor();
-            if (p.exitValue() != 0) {
-                System.out.println(Util.color("Could not call pkg-config, will not attempt to make use of it.", Util.Color.RED, false));
-            }
-            for (String s : Files.readLines(p.getInputStream())) {
-                String[] spl = s.split("\\s");
-                if (spl.length > 0) {
-                    //System.out.println("Got package: " + spl[0]);
-                    known_packages.put(spl[0], null); // perform lazy lookup
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        for (String pkg : searchPath.listAll().keySet()) {
+            known_packages.put(pkg, null); // perform lazy lookup
         }
     }
 
@@ -120,23 +107,17 @@ public class PkgConfig {
         if (el != null) {
             return el;
         } else {
-            // get the info from pkg-config
-            Process p = Runtime.getRuntime().exec(new String[] {"pkg-config", "--cflags", MakeFileBuilder.getInstance().isStaticLinkingEnabled() ? "--static" : "", "--libs", lib}, environmentVariables);
+            // get the info from the package's .pc file
             String options = "";
-            p.waitFor();
-            if (p.exitValue() != 0) {
-                // looks like pkg-config has failed, that can e.g. happen if dependencies specified
+            try {
+                options = searchPath.getOptions(lib, MakeFileBuilder.getInstance().isStaticLinkingEnabled());
+            } catch (Exception e) {
+                // that can e.g. happen if dependencies specified
                 // with "Requires:" cannot be satisfied. In this case, makeBuilder should fail
-                System.out.println(Util.color("Calling pkg-config for " + lib + " failed:", Util.Color.RED, true));
-                for (String s : Files.readLines(p.getErrorStream())) {
-                    System.out.println(Util.color(" " + s, Util.Color.RED, true));
-                }
+                System.out.println(Util.color("Resolving pkg-config package " + lib + " failed:", Util.Color.RED, true));
+                System.out.println(Util.color(" " + e.getMessage(), Util.Color.RED, true));
                 System.out.println(Util.color("It is not safe to continue, so I am going to bail out now ...", Util.Color.RED, true));
-                System.exit(1);
-
-            }
-            for (String s : Files.readLines(p.getInputStream())) {
-                options = options + s + " ";
+                throw new MakeFileBuilder.AbortException(1);
             }
             System.out.println(Util.color("Options for package " + lib + ": " + options, Util.Color.GREEN, false));
             ExtLib library = new ExtLib(lib, options, true);
@@ -147,6 +128,13 @@ public class PkgConfig {
 
     }
 
+    /**
+     * Saves cached pkg-config information (if it changed)
+     */
+    public static void saveCache() {
+        cache.save();
+    }
+
     /**
      * @param lib Library name
      * @return Is library with this name available?
@@ -159,12 +147,12 @@ public class PkgConfig {
      * Find local dependencies in external libraries
      * having this is ugly... but sometimes occurs
      *
-     * @param bes All build entities
+     * @param index Index over all build entities
      */
-    public static void findLocalDependencies(Collection<BuildEntity> bes) {
+    public static void findLocalDependencies(BuildEntityIndex index) {
         for (ExtLib el : known_packages.values()) {
             if (el != null)
-                el.findLocalDependencies(bes);
+                el.findLocalDependencies(index);
         }
     }
 
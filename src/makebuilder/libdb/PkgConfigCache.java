@@ -0,0 +1,239 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.libdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import makebuilder.Profiler;
+
+/**
+ * @author Max Reichardt
+ *
+ * Persistent cache for pkg-config information (stored in CACHE_FILE next to the source scanner's cache).
+ *
+ * Contains the contents of the pkgconfig directories (validated with the directories' modification times)
+ * and the resolved options of packages - validated with modification time and size
+ * of all .pc files involved in resolving them.
+ * So validating the cache requires only stat calls.
+ */
+public class PkgConfigCache implements Serializable {
+
+    /** UID */
+    private static final long serialVersionUID = -2871026416535338371L;
+
+    /** Name of cache file */
+    public static final String CACHE_FILE = ".makeBuilderPkgConfigCache";
+
+    /** Contents of directories (absolute path => listing) */
+    private final Map<String, Listing> listings = new HashMap<String, Listing>();
+
+    /** Resolved options (key: see getKey()) */
+    private final Map<String, Options> options = new HashMap<String, Options>();
+
+    /** File that cache was loaded from */
+    private transient File file;
+
+    /** Has cache been modified since it was loaded? */
+    private transient boolean modified;
+
+    /** .pc file names in a directory */
+    private static class Listing implements Serializable {
+
+        /** UID */
+        private static final long serialVersionUID = -6209118442946045178L;
+
+        /** Modification time of directory */
+        long lastModified;
+
+        /** Names of files */
+        String[] names;
+    }
+
+    /** Fingerprint of a .pc file */
+    private static class FileStamp implements Serializable {
+
+        /** UID */
+        private static final long serialVersionUID = 7352993016812117452L;
+
+        /** Absolute path of file */
+        String path;
+
+        /** Modification time and size of file */
+        long lastModified, size;
+
+        FileStamp(File f) {
+            path = f.getAbsolutePath();
+            lastModified = f.lastModified();
+            size = f.length();
+        }
+    }
+
+    /** Resolved options of a package */
+    private static class Options implements Serializable {
+
+        /** UID */
+        private static final long serialVersionUID = 4213093164372883196L;
+
+        /** Compiler and linker options */
+        String options;
+
+        /** .pc files involved in resolving options (package name => file stamp) */
+        Map<String, FileStamp> files = new HashMap<String, FileStamp>();
+    }
+
+    /**
+     * Loads cache from file
+     *
+     * @param file Cache file
+     * @return Loaded cache - or empty cache if file does not exist or cannot be loaded
+     */
+    public static PkgConfigCache load(File file) {
+        PkgConfigCache result = null;
+        if (file.exists()) {
+            try {
+                ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+                result = (PkgConfigCache)ois.readObject();
+                ois.close();
+            } catch (Exception e) {
+                result = null;
+            }
+        }
+        if (result == null) {
+            result = new PkgConfigCache();
+        }
+        result.file = file;
+        return result;
+    }
+
+    /**
+     * Saves cache to file it was loaded from (if it was modified)
+     */
+    public synchronized void save() {
+        if (!modified) {
+            return;
+        }
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            oos.writeObject(this);
+            oos.close();
+            modified = false;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param dir Directory
+     * @return Names of files in directory (null if directory does not exist)
+     */
+    public synchronized String[] list(File dir) {
+        long lastModified = dir.lastModified();
+        if (lastModified == 0) {
+            return null;
+        }
+        Listing listing = listings.get(dir.getAbsolutePath());
+        if (listing == null || listing.lastModified != lastModified) {
+            listing = new Listing();
+            listing.lastModified = lastModified;
+            listing.names = dir.list();
+            if (listing.names == null) {
+                return null;
+            }
+            listings.put(dir.getAbsolutePath(), listing);
+            modified = true;
+        }
+        return listing.names;
+    }
+
+    /**
+     * @param searchPath pkg-config search path
+     * @param packageName Package name
+     * @param staticLinking Include private libraries and requirements (--static)?
+     * @return Key for resolved options - contains everything that resolving them depends on (apart from the .pc files)
+     */
+    private static String getKey(PkgConfigFile.SearchPath searchPath, String packageName, boolean staticLinking) {
+        return packageName + "\n" + searchPath.getSysroot() + "\n" + staticLinking + "\n" + searchPath.isAllowSystemCflags() + "\n" +
+               searchPath.isAllowSystemLibs() + "\n" + searchPath.getDirectories();
+    }
+
+    /**
+     * (equivalent to PkgConfigFile.SearchPath.getOptions(packageName, staticLinking) - but cached)
+     *
+     * @param searchPath pkg-config search path
+     * @param packageName Package name
+     * @param staticLinking Include private libraries and requirements (--static)?
+     * @return Compiler and linker options
+     * @throws Exception Thrown if package or any package it requires cannot be found
+     */
+    public String getOptions(PkgConfigFile.SearchPath searchPath, String packageName, boolean staticLinking) throws Exception {
+        String key = getKey(searchPath, packageName, staticLinking);
+        synchronized (this) {
+            Options cached = options.get(key);
+            boolean hit = cached != null && isValid(cached, searchPath);
+            Profiler profiler = Profiler.getActive();
+            if (profiler != null) {
+                profiler.countCacheAccess("pkg-config options", hit);
+            }
+            if (hit) {
+                return cached.options;
+            }
+        }
+
+        Map<String, File> usedPackages = new HashMap<String, File>();
+        Options result = new Options();
+        result.options = searchPath.getOptions(searchPath.load(packageName), staticLinking, usedPackages);
+        for (Map.Entry<String, File> usedPackage : usedPackages.entrySet()) {
+            result.files.put(usedPackage.getKey(), new FileStamp(usedPackage.getValue()));
+        }
+        synchronized (this) {
+            options.put(key, result);
+            modified = true;
+        }
+        return result.options;
+    }
+
+    /**
+     * @param cached Cached options
+     * @param searchPath pkg-config search path
+     * @return True if all involved packages still resolve to the same, unchanged .pc files
+     */
+    private boolean isValid(Options cached, PkgConfigFile.SearchPath searchPath) {
+        Map<String, File> packages = searchPath.listAll();
+        for (Map.Entry<String, FileStamp> entry : cached.files.entrySet()) {
+            File f = packages.get(entry.getKey());
+            FileStamp stamp = entry.getValue();
+            if (f == null || (!f.getAbsolutePath().equals(stamp.path)) || f.lastModified() != stamp.lastModified || f.length() != stamp.size) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
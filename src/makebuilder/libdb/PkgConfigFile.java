@@ -0,0 +1,539 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.libdb;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import makebuilder.util.Files;
+import makebuilder.util.GCC;
+
+/**
+ * @author Max Reichardt
+ *
+ * Parsed pkg-config (.pc) file.
+ *
+ * Supports variables (with ${var} expansion), the keyword fields and shell-like quoting in Cflags and Libs.
+ * Together with SearchPath, this replaces calls to the pkg-config tool
+ * ('pkg-config --list-all' and 'pkg-config --cflags [--static] --libs <package>').
+ * Version constraints in Requires fields are not checked.
+ */
+public class PkgConfigFile {
+
+    /** Package name (file name without .pc) */
+    public final String name;
+
+    /** .pc file */
+    public final File file;
+
+    /** Variables defined in file (raw values) */
+    private final Map<String, String> variables = new HashMap<String, String>();
+
+    /** Keyword fields in file - e.g. Cflags or Requires (raw values) */
+    private final Map<String, String> fields = new HashMap<String, String>();
+
+    /**
+     * Parses .pc file
+     *
+     * @param file .pc file
+     * @param sysroot System root directory (PKG_CONFIG_SYSROOT_DIR) - null if there is none
+     */
+    public PkgConfigFile(File file, String sysroot) throws Exception {
+        this.file = file;
+        this.name = file.getName().substring(0, file.getName().length() - 3);
+        variables.put("pcfiledir", file.getAbsoluteFile().getParent());
+        variables.put("pc_sysrootdir", sysroot == null ? "/" : sysroot);
+
+        String line = "";
+        for (String raw : Files.readLines(file)) {
+
+            // line continuation
+            if (raw.endsWith("\\")) {
+                line += raw.substring(0, raw.length() - 1);
+                continue;
+            }
+            line = stripComment(line + raw).trim();
+            if (line.length() > 0) {
+                int i = 0;
+                while (i < line.length() && (Character.isLetterOrDigit(line.charAt(i)) || line.charAt(i) == '_' || line.charAt(i) == '.')) {
+                    i++;
+                }
+                String key = line.substring(0, i);
+                String rest = line.substring(i).trim();
+                if (key.length() > 0 && rest.startsWith("=")) {
+                    variables.put(key, rest.substring(1).trim());
+                } else if (key.length() > 0 && rest.startsWith(":")) {
+                    fields.put(key, rest.substring(1).trim());
+                }
+            }
+            line = "";
+        }
+    }
+
+    /**
+     * @param line Line of .pc file
+     * @return Line without comment ('\#' is an escaped '#')
+     */
+    private static String stripComment(String line) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length() && line.charAt(i + 1) == '#') {
+                sb.append('#');
+                i++;
+            } else if (c == '#') {
+                break;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param value Raw value
+     * @return Value with all variables expanded
+     */
+    private String expand(String value) {
+        return expand(value, new HashSet<String>());
+    }
+
+    private String expand(String value, Set<String> expanding) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '$' && i + 1 < value.length() && value.charAt(i + 1) == '$') {
+                sb.append('$');
+                i++;
+            } else if (c == '$' && i + 1 < value.length() && value.charAt(i + 1) == '{' && value.indexOf('}', i) > 0) {
+                int end = value.indexOf('}', i);
+                String var = value.substring(i + 2, end);
+                String varValue = variables.get(var);
+                if (varValue != null && expanding.add(var)) {
+                    sb.append(expand(varValue, expanding));
+                    expanding.remove(var);
+                }
+                i = end;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param name Variable name
+     * @return Expanded value of variable - or null if it is not defined
+     */
+    public String getVariable(String name) {
+        String value = variables.get(name);
+        return value == null ? null : expand(value);
+    }
+
+    /**
+     * @param key Field keyword (e.g. "Cflags")
+     * @return Expanded value of field - empty string if it is not defined
+     */
+    public String getField(String key) {
+        String value = fields.get(key);
+        return value == null ? "" : expand(value);
+    }
+
+    /**
+     * @param includePrivate Include packages from 'Requires.private'?
+     * @return Names of required packages
+     */
+    public List<String> getRequires(boolean includePrivate) {
+        List<String> result = new ArrayList<String>();
+        parseRequires(getField("Requires"), result);
+        if (includePrivate) {
+            parseRequires(getField("Requires.private"), result);
+        }
+        return result;
+    }
+
+    /**
+     * @param requires Value of Requires field (e.g. "glib-2.0 >= 2.40, zlib")
+     * @param result List to add package names to
+     */
+    private static void parseRequires(String requires, List<String> result) {
+        String[] tokens = requires.trim().split("[\\s,]+");
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].length() == 0) {
+                continue;
+            }
+            if (tokens[i].matches("[<>=!]+")) {
+                i++; // skip version
+                continue;
+            }
+            result.add(tokens[i]);
+        }
+    }
+
+    /**
+     * Splits string into arguments (as a shell would: with quotes and backslash escapes)
+     *
+     * @param s String
+     * @return Arguments
+     */
+    static List<String> splitArguments(String s) {
+        List<String> result = new ArrayList<String>();
+        StringBuilder current = null;
+        char quote = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '\\' && quote == '"' && i + 1 < s.length()) {
+                    current.append(s.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (current != null) {
+                    result.add(current.toString());
+                    current = null;
+                }
+            } else {
+                if (current == null) {
+                    current = new StringBuilder();
+                }
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '\\' && i + 1 < s.length()) {
+                    current.append(s.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            }
+        }
+        if (current != null) {
+            result.add(current.toString());
+        }
+        return result;
+    }
+
+    public String toString() {
+        return file.toString();
+    }
+
+    /**
+     * pkg-config search path and settings
+     * (as pkg-config would obtain them from PKG_CONFIG_PATH, PKG_CONFIG_LIBDIR and PKG_CONFIG_SYSROOT_DIR)
+     */
+    public static class SearchPath {
+
+        /** Directories to search for .pc files (in order of priority) */
+        private final List<File> directories = new ArrayList<File>();
+
+        /** System root directory (PKG_CONFIG_SYSROOT_DIR) - null if there is none */
+        private final String sysroot;
+
+        /** Are system include/library directories included in output? (PKG_CONFIG_ALLOW_SYSTEM_CFLAGS/LIBS) */
+        private final boolean allowSystemCflags, allowSystemLibs;
+
+        /** Include and library directories that are omitted in output (as pkg-config does by default) */
+        private final Set<String> systemIncludeDirs = new HashSet<String>(), systemLibDirs = new HashSet<String>();
+
+        /** All packages found in search path (name => .pc file; lazily initialized) */
+        private Map<String, File> packages;
+
+        /** Loaded .pc files */
+        private final Map<String, PkgConfigFile> loaded = new HashMap<String, PkgConfigFile>();
+
+        /** Persistent cache for directory contents and resolved options - null if there is none */
+        private PkgConfigCache cache;
+
+        /**
+         * @param libDir Directories separated by colons (PKG_CONFIG_LIBDIR) - null to use the default directories
+         * @param path Directories to search first - separated by colons (PKG_CONFIG_PATH) - may be null
+         * @param sysroot System root directory (PKG_CONFIG_SYSROOT_DIR) - may be null
+         * @param allowSystemCflags Do not omit system include directories (PKG_CONFIG_ALLOW_SYSTEM_CFLAGS)
+         * @param allowSystemLibs Do not omit system library directories (PKG_CONFIG_ALLOW_SYSTEM_LIBS)
+         */
+        public SearchPath(String libDir, String path, String sysroot, boolean allowSystemCflags, boolean allowSystemLibs) {
+            this.sysroot = (sysroot == null || sysroot.length() == 0) ? null : sysroot;
+            this.allowSystemCflags = allowSystemCflags;
+            this.allowSystemLibs = allowSystemLibs;
+            addDirectories(path);
+            String multiarch = (libDir == null || !allowSystemLibs) ? GCC.getMultiarch() : null;
+            if (libDir != null) {
+                addDirectories(libDir);
+            } else {
+                // pkg-config's default search path (Debian-based systems: with native multiarch directories; Fedora: /usr/lib64/pkgconfig)
+                for (String prefix : new String[] {"/usr/local", "/usr"}) {
+                    if (multiarch != null) {
+                        directories.add(new File(prefix + "/lib/" + multiarch + "/pkgconfig"));
+                    }
+                    if (prefix.equals("/usr")) {
+                        directories.add(new File("/usr/lib64/pkgconfig"));
+                    }
+                    directories.add(new File(prefix + "/lib/pkgconfig"));
+                    directories.add(new File(prefix + "/share/pkgconfig"));
+                }
+            }
+            if (!allowSystemCflags) {
+                systemIncludeDirs.add("/usr/include");
+            }
+            if (!allowSystemLibs) {
+                for (String dir : new String[] {"/usr/lib", "/lib"}) {
+                    systemLibDirs.add(dir);
+                    if (multiarch != null) {
+                        systemLibDirs.add(dir + "/" + multiarch);
+                    }
+                }
+                systemLibDirs.add("/usr/lib64");
+            }
+        }
+
+        /**
+         * @return Search path that pkg-config would use in the environment of this process
+         */
+        public static SearchPath createFromEnvironment() {
+            return new SearchPath(System.getenv("PKG_CONFIG_LIBDIR"), System.getenv("PKG_CONFIG_PATH"), System.getenv("PKG_CONFIG_SYSROOT_DIR"),
+                                  System.getenv("PKG_CONFIG_ALLOW_SYSTEM_CFLAGS") != null, System.getenv("PKG_CONFIG_ALLOW_SYSTEM_LIBS") != null);
+        }
+
+        /**
+         * @param dirs Directories separated by colons
+         */
+        private void addDirectories(String dirs) {
+            if (dirs != null) {
+                for (String dir : dirs.split(":")) {
+                    if (dir.length() > 0) {
+                        directories.add(new File(dir));
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param cache Persistent cache for directory contents and resolved options (null disables caching)
+         */
+        public synchronized void setCache(PkgConfigCache cache) {
+            this.cache = cache;
+            packages = null;
+        }
+
+        /**
+         * @return Directories to search for .pc files (in order of priority)
+         */
+        public List<File> getDirectories() {
+            return Collections.unmodifiableList(directories);
+        }
+
+        /**
+         * @return System root directory (PKG_CONFIG_SYSROOT_DIR) - null if there is none
+         */
+        public String getSysroot() {
+            return sysroot;
+        }
+
+        /**
+         * @return Are system include directories included in output? (PKG_CONFIG_ALLOW_SYSTEM_CFLAGS)
+         */
+        public boolean isAllowSystemCflags() {
+            return allowSystemCflags;
+        }
+
+        /**
+         * @return Are system library directories included in output? (PKG_CONFIG_ALLOW_SYSTEM_LIBS)
+         */
+        public boolean isAllowSystemLibs() {
+            return allowSystemLibs;
+        }
+
+        /**
+         * (equivalent to 'pkg-config --list-all')
+         *
+         * @return All packages found in search path (name => .pc file)
+         */
+        public synchronized Map<String, File> listAll() {
+            if (packages == null) {
+                packages = new LinkedHashMap<String, File>();
+                for (File dir : directories) {
+                    String[] names = cache != null ? cache.list(dir) : dir.list();
+                    if (names == null) {
+                        continue;
+                    }
+                    Arrays.sort(names);
+                    for (String name : names) {
+                        if (name.endsWith(".pc") && name.length() > 3 && (!packages.containsKey(name.substring(0, name.length() - 3)))) {
+                            packages.put(name.substring(0, name.length() - 3), new File(dir, name));
+                        }
+                    }
+                }
+            }
+            return packages;
+        }
+
+        /**
+         * @param packageName Package name
+         * @return Parsed .pc file of package
+         * @throws Exception Thrown if package cannot be found or loaded
+         */
+        public synchronized PkgConfigFile load(String packageName) throws Exception {
+            PkgConfigFile result = loaded.get(packageName);
+            if (result == null) {
+                File file = listAll().get(packageName);
+                if (file == null) {
+                    throw new Exception("Package " + packageName + " was not found in the pkg-config search path");
+                }
+                result = new PkgConfigFile(file, sysroot);
+                loaded.put(packageName, result);
+            }
+            return result;
+        }
+
+        /**
+         * (equivalent to 'pkg-config --cflags [--static] --libs <packageName>')
+         *
+         * @param packageName Package name
+         * @param staticLinking Include private libraries and requirements (--static)?
+         * @return Compiler and linker options
+         * @throws Exception Thrown if package or any package it requires cannot be found
+         */
+        public String getOptions(String packageName, boolean staticLinking) throws Exception {
+            PkgConfigCache cache = this.cache;
+            if (cache != null) {
+                return cache.getOptions(this, packageName, staticLinking);
+            }
+            return getOptions(load(packageName), staticLinking);
+        }
+
+        /**
+         * (equivalent to 'pkg-config --cflags [--static] --libs <pc file>')
+         *
+         * @param pcFile Parsed .pc file
+         * @param staticLinking Include private libraries and requirements (--static)?
+         * @return Compiler and linker options
+         * @throws Exception Thrown if any package that is required cannot be found
+         */
+        public String getOptions(PkgConfigFile pcFile, boolean staticLinking) throws Exception {
+            return getOptions(pcFile, staticLinking, new HashMap<String, File>());
+        }
+
+        /**
+         * @param pcFile Parsed .pc file
+         * @param staticLinking Include private libraries and requirements (--static)?
+         * @param usedPackages Map to add all packages involved to (package name => .pc file)
+         * @return Compiler and linker options
+         * @throws Exception Thrown if any package that is required cannot be found
+         */
+        public String getOptions(PkgConfigFile pcFile, boolean staticLinking, Map<String, File> usedPackages) throws Exception {
+
+            // packages in link order: each package before the packages it requires
+            // (Cflags of packages in Requires.private are always included - as pkg-config does)
+            List<PkgConfigFile> cflagPackages = new ArrayList<PkgConfigFile>();
+            collectRequired(pcFile, true, cflagPackages, new HashSet<String>());
+            Collections.reverse(cflagPackages);
+            List<PkgConfigFile> libPackages = new ArrayList<PkgConfigFile>();
+            collectRequired(pcFile, staticLinking, libPackages, new HashSet<String>());
+            Collections.reverse(libPackages);
+            for (PkgConfigFile pc : cflagPackages) {
+                usedPackages.put(pc.name, pc.file);
+            }
+            for (PkgConfigFile pc : libPackages) {
+                usedPackages.put(pc.name, pc.file);
+            }
+
+            List<String> cflagsOther = new ArrayList<String>(), cflagsI = new ArrayList<String>();
+            for (PkgConfigFile pc : cflagPackages) {
+                for (String arg : splitArguments(pc.getField("Cflags") + " " + pc.getField("CFlags"))) {
+                    if (arg.startsWith("-I")) {
+                        addPath("-I", arg.substring(2), systemIncludeDirs, cflagsI);
+                    } else if (!cflagsOther.contains(arg)) {
+                        cflagsOther.add(arg);
+                    }
+                }
+            }
+
+            List<String> libsL = new ArrayList<String>(), libsOther = new ArrayList<String>(), libsl = new ArrayList<String>();
+            for (PkgConfigFile pc : libPackages) {
+                for (String arg : splitArguments(pc.getField("Libs") + (staticLinking ? (" " + pc.getField("Libs.private")) : ""))) {
+                    if (arg.startsWith("-L")) {
+                        addPath("-L", arg.substring(2), systemLibDirs, libsL);
+                    } else if (arg.startsWith("-l")) {
+                        libsl.remove(arg); // last occurrence is relevant for link order
+                        libsl.add(arg);
+                    } else if (!libsOther.contains(arg)) {
+                        libsOther.add(arg);
+                    }
+                }
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (List<String> args : Arrays.asList(cflagsOther, cflagsI, libsL, libsOther, libsl)) {
+                for (String arg : args) {
+                    sb.append(arg.replaceAll("([\\s\"'\\\\])", "\\\\$1")).append(' '); // escape as pkg-config does
+                }
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Adds -I or -L option (unless it is a system directory) - prefixed with sysroot
+         */
+        private void addPath(String option, String path, Set<String> systemDirs, List<String> result) {
+            if (systemDirs.contains(path) || systemDirs.contains(path.replaceAll("/+$", ""))) {
+                return;
+            }
+            String arg = option + ((sysroot != null && path.startsWith("/")) ? sysroot : "") + path;
+            if (!result.contains(arg)) {
+                result.add(arg);
+            }
+        }
+
+        /**
+         * Collects package and all packages it requires (post-order)
+         *
+         * @param pc Package
+         * @param includePrivate Follow Requires.private?
+         * @param result List to add packages to
+         * @param visited Names of packages already visited
+         */
+        private void collectRequired(PkgConfigFile pc, boolean includePrivate, List<PkgConfigFile> result, Set<String> visited) throws Exception {
+            if (!visited.add(pc.name)) {
+                return;
+            }
+            for (String required : pc.getRequires(includePrivate)) {
+                PkgConfigFile requiredFile;
+                try {
+                    requiredFile = load(required);
+                } catch (Exception e) {
+                    throw new Exception("Package '" + required + "', required by '" + pc.name + "', not found");
+                }
+                collectRequired(requiredFile, includePrivate, result, visited);
+            }
+            result.add(pc);
+        }
+    }
+}
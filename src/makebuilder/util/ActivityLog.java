@@ -21,13 +21,35 @@
  */
 package makebuilder.util;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Max Reichardt
  *
  * Utility class for logging when different phases of e.g. makebuilder started and completed.
  * This can be used to e.g. track down performance bottlenecks.
+ *
+ * For every activity, the (monotonic) start and end time is recorded - as well as the bytes allocated
+ * by the thread performing the activity and the time the JVM spent in garbage collection meanwhile
+ * (the latter is process-wide, so it also includes collections caused by other threads).
+ * Worker threads may log concurrent activities that are attached to the current activity.
+ *
+ * The log can be printed as an indented tree - or exported as JSON or in Chrome's trace event format
+ * (can be opened in chrome://tracing or Perfetto).
  */
 public class ActivityLog {
 
@@ -40,22 +62,62 @@ public class ActivityLog {
         /** Name of element/activity */
         private String name;
 
-        /** Time when activity started and ended */
+        /** Time when activity started and ended (System.nanoTime()) */
         private final long startTime;
         private long endTime;
 
+        /** Thread that performed activity */
+        private final long threadId;
+        private final String threadName;
+
+        /** Bytes allocated by thread when activity started - and during activity (-1 if not supported by JVM) */
+        private final long startAllocatedBytes;
+        private long allocatedBytes = -1;
+
+        /** Accumulated GC time (ms) when activity started - and during activity */
+        private final long startGcTime;
+        private long gcTime;
+
+        /** Was activity performed concurrently to other activities (by a worker thread)? */
+        private final boolean concurrent;
+
         /** Sub-activities */
         private final ArrayList<Element> children = new ArrayList<Element>();
 
-        private Element(Element parent, String name) {
+        private Element(Element parent, String name, boolean concurrent) {
             this.parent = parent;
             this.name = name;
-            startTime = System.currentTimeMillis();
+            this.concurrent = concurrent;
+            Thread thread = Thread.currentThread();
+            threadId = thread.getId();
+            threadName = thread.getName();
+            startGcTime = getGcTime();
+            startAllocatedBytes = getAllocatedBytes(threadId);
+            startTime = System.nanoTime();
             if (this.parent != null) {
-                this.parent.children.add(this);
+                synchronized (ActivityLog.this) {
+                    this.parent.children.add(this);
+                }
             }
         }
 
+        /**
+         * Mark activity as completed
+         */
+        private void end() {
+            endTime = System.nanoTime();
+            long allocated = getAllocatedBytes(threadId);
+            allocatedBytes = (allocated < 0 || startAllocatedBytes < 0) ? -1 : allocated - startAllocatedBytes;
+            gcTime = getGcTime() - startGcTime;
+        }
+
+        /**
+         * @return Duration of activity in ms
+         */
+        private double getDuration() {
+            return (endTime - startTime) / 1000000.0;
+        }
+
         /**
          * Print element and all subelements
          *
@@ -65,24 +127,101 @@ public class ActivityLog {
             for (int i = 0; i < indentation; i++) {
                 System.out.print(' ');
             }
-            System.out.println("-> " + name + " " + (endTime - startTime) + "ms");
+            System.out.println("-> " + name + " " + ((endTime - startTime) / 1000000) + "ms" +
+                               (allocatedBytes >= 0 ? (" " + (allocatedBytes >> 20) + "MB") : "") + (gcTime > 0 ? (" (GC: " + gcTime + "ms)") : ""));
+
+            // concurrent activities are summarized (there are typically many of them)
+            int concurrentCount = 0;
+            long concurrentTime = 0;
+            Map<Long, Boolean> threads = new LinkedHashMap<Long, Boolean>();
+            for (Element child : children) {
+                if (child.concurrent) {
+                    concurrentCount++;
+                    concurrentTime += child.endTime - child.startTime;
+                    threads.put(child.threadId, true);
+                } else {
+                    child.print(indentation + 2);
+                }
+            }
+            if (concurrentCount > 0) {
+                for (int i = 0; i < indentation + 2; i++) {
+                    System.out.print(' ');
+                }
+                System.out.println("-> " + concurrentCount + " concurrent activities on " + threads.size() + " threads " + (concurrentTime / 1000000) + "ms");
+            }
+        }
+
+        /**
+         * Write element and all subelements as JSON object
+         *
+         * @param out Writer to write to
+         * @param indentation Current indentation
+         */
+        private void writeJson(PrintWriter out, String indentation) {
+            out.print(indentation + "{\"name\": " + quote(name) + ", \"thread\": " + quote(threadName) + ", \"concurrent\": " + concurrent);
+            out.print(", \"start\": " + format((startTime - root.startTime) / 1000000.0) + ", \"duration\": " + format(getDuration()));
+            out.print(", \"allocatedBytes\": " + allocatedBytes + ", \"gcTime\": " + gcTime);
+            if (children.size() > 0) {
+                out.println(", \"children\": [");
+                for (int i = 0; i < children.size(); i++) {
+                    children.get(i).writeJson(out, indentation + "  ");
+                    out.println(i < children.size() - 1 ? "," : "");
+                }
+                out.print(indentation + "]");
+            }
+            out.print("}");
+        }
 
+        /**
+         * Write element and all subelements as complete events ('ph': 'X') in Chrome's trace event format
+         *
+         * @param out Writer to write to
+         * @param threads Threads that performed activities (id => name) - filled by this method
+         */
+        private void writeTraceEvents(PrintWriter out, Map<Long, String> threads) {
+            if (parent != null) {
+                out.println(",");
+            }
+            threads.put(threadId, threadName);
+            out.print("  {\"name\": " + quote(name) + ", \"cat\": \"" + (concurrent ? "concurrent" : "phase") + "\", \"ph\": \"X\", \"pid\": 1, \"tid\": " + threadId);
+            out.print(", \"ts\": " + format((startTime - root.startTime) / 1000.0) + ", \"dur\": " + format((endTime - startTime) / 1000.0));
+            out.print(", \"args\": {\"allocatedBytes\": " + allocatedBytes + ", \"gcTime\": " + gcTime + "}}");
             for (Element child : children) {
-                child.print(indentation + 2);
+                child.writeTraceEvents(out, threads);
             }
         }
+    }
+
+    /** Handle to concurrent activity (see beginConcurrentActivity()) */
+    public class ConcurrentActivity {
 
+        /** Logged element */
+        private final Element element;
 
+        private ConcurrentActivity(Element element) {
+            this.element = element;
+        }
+
+        /**
+         * Should be called when activity is completed (by the thread that started it)
+         */
+        public void end() {
+            element.end();
+        }
     }
 
     /** Root activity */
     private final Element root;
 
-    private Element currentGroup;
-    private Element currentActivity;
+    private volatile Element currentGroup;
+    private volatile Element currentActivity;
+
+    /** JVM beans to obtain allocated bytes and GC time from */
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private static final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
 
     public ActivityLog(String rootName) {
-        root = new Element(null, rootName);
+        root = new Element(null, rootName, false);
         currentGroup = root;
     }
 
@@ -93,7 +232,7 @@ public class ActivityLog {
      * @param firstActivity Name/description of first activity
      */
     public void addGroup(String name, String firstActivity) {
-        currentGroup = new Element(currentGroup, name);
+        currentGroup = new Element(currentGroup, name, false);
         addActivity(firstActivity);
     }
 
@@ -104,9 +243,9 @@ public class ActivityLog {
      */
     public void addActivity(String activityName) {
         if (currentActivity != null) {
-            currentActivity.endTime = System.currentTimeMillis();
+            currentActivity.end();
         }
-        currentActivity = new Element(currentGroup, activityName);
+        currentActivity = new Element(currentGroup, activityName, false);
     }
 
     /**
@@ -114,26 +253,160 @@ public class ActivityLog {
      */
     public void endGroup() {
         if (currentActivity != null) {
-            currentActivity.endTime = System.currentTimeMillis();
+            currentActivity.end();
             currentActivity = null;
         }
-        currentGroup.endTime = System.currentTimeMillis();
+        currentGroup.end();
         currentGroup = currentGroup.parent;
     }
 
     /**
-     * Print activity log
+     * Start activity that is performed concurrently by a worker thread.
+     * It is attached to the current activity. May be called from any thread.
+     *
+     * @param activityName Name/description of activity
+     * @return Handle to activity - end() needs to be called on it when activity is completed
      */
-    public void print() {
+    public ConcurrentActivity beginConcurrentActivity(String activityName) {
+        Element parent = currentActivity;
+        if (parent == null) {
+            parent = currentGroup != null ? currentGroup : root;
+        }
+        return new ConcurrentActivity(new Element(parent, activityName, true));
+    }
+
+    /**
+     * Ends all open activities and groups (further activities should not be logged)
+     */
+    private void complete() {
         if (currentActivity != null) {
-            currentActivity.endTime = System.currentTimeMillis();
+            currentActivity.end();
             currentActivity = null;
         }
         while (currentGroup != null) {
-            currentGroup.endTime = System.currentTimeMillis();
+            currentGroup.end();
             currentGroup = currentGroup.parent;
         }
+    }
 
+    /**
+     * Print activity log
+     */
+    public void print() {
+        complete();
         root.print(0);
     }
+
+    /**
+     * Write activity log to JSON file (tree of activities; times in ms relative to start)
+     * together with information on the machine and the JVM's peak heap usage
+     *
+     * @param file File to write to
+     */
+    public void writeJson(File file) throws IOException {
+        complete();
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")));
+        try {
+            out.println("{");
+            out.println("\"javaVersion\": " + quote(System.getProperty("java.version")) + ",");
+            out.println("\"os\": " + quote(System.getProperty("os.name") + " " + System.getProperty("os.version") + " " + System.getProperty("os.arch")) + ",");
+            out.println("\"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+            out.println("\"maxMemory\": " + Runtime.getRuntime().maxMemory() + ",");
+            out.println("\"peakHeapUsed\": " + getPeakHeapUsed() + ",");
+            out.println("\"activities\":");
+            root.writeJson(out, "");
+            out.println();
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write activity log to file in Chrome's trace event format (times in microseconds relative to start)
+     *
+     * @param file File to write to
+     */
+    public void writeChromeTrace(File file) throws IOException {
+        complete();
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")));
+        try {
+            out.println("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [");
+            Map<Long, String> threads = new LinkedHashMap<Long, String>();
+            root.writeTraceEvents(out, threads);
+            for (Map.Entry<Long, String> thread : threads.entrySet()) {
+                out.println(",");
+                out.print("  {\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": " + thread.getKey() + ", \"args\": {\"name\": " + quote(thread.getValue()) + "}}");
+            }
+            out.println();
+            out.println("]}");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param threadId Thread id
+     * @return Bytes allocated by thread so far (-1 if not supported by JVM)
+     */
+    private static long getAllocatedBytes(long threadId) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)threadBean;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(threadId);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Peak usage of heap (sum of heap memory pools' peak usage in bytes)
+     */
+    private static long getPeakHeapUsed() {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                result += pool.getPeakUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Accumulated time (ms) JVM spent in garbage collection so far
+     */
+    private static long getGcTime() {
+        long result = 0;
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            result += Math.max(0, gcBean.getCollectionTime());
+        }
+        return result;
+    }
+
+    /**
+     * @param value Time value
+     * @return Time value with three decimal places (locale-independent)
+     */
+    private static String format(double value) {
+        return Long.toString(Math.round(value * 1000) / 1000) + "." + String.valueOf(1000 + Math.round(value * 1000) % 1000).substring(1);
+    }
+
+    /**
+     * @param s String
+     * @return String as quoted and escaped JSON string
+     */
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int)c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
 }
@@ -21,28 +21,27 @@
  */
 package makebuilder.util;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * @author Max Reichardt
  *
  * Set with entries ordered by the time they were added
+ *
+ * (backed by a hash set - add and contains are O(1);
+ *  an element that is removed and added again is appended to the end)
  */
 public class AddOrderSet<T> implements Set<T> {
 
-    /** list based on which functionality is implemented */
-    private ArrayList<T> backend = new ArrayList<T>();
+    /** insertion-ordered hash set based on which functionality is implemented */
+    private LinkedHashSet<T> backend = new LinkedHashSet<T>();
 
     @Override
     public boolean add(T t) {
-        if (!backend.contains(t)) {
-            backend.add(t);
-            return true;
-        }
-        return false;
+        return backend.add(t);
     }
 
     @Override
@@ -71,11 +70,7 @@ public class AddOrderSet<T> implements Set<T> {
 
     @Override
     public boolean containsAll(Collection<?> ts) {
-        boolean r = true;
-        for (Object t : ts) {
-            r &= contains(t);
-        }
-        return r;
+        return backend.containsAll(ts);
     }
 
     @Override
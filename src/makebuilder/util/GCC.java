@@ -21,6 +21,8 @@
  */
 package makebuilder.util;
 
+import java.util.List;
+
 /**
  * @author Max Reichardt
  *
@@ -33,20 +35,29 @@ public class GCC {
      * @return GCC version as string
      */
     public static String getGCCVersion() {
-        try {
-            Process p = Runtime.getRuntime().exec("gcc --version");
-            p.waitFor();
-            for (String s : Files.readLines(p.getInputStream())) {
-                s = s.substring(s.indexOf(")") + 1);
-                if (s.contains("(")) {
-                    return s.substring(0, s.indexOf("(")).trim();
-                }
-                return s.trim();
-            }
-        } catch (Exception e) {
+        List<String> output = Toolchain.probe("gcc", "--version");
+        if (output == null) {
             // no gcc version found
-            e.printStackTrace();
+            return null;
+        }
+        for (String s : output) {
+            s = s.substring(s.indexOf(")") + 1);
+            if (s.contains("(")) {
+                return s.substring(0, s.indexOf("(")).trim();
+            }
+            return s.trim();
         }
         return null;
     }
+
+    /**
+     * @return Multiarch triplet of native gcc (e.g. "x86_64-linux-gnu") - or null if gcc cannot be found or does not use multiarch directories
+     */
+    public static String getMultiarch() {
+        List<String> output = Toolchain.probe("gcc", "-print-multiarch");
+        if (output == null || output.isEmpty() || output.get(0).trim().length() == 0) {
+            return null;
+        }
+        return output.get(0).trim();
+    }
 }
@@ -0,0 +1,129 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Max Reichardt
+ *
+ * Computes the strongly connected components of a directed graph
+ * (Tarjan's algorithm - linear time, iterative so that deep graphs do not overflow the stack).
+ *
+ * Components are returned in reverse topological order:
+ * every component is listed after all components it has edges to
+ * (e.g. with edges pointing to dependencies: dependencies come first).
+ * Order is deterministic - nodes and successors are visited in the order they are provided.
+ */
+public class StronglyConnectedComponents {
+
+    /**
+     * Provides edges of graph
+     */
+    public interface Graph<T> {
+
+        /**
+         * @param node Node
+         * @return Nodes that node has edges to
+         */
+        public Collection <? extends T > getSuccessors(T node);
+    }
+
+    /** Tarjan bookkeeping for one node */
+    private static class NodeInfo<T> {
+        final T node;
+        final int index;
+        int lowLink;
+        boolean onStack = true;
+        Iterator <? extends T > successors;
+
+        NodeInfo(T node, int index, Iterator <? extends T > successors) {
+            this.node = node;
+            this.index = index;
+            this.lowLink = index;
+            this.successors = successors;
+        }
+    }
+
+    /**
+     * @param nodes All nodes of graph
+     * @param graph Edges
+     * @return Strongly connected components (in reverse topological order)
+     */
+    public static <T> List<List<T>> compute(Collection<T> nodes, Graph<T> graph) {
+        List<List<T>> result = new ArrayList<List<T>>();
+        Map<T, NodeInfo<T>> infos = new IdentityHashMap<T, NodeInfo<T>>();
+        ArrayList<NodeInfo<T>> stack = new ArrayList<NodeInfo<T>>();
+        ArrayList<NodeInfo<T>> callStack = new ArrayList<NodeInfo<T>>();
+
+        for (T start : nodes) {
+            if (infos.containsKey(start)) {
+                continue;
+            }
+            NodeInfo<T> startInfo = new NodeInfo<T>(start, infos.size(), graph.getSuccessors(start).iterator());
+            infos.put(start, startInfo);
+            stack.add(startInfo);
+            callStack.add(startInfo);
+
+            while (!callStack.isEmpty()) {
+                NodeInfo<T> current = callStack.get(callStack.size() - 1);
+                if (current.successors.hasNext()) {
+                    T successor = current.successors.next();
+                    NodeInfo<T> info = infos.get(successor);
+                    if (info == null) {
+                        info = new NodeInfo<T>(successor, infos.size(), graph.getSuccessors(successor).iterator());
+                        infos.put(successor, info);
+                        stack.add(info);
+                        callStack.add(info);
+                    } else if (info.onStack) {
+                        current.lowLink = Math.min(current.lowLink, info.index);
+                    }
+                    continue;
+                }
+
+                // all successors processed
+                current.successors = null;
+                callStack.remove(callStack.size() - 1);
+                if (!callStack.isEmpty()) {
+                    NodeInfo<T> caller = callStack.get(callStack.size() - 1);
+                    caller.lowLink = Math.min(caller.lowLink, current.lowLink);
+                }
+                if (current.lowLink == current.index) {
+                    ArrayList<T> component = new ArrayList<T>();
+                    NodeInfo<T> member;
+                    do {
+                        member = stack.remove(stack.size() - 1);
+                        member.onStack = false;
+                        component.add(0, member.node);
+                    } while (member != current);
+                    result.add(component);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import makebuilder.MakeFileBuilder;
+import makebuilder.Profiler;
+
+/**
+ * @author Max Reichardt
+ *
+ * Probes tools of the toolchain (e.g. 'gcc --version').
+ *
+ * Tools are resolved on the PATH and their binaries are fingerprinted (path, size, modification time).
+ * Probe results are cached on disk (CACHE_FILE in MakeFileBuilder.HOME) - so they only need to be obtained again
+ * if the tool changes.
+ */
+public class Toolchain {
+
+    /** Name of cache file */
+    public static final String CACHE_FILE = ".makeBuilderToolchainCache";
+
+    /** Cached probe results (key: command) */
+    private static HashMap<String, Probe> cache;
+
+    /** Has cache been modified since it was loaded? */
+    private static boolean modified;
+
+    /** Result of a single probe */
+    private static class Probe implements Serializable {
+
+        /** UID */
+        private static final long serialVersionUID = 5106317209544612301L;
+
+        /** Fingerprint of tool's binary */
+        String path;
+        long size, lastModified;
+
+        /** Output lines */
+        List<String> output;
+    }
+
+    /**
+     * @param tool Tool name (or path)
+     * @return Binary of tool on PATH - or null if it cannot be found
+     */
+    public static File which(String tool) {
+        if (tool.contains(File.separator)) {
+            File f = new File(tool);
+            return f.isFile() ? f.getAbsoluteFile() : null;
+        }
+        String path = System.getenv("PATH");
+        if (path != null) {
+            for (String dir : path.split(File.pathSeparator)) {
+                File f = new File(dir.length() == 0 ? "." : dir, tool);
+                if (f.isFile() && f.canExecute()) {
+                    return f.getAbsoluteFile();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs command (or returns cached output if tool has not changed)
+     *
+     * @param command Command and arguments (e.g. "gcc", "--version")
+     * @return Output lines (stdout) - or null if tool cannot be found or started
+     */
+    public static List<String> probe(String... command) {
+        return probe(false, command);
+    }
+
+    /**
+     * Runs command (or returns cached output if tool has not changed)
+     *
+     * @param mergeErrorOutput Include output to stderr in output lines? (e.g. for 'cpp -v')
+     * @param command Command and arguments (e.g. "gcc", "--version")
+     * @return Output lines - or null if tool cannot be found or started
+     */
+    public static List<String> probe(boolean mergeErrorOutput, String... command) {
+        File binary = which(command[0]);
+        if (binary == null) {
+            return null;
+        }
+        String key = getKey(mergeErrorOutput, command);
+        synchronized (Toolchain.class) {
+            Probe cached = getCache().get(key);
+            boolean hit = isUpToDate(cached, binary);
+            Profiler profiler = Profiler.getActive();
+            if (profiler != null) {
+                profiler.countCacheAccess("toolchain probes", hit);
+            }
+            if (hit) {
+                return cached.output;
+            }
+        }
+
+        Probe probe = new Probe();
+        probe.path = binary.getPath();
+        probe.size = binary.length();
+        probe.lastModified = binary.lastModified();
+        try {
+            Process p = new ProcessBuilder(command).redirectErrorStream(mergeErrorOutput).start();
+            p.getOutputStream().close();
+            probe.output = Files.readLines(p.getInputStream());
+            p.waitFor();
+        } catch (Exception e) {
+            return null;
+        }
+        synchronized (Toolchain.class) {
+            getCache().put(key, probe);
+            modified = true;
+        }
+        return probe.output;
+    }
+
+    /**
+     * @param mergeErrorOutput Include output to stderr in output lines?
+     * @param command Command and arguments
+     * @return Key of probe in cache
+     */
+    private static String getKey(boolean mergeErrorOutput, String[] command) {
+        return (mergeErrorOutput ? "2>&1 " : "") + Arrays.toString(command);
+    }
+
+    /**
+     * @param probe Cached probe (may be null)
+     * @param binary Current binary of tool
+     * @return True if probe exists and was obtained with the current binary
+     */
+    private static boolean isUpToDate(Probe probe, File binary) {
+        return probe != null && probe.path.equals(binary.getPath()) && probe.size == binary.length() && probe.lastModified == binary.lastModified();
+    }
+
+    /**
+     * Runs probes concurrently (if they are not cached already) - so that subsequent calls to probe() return immediately
+     *
+     * @param commands Commands (and arguments)
+     */
+    public static void prefetch(String[]... commands) {
+        List<String[]> missing = new ArrayList<String[]>();
+        for (String[] command : commands) {
+            File binary = which(command[0]);
+            if (binary == null) {
+                continue; // probe() returns immediately anyway
+            }
+            synchronized (Toolchain.class) {
+                if (isUpToDate(getCache().get(getKey(false, command)), binary)) {
+                    continue;
+                }
+            }
+            missing.add(command);
+        }
+        if (missing.isEmpty()) {
+            return; // all probes are cached (usual case) - no need to start any threads
+        }
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final String[] command : missing) {
+            Thread t = new Thread() {
+                public void run() {
+                    probe(command);
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Saves cached probe results (if they changed)
+     */
+    public static synchronized void saveCache() {
+        if (!modified) {
+            return;
+        }
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(new File(MakeFileBuilder.HOME, CACHE_FILE))));
+            oos.writeObject(cache);
+            oos.close();
+            modified = false;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return Cached probe results (loaded from disk on first call)
+     */
+    @SuppressWarnings("unchecked")
+    private static HashMap<String, Probe> getCache() {
+        if (cache == null) {
+            try {
+                ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(new File(MakeFileBuilder.HOME, CACHE_FILE))));
+                cache = (HashMap<String, Probe>)ois.readObject();
+                ois.close();
+            } catch (Exception e) {
+                cache = new HashMap<String, Probe>();
+            }
+        }
+        return cache;
+    }
+}
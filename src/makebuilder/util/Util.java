@@ -160,13 +160,8 @@ public class Util {
      * @return Name of user currently logged in (only works on Unix/Linux)
      */
     public static String whoami() {
-        try {
-            Process p = Runtime.getRuntime().exec("whoami");
-            return Files.readLines(p.getInputStream()).get(0);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "" + System.currentTimeMillis();
-        }
+        String user = System.getProperty("user.name"); // same as 'whoami' - without starting a process
+        return user != null ? user : ("" + System.currentTimeMillis());
     }
 
     /** Color for output */
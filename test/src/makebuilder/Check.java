@@ -0,0 +1,61 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+/**
+ * @author Max Reichardt
+ *
+ * Checks for tests (tests are classes with main methods - run by the 'test' ant target).
+ * A failed check throws an AssertionError - so that the test's JVM exits with an error.
+ */
+public class Check {
+
+    /**
+     * @param condition Condition that must be true
+     * @param message Message describing condition
+     */
+    public static void isTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * @param expected Expected value
+     * @param actual Actual value
+     * @param message Message describing value
+     */
+    public static void equal(Object expected, Object actual, String message) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new AssertionError(message + ": expected <" + expected + "> - but was <" + actual + ">");
+        }
+    }
+
+    /**
+     * Prints that all checks of a test passed
+     *
+     * @param test Test class
+     */
+    public static void passed(Class<?> test) {
+        System.out.println(test.getSimpleName() + ": all checks passed");
+    }
+}
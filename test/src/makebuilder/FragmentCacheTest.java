@@ -0,0 +1,135 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import makebuilder.handler.MakeXMLLoader;
+import makebuilder.util.Files;
+
+/**
+ * @author Max Reichardt
+ *
+ * Tests incremental makefile regeneration with FragmentCache:
+ * Makefiles created by replaying recorded build commands must be identical to completely regenerated ones -
+ * and only build entities that are affected by changes may be regenerated.
+ *
+ * Creates a small workspace in the current working directory (MakeFileBuilder.HOME) - which should be empty
+ * (the 'test' ant target runs this test in test/workspace).
+ */
+public class FragmentCacheTest {
+
+    /** Builder for test workspace */
+    private static class Builder extends MakeFileBuilder {
+
+        public Builder() throws Exception {
+            addLoader(new MakeXMLLoader(Library.class, Program.class));
+        }
+
+        @Override
+        public String[] getSourceDirs() {
+            return new String[] {"sources"};
+        }
+
+        @Override
+        public void setDefaultIncludePaths(SrcDir dir, SourceScanner sources) {
+            dir.defaultIncludePaths.add(dir);
+            dir.defaultIncludePaths.add(sources.findDir("sources", true));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        // library b uses a, program p uses b, library c is independent
+        createLibrary("a", "");
+        createLibrary("b", "#include \"a/a.h\"\n");
+        createLibrary("c", "");
+        write("sources/p/p.cpp", "#include \"b/b.h\"\n\nint main(int argc, char** argv)\n{\n  return 0;\n}\n");
+        write("sources/p/make.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<targets>\n  <program name=\"p\">\n    <sources>p.cpp</sources>\n  </program>\n</targets>\n");
+
+        Builder builder = run("--incremental", "--makefile=Makefile.incremental");
+        Check.equal(0, builder.getFragmentCache().getReplayCount(), "replayed build entities without cache");
+        run("--makefile=Makefile.complete");
+        Check.equal(read("Makefile.complete"), read("Makefile.incremental"), "initial makefile");
+
+        // (the first build entity - a - is always built, as handlers may create shared targets when they are called the first time)
+        builder = run("--incremental", "--makefile=Makefile.incremental");
+        Check.equal(3, builder.getFragmentCache().getReplayCount(), "replayed build entities without changes");
+        Check.equal(read("Makefile.complete"), read("Makefile.incremental"), "makefile without changes");
+
+        // b and p are affected by changing b.h (b also gets a new dependency on c)
+        File bHeader = new File(MakeFileBuilder.HOME, "sources/b/b.h");
+        long lastModified = bHeader.lastModified();
+        write("sources/b/b.h", "#include \"a/a.h\"\n#include \"c/c.h\"\n\nint b_value();\n");
+        bHeader.setLastModified(lastModified + 2000);
+        builder = run("--incremental", "--makefile=Makefile.incremental");
+        Check.equal(1, builder.getFragmentCache().getReplayCount(), "replayed build entities after changing b.h (c)");
+        run("--makefile=Makefile.complete");
+        Check.equal(read("Makefile.complete"), read("Makefile.incremental"), "makefile after changing b.h");
+        Check.isTrue(read("Makefile.complete").contains("libc."), "changed makefile contains library c");
+
+        Check.passed(FragmentCacheTest.class);
+    }
+
+    /**
+     * Runs builder
+     *
+     * @param args Command line arguments
+     * @return Builder after makefile has been created
+     */
+    private static Builder run(String... args) throws Exception {
+        MakeFileBuilder.opts = new Options(args);
+        Builder builder = new Builder();
+        builder.build();
+        return builder;
+    }
+
+    /**
+     * Creates library with header and .cpp file
+     *
+     * @param name Name of library (and its directory)
+     * @param includes Includes in header
+     */
+    private static void createLibrary(String name, String includes) throws Exception {
+        write("sources/" + name + "/" + name + ".h", includes + "\nint " + name + "_value();\n");
+        write("sources/" + name + "/" + name + ".cpp", "#include \"" + name + "/" + name + ".h\"\n\nint " + name + "_value()\n{\n  return 42;\n}\n");
+        write("sources/" + name + "/make.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<targets>\n  <library name=\"" + name + "\">\n" +
+              "    <sources>\n      *.h\n      *.cpp\n    </sources>\n  </library>\n</targets>\n");
+    }
+
+    /**
+     * Writes file in workspace
+     */
+    private static void write(String relativePath, String content) throws Exception {
+        File file = new File(MakeFileBuilder.HOME, relativePath);
+        file.getParentFile().mkdirs();
+        Files.writeLines(file, Arrays.asList(content));
+    }
+
+    /**
+     * @return Content of file in workspace
+     */
+    private static String read(String relativePath) throws Exception {
+        return Files.readLines(new File(MakeFileBuilder.HOME, relativePath)).toString();
+    }
+}
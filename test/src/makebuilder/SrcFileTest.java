@@ -0,0 +1,165 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import makebuilder.util.Files;
+import makebuilder.util.ToStringComparator;
+
+/**
+ * @author Max Reichardt
+ *
+ * Tests for the compact storage of marks, properties and dependencies in SrcFile
+ */
+public class SrcFileTest {
+
+    /** Directory with test files */
+    private static File root;
+
+    /** Directory of test files */
+    private static SrcDir dir;
+
+    public static void main(String[] args) throws Exception {
+        root = new File(System.getProperty("java.io.tmpdir"), "makebuilder_srcfile_test_" + System.nanoTime());
+        root.mkdirs();
+        try {
+            dir = new SrcDir(new SourceScanner(root, null), root);
+            testDependencies();
+            testAllDependencies();
+            testMarksAndProperties();
+            Check.passed(SrcFileTest.class);
+        } finally {
+            for (File f : root.listFiles()) {
+                f.delete();
+            }
+            root.delete();
+        }
+    }
+
+    /**
+     * @param name File name
+     * @param exists Create file?
+     * @return Source file in test directory
+     */
+    private static SrcFile createFile(String name, boolean exists) throws Exception {
+        File file = new File(root, name);
+        if (exists) {
+            Files.writeLines(file, Arrays.asList("// " + name));
+        }
+        return new SrcFile(dir, file, false);
+    }
+
+    /**
+     * Adding dependencies (array growth) and views on them
+     */
+    private static void testDependencies() throws Exception {
+        SrcFile file = createFile("file.h", true);
+        Check.equal(0, file.getDependencies().size(), "no dependencies initially");
+        Check.equal(0, file.getOptionalDependencies().size(), "no optional dependencies initially");
+
+        List<SrcFile> expected = new ArrayList<SrcFile>();
+        List<SrcFile> firstView = null;
+        for (int i = 0; i < 100; i++) {
+            SrcFile dependency = createFile("dependency" + i + ".h", false);
+            file.addDependency(dependency);
+            expected.add(dependency);
+            Check.equal(expected, file.getDependencies(), "dependencies after adding " + (i + 1));
+            if (i == 2) {
+                firstView = file.getDependencies();
+            }
+        }
+        Check.equal(expected.subList(0, 3), firstView, "view obtained before further dependencies were added");
+        Check.isTrue(file.getDependencies() == file.getDependencies(), "view is cached");
+        Check.equal(0, file.getOptionalDependencies().size(), "optional dependencies are stored separately");
+
+        List<SrcFile> optional = Arrays.asList(createFile("optional0.h", false), createFile("optional1.h", false));
+        file.addDependencies(optional, true);
+        file.addDependencies(Collections.<SrcFile>emptyList(), true);
+        Check.equal(optional, file.getOptionalDependencies(), "optional dependencies");
+        Check.equal(expected, file.getDependencies(), "dependencies after adding optional dependencies");
+
+        try {
+            file.getDependencies().add(file);
+            Check.isTrue(false, "dependencies can be modified via view");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        file.clearDependencies();
+        Check.equal(0, file.getDependencies().size(), "dependencies after clearing them");
+        Check.equal(0, file.getOptionalDependencies().size(), "optional dependencies after clearing them");
+        file.addDependency(expected.get(0));
+        Check.equal(expected.subList(0, 1), file.getDependencies(), "dependencies added after clearing them");
+    }
+
+    /**
+     * Transitive dependencies (optional ones only if they exist)
+     */
+    private static void testAllDependencies() throws Exception {
+        SrcFile a = createFile("a.cpp", true), b = createFile("b.h", true), c = createFile("c.h", true);
+        SrcFile optionalExisting = createFile("optional_existing.h", true), optionalMissing = createFile("optional_missing.h", false);
+        a.addDependency(b);
+        b.addDependency(c);
+        c.addDependency(b); // cycle
+        b.addDependencies(Arrays.asList(optionalExisting, optionalMissing), true);
+        SortedSet<SrcFile> all = a.getAllDependencies(new TreeSet<SrcFile>(ToStringComparator.instance));
+        Check.equal(Arrays.asList(a, b, c, optionalExisting), new ArrayList<SrcFile>(all), "all dependencies");
+    }
+
+    /**
+     * Marks and properties - and their serialization (by name)
+     */
+    private static void testMarksAndProperties() throws Exception {
+        SrcFile file = createFile("marked.h", true);
+        file.mark("test-mark");
+        file.setProperty("test-property", "value");
+        file.setProperty("test-list", new ArrayList<String>(Arrays.asList("x", "y")));
+        Check.isTrue(file.hasMark("test-mark"), "mark is set");
+        Check.isTrue(!file.hasMark("other-mark"), "other mark is not set");
+        Check.equal("value", file.getProperty("test-property"), "property");
+        Check.equal(null, file.getProperty("other-property"), "unset property");
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(file);
+        oos.close();
+        SrcFile cached = (SrcFile)new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject();
+        Check.isTrue(cached.hasMark("test-mark"), "mark after deserialization");
+        Check.equal(Arrays.asList("x", "y"), cached.getProperty("test-list"), "property after deserialization");
+
+        SrcFile rescanned = new SrcFile(dir, new File(root, "marked.h"), false); // file is unchanged
+        rescanned.applyCachedInfo(cached);
+        Check.isTrue(rescanned.hasMark("test-mark"), "mark applied from cache");
+        Check.equal("value", rescanned.getProperty("test-property"), "property applied from cache");
+    }
+}
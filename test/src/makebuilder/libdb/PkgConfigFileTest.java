@@ -0,0 +1,134 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.libdb;
+
+import java.io.File;
+import java.util.Arrays;
+
+import makebuilder.Check;
+import makebuilder.util.Files;
+
+/**
+ * @author Max Reichardt
+ *
+ * Tests for PkgConfigFile: parsing .pc files and resolving options like 'pkg-config --cflags [--static] --libs'
+ */
+public class PkgConfigFileTest {
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "makebuilder_pkgconfig_test_" + System.nanoTime());
+        dir.mkdirs();
+        try {
+            write(dir, "base.pc",
+                  "prefix=/opt/base",
+                  "libdir=${prefix}/lib",
+                  "includedir=${prefix}/include  # comment",
+                  "",
+                  "Name: base",
+                  "Description: Base \\# not a comment",
+                  "Version: 1.0",
+                  "Cflags: -I${includedir} -DNAME=\"with space\"",
+                  "Libs: -L${libdir} -lbase",
+                  "Libs.private: -lm");
+            write(dir, "sys.pc",
+                  "Name: sys",
+                  "Cflags: -I/usr/include -I/opt/sys/include",
+                  "Libs: -L/usr/lib -lsys");
+            write(dir, "priv.pc",
+                  "Name: priv",
+                  "Cflags: -DPRIV",
+                  "Libs: -lpriv");
+            write(dir, "top.pc",
+                  "Name: top",
+                  "Requires: base >= 1.0, sys",
+                  "Requires.private: priv",
+                  "Cflags: -I/opt/top/include \\",
+                  " -DTOP",
+                  "Libs: -L/opt/top/lib -ltop");
+            write(dir, "broken.pc",
+                  "Name: broken",
+                  "Requires: missing");
+
+            testParsing(dir);
+            testOptions(dir);
+            Check.passed(PkgConfigFileTest.class);
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Variables, fields, comments, line continuations and Requires
+     */
+    private static void testParsing(File dir) throws Exception {
+        PkgConfigFile base = new PkgConfigFile(new File(dir, "base.pc"), null);
+        Check.equal("base", base.name, "package name");
+        Check.equal("/opt/base/lib", base.getVariable("libdir"), "expanded variable");
+        Check.equal("/opt/base/include", base.getVariable("includedir"), "variable without comment");
+        Check.equal(dir.getAbsolutePath(), base.getVariable("pcfiledir"), "pcfiledir variable");
+        Check.equal("Base # not a comment", base.getField("Description"), "field with escaped '#'");
+        Check.equal("", base.getField("Requires"), "undefined field");
+
+        PkgConfigFile top = new PkgConfigFile(new File(dir, "top.pc"), null);
+        Check.equal("-I/opt/top/include  -DTOP", top.getField("Cflags"), "field with line continuation");
+        Check.equal(Arrays.asList("base", "sys"), top.getRequires(false), "Requires (without version)");
+        Check.equal(Arrays.asList("base", "sys", "priv"), top.getRequires(true), "Requires and Requires.private");
+
+        Check.equal(Arrays.asList("a", "b c", "d \"e\"", "f g", "'h'"), PkgConfigFile.splitArguments("a 'b c' \"d \\\"e\\\"\"  f\\ g \"'h'\""), "split arguments");
+    }
+
+    /**
+     * Resolving options (transitive Requires, system directories, sysroot, static linking)
+     */
+    private static void testOptions(File dir) throws Exception {
+        PkgConfigFile.SearchPath searchPath = new PkgConfigFile.SearchPath(dir.getPath(), null, null, false, false);
+        Check.isTrue(searchPath.listAll().keySet().containsAll(Arrays.asList("base", "sys", "priv", "top", "broken")), "all packages listed");
+        Check.equal("-DNAME=with\\ space -I/opt/base/include -L/opt/base/lib -lbase ", searchPath.getOptions("base", false), "options of package without requirements");
+        Check.equal("-DTOP -DPRIV -DNAME=with\\ space -I/opt/top/include -I/opt/sys/include -I/opt/base/include -L/opt/top/lib -L/opt/base/lib -ltop -lsys -lbase ",
+                    searchPath.getOptions("top", false), "options with requirements (system directories omitted)");
+        Check.equal("-DTOP -DPRIV -DNAME=with\\ space -I/opt/top/include -I/opt/sys/include -I/opt/base/include -L/opt/top/lib -L/opt/base/lib -ltop -lpriv -lsys -lbase -lm ",
+                    searchPath.getOptions("top", true), "options for static linking (private requirements and libraries)");
+
+        PkgConfigFile.SearchPath sysroot = new PkgConfigFile.SearchPath(dir.getPath(), null, "/sysroot", false, false);
+        Check.equal("-I/sysroot/opt/sys/include -lsys ", sysroot.getOptions("sys", false), "options with sysroot");
+
+        PkgConfigFile.SearchPath allowSystem = new PkgConfigFile.SearchPath(dir.getPath(), null, null, true, true);
+        Check.equal("-I/usr/include -I/opt/sys/include -L/usr/lib -lsys ", allowSystem.getOptions("sys", false), "options with system directories allowed");
+
+        try {
+            searchPath.getOptions("broken", false);
+            Check.isTrue(false, "missing requirement not detected");
+        } catch (Exception e) {
+            Check.isTrue(e.getMessage().contains("'missing'"), "exception names missing package: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes .pc file
+     */
+    private static void write(File dir, String name, String... lines) throws Exception {
+        Files.writeLines(new File(dir, name), Arrays.asList(lines));
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * You received this file as part of an experimental
+ * build tool ('makebuilder') - originally developed for MCA2.
+ *
+ * Copyright (C) 2026 Max Reichardt,
+ *   Robotics Research Lab, University of Kaiserslautern
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package makebuilder.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import makebuilder.Check;
+
+/**
+ * @author Max Reichardt
+ *
+ * Tests for StronglyConnectedComponents (used for detecting dependency cycles)
+ */
+public class StronglyConnectedComponentsTest {
+
+    /** Graph with edges from map */
+    private static class MapGraph implements StronglyConnectedComponents.Graph<String> {
+
+        final Map<String, List<String>> edges = new HashMap<String, List<String>>();
+
+        void add(String from, String... to) {
+            edges.put(from, Arrays.asList(to));
+        }
+
+        @Override
+        public Collection<String> getSuccessors(String node) {
+            List<String> result = edges.get(node);
+            return result == null ? Collections.<String>emptyList() : result;
+        }
+    }
+
+    public static void main(String[] args) {
+        testCycles();
+        testAcyclic();
+        testDeepChain();
+        Check.passed(StronglyConnectedComponentsTest.class);
+    }
+
+    /**
+     * Cycle a -> b -> c -> a, self-loop d -> d and acyclic nodes
+     */
+    private static void testCycles() {
+        MapGraph graph = new MapGraph();
+        graph.add("a", "b");
+        graph.add("b", "c");
+        graph.add("c", "a", "d");
+        graph.add("d", "d");
+        graph.add("e", "d");
+        List<List<String>> components = StronglyConnectedComponents.compute(Arrays.asList("a", "b", "c", "d", "e", "f"), graph);
+        Check.equal("[[d], [a, b, c], [e], [f]]", components.toString(), "components of graph with cycles");
+    }
+
+    /**
+     * Diamond: every node is a component of its own - in reverse topological order
+     */
+    private static void testAcyclic() {
+        MapGraph graph = new MapGraph();
+        graph.add("program", "lib1", "lib2");
+        graph.add("lib1", "base");
+        graph.add("lib2", "base");
+        List<List<String>> components = StronglyConnectedComponents.compute(Arrays.asList("program", "lib1", "lib2", "base"), graph);
+        Check.equal("[[base], [lib1], [lib2], [program]]", components.toString(), "components of acyclic graph");
+    }
+
+    /**
+     * Long chain (recursive implementation would overflow the stack)
+     */
+    private static void testDeepChain() {
+        final int n = 200000;
+        final List<Integer> nodes = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++) {
+            nodes.add(Integer.valueOf(i));
+        }
+        List<List<Integer>> components = StronglyConnectedComponents.compute(nodes, new StronglyConnectedComponents.Graph<Integer>() {
+            @Override
+            public Collection<Integer> getSuccessors(Integer node) {
+                int i = node.intValue();
+                return i + 1 < n ? Collections.singletonList(nodes.get(i + 1)) : Collections.<Integer>emptyList();
+            }
+        });
+        Check.equal(n, components.size(), "number of components in chain");
+        Check.equal(n - 1, components.get(0).get(0), "first component (last node of chain)");
+        Check.equal(0, components.get(n - 1).get(0), "last component (first node of chain)");
+
+        // closing the chain creates one large cycle
+        components = StronglyConnectedComponents.compute(nodes, new StronglyConnectedComponents.Graph<Integer>() {
+            @Override
+            public Collection<Integer> getSuccessors(Integer node) {
+                return Collections.singletonList(nodes.get((node.intValue() + 1) % n));
+            }
+        });
+        Check.equal(1, components.size(), "number of components in cyclic chain");
+        Check.equal(n, components.get(0).size(), "size of cycle");
+    }
+}
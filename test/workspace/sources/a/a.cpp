@@ -0,0 +1,7 @@
+#include "a/a.h"
+
+int a_value()
+{
+  return 42;
+}
+
@@ -0,0 +1,7 @@
+#include "b/b.h"
+
+int b_value()
+{
+  return 42;
+}
+
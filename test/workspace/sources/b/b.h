@@ -0,0 +1,5 @@
+#include "a/a.h"
+#include "c/c.h"
+
+int b_value();
+
@@ -0,0 +1,7 @@
+#include "c/c.h"
+
+int c_value()
+{
+  return 42;
+}
+
@@ -0,0 +1,7 @@
+#include "b/b.h"
+
+int main(int argc, char** argv)
+{
+  return 0;
+}
+